@@ -8,15 +8,21 @@ import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.Label;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
 import java.util.stream.Collectors;
 
@@ -36,32 +42,77 @@ import java.util.stream.Collectors;
  * aws.id=[your access key id]
  * aws.secret=[your Secret access key]
  * aws.region=[an aws region of choice. For example: us-east-2]
+ * Optional keys:
+ * aws.endpoint=[endpoint to call instead of AWS, e.g. a local stub server]
+ * image.maxEdge=[longest edge frames are scaled down to before upload, default 640]
+ * image.jpegQuality=[JPEG quality of uploaded frames between 0 and 1, default 0.8]
  */
-public class AwsImageService {
+public final class AwsImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_EDGE = 640;
+    public static final float DEFAULT_JPEG_QUALITY = 0.8f;
+    /**
+     * Lowest label confidence requested by {@link #classify(BufferedImage)}.
+     */
+    public static final float MIN_LABEL_CONFIDENCE = 10f;
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
     // aws recommendation is to maintain only a single instance of client objects
     private RekognitionClient rekognitionClient;
+    private JpegPayloadEncoder encoder = new JpegPayloadEncoder(DEFAULT_MAX_EDGE, DEFAULT_JPEG_QUALITY);
 
     public AwsImageService() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                throw new IOException("config.properties not found on the classpath");
+            }
             props.load(is);
         } catch (IOException ioe) {
             log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
             return;
         }
+        configure(props);
+    }
+
+    /**
+     * Creates a service from the same keys as config.properties.
+     */
+    public AwsImageService(Properties props) {
+        configure(Objects.requireNonNull(props, "Properties cannot be null"));
+    }
+
+    /**
+     * Creates a service around an existing client, e.g. one built for a different endpoint or
+     * a test double.
+     *
+     * @param maxEdge     longest edge, in pixels, frames are scaled down to before upload
+     * @param jpegQuality JPEG quality of uploaded frames, between 0 and 1
+     */
+    public AwsImageService(RekognitionClient rekognitionClient, int maxEdge, float jpegQuality) {
+        this.rekognitionClient = Objects.requireNonNull(rekognitionClient, "Client cannot be null");
+        this.encoder = new JpegPayloadEncoder(maxEdge, jpegQuality);
+    }
 
+    private void configure(Properties props) {
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        String endpoint = props.getProperty("aws.endpoint");
+
+        encoder = new JpegPayloadEncoder(
+                Integer.parseInt(props.getProperty("image.maxEdge", String.valueOf(DEFAULT_MAX_EDGE)).trim()),
+                Float.parseFloat(props.getProperty("image.jpegQuality", String.valueOf(DEFAULT_JPEG_QUALITY)).trim()));
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        RekognitionClientBuilder builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .region(Region.of(awsRegion))
-                .build();
+                .region(Region.of(awsRegion));
+        if (endpoint != null && !endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint.trim()));
+        }
+        rekognitionClient = builder.build();
     }
 
     /**
@@ -73,20 +124,53 @@ public class AwsImageService {
      *                             minimum
      * @return
      */
+    @Override
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
-        Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
+        return classify(image, confidenceThreshhold).containsCat(confidenceThreshhold);
+    }
+
+    /**
+     * Returns every label Rekognition finds with at least {@value #MIN_LABEL_CONFIDENCE}%
+     * confidence. The cat confidence is that of the most confident label naming a cat, or 0 if
+     * there is none or Rekognition is not configured.
+     *
+     * @throws UncheckedIOException if the image could not be encoded for upload
+     */
+    @Override
+    public ClassificationResult classify(BufferedImage image) {
+        return classify(image, MIN_LABEL_CONFIDENCE);
+    }
+
+    private ClassificationResult classify(BufferedImage image, float minConfidence) {
+        long start = System.nanoTime();
+        if (rekognitionClient == null) {
+            log.error("AWS Rekognition is not configured, cannot scan image");
+            return ClassificationResult.ofDecision(false, Duration.ofNanos(System.nanoTime() - start));
+        }
+        Image awsImage;
+        try {
+            byte[] payload = encoder.encode(image);
+            log.debug("Uploading {}x{} frame as {} byte JPEG", image.getWidth(), image.getHeight(), payload.length);
+            // The payload array is ours alone, so the SDK can use it without another copy
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(payload)).build();
         } catch (IOException ioe) {
-            log.error("Error building image byte array", ioe);
-            return false;
+            // Thrown rather than reported as "no cat", which a cache in front would keep for its whole TTL
+            throw new UncheckedIOException("Unable to encode image for Rekognition", ioe);
         }
         DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage)
-                .minConfidence(confidenceThreshhold).build();
+                .minConfidence(minConfidence).build();
         DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
         logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+
+        Map<String, Float> labels = new LinkedHashMap<>();
+        float catConfidence = 0f;
+        for (Label label : response.labels()) {
+            labels.put(label.name(), label.confidence());
+            if (label.name().toLowerCase().contains("cat")) {
+                catConfidence = Math.max(catConfidence, label.confidence());
+            }
+        }
+        return new ClassificationResult(catConfidence, labels, Duration.ofNanos(System.nanoTime() - start));
     }
 
     private void logLabelsForFun(DetectLabelsResponse response) {
@@ -94,4 +178,4 @@ public class AwsImageService {
                 .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
                 .collect(Collectors.joining(", ")));
     }
-}
\ No newline at end of file
+}
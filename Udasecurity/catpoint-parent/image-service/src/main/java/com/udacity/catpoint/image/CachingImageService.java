@@ -0,0 +1,285 @@
+package com.udacity.catpoint.image;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link ImageService} decorator that remembers recent results by {@link PerceptualHash}. A frame
+ * whose hash is within {@code maxHammingDistance} bits of a cached frame, classified with the
+ * same confidence threshold, reuses that frame's result instead of calling the delegate again.
+ * Entries expire after the TTL, and the least recently used entry is evicted once the cache is
+ * full.
+ *
+ * <p>Frames whose {@linkplain PerceptualHash.Fingerprint#gradientEnergy() gradient energy} is
+ * below {@link #MIN_GRADIENT_ENERGY}, e.g. dark or low-contrast ones, are neither looked up nor
+ * cached: their hashes are mostly noise, so any two of them would look like near duplicates.
+ *
+ * <p>A lookup only compares the entries that could be within the distance: the hash is split
+ * into {@code maxHammingDistance + 1} bands and, as a hit can differ in at most that many bits,
+ * it matches some entry exactly in at least one band. Entries are indexed by band.
+ *
+ * <p>The delegate is called outside the cache lock, so two threads that miss on the same frame
+ * at the same moment may both classify it.
+ */
+public final class CachingImageService implements ImageService {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(10);
+    public static final int DEFAULT_MAX_HAMMING_DISTANCE = 4;
+    // Mean luma difference between neighbouring hash cells, out of 255
+    public static final double MIN_GRADIENT_ENERGY = 2.0;
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final int maxHammingDistance;
+    private final LongSupplier clock;
+
+    // Access-ordered, so iteration starts at the least recently used entry; guarded by itself,
+    // as is the band index
+    private final LinkedHashMap<Key, Result> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Band, Map<Key, Result>> bands = new HashMap<>();
+    private final int bandCount;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Threshold of entries made by classify(), whose results hold for any threshold
+    private static final float ANY_THRESHOLD = Float.NaN;
+
+    // Records compare float components with Float.compare, so ANY_THRESHOLD keys are equal
+    private record Key(long hash, float confidenceThreshold) {
+    }
+
+    // classification is null for entries made by imageContainsCat
+    private record Result(boolean containsCat, ClassificationResult classification, long expiresAt) {
+    }
+
+    // The bits of a hash in one band, for entries made with the given threshold
+    private record Band(int index, long bits, float confidenceThreshold) {
+    }
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_MAX_HAMMING_DISTANCE);
+    }
+
+    /**
+     * @param delegate           service that classifies frames not found in the cache
+     * @param maxEntries         number of results kept before the least recently used is evicted
+     * @param ttl                how long a result may be reused
+     * @param maxHammingDistance how many of the 64 hash bits may differ for a frame to count as a
+     *                           hit, below 64
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration ttl, int maxHammingDistance) {
+        this(delegate, maxEntries, ttl, maxHammingDistance, System::nanoTime);
+    }
+
+    CachingImageService(ImageService delegate, int maxEntries, Duration ttl, int maxHammingDistance, LongSupplier clock) {
+        this.delegate = Objects.requireNonNull(delegate, "ImageService cannot be null");
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one entry");
+        }
+        Objects.requireNonNull(ttl, "TTL cannot be null");
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL must be positive");
+        }
+        if (maxHammingDistance < 0 || maxHammingDistance >= Long.SIZE) {
+            throw new IllegalArgumentException("Hamming distance must be between 0 and 63");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.maxHammingDistance = maxHammingDistance;
+        this.bandCount = maxHammingDistance + 1;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        PerceptualHash.Fingerprint fingerprint = image == null ? null : PerceptualHash.fingerprint(image);
+        if (!isCacheable(fingerprint)) {
+            misses.increment();
+            return delegate.imageContainsCat(image, confidenceThreshold);
+        }
+        long hash = fingerprint.hash();
+        Result cached = lookup(hash, confidenceThreshold);
+        if (cached != null) {
+            hits.increment();
+            return cached.containsCat();
+        }
+        misses.increment();
+        boolean containsCat = delegate.imageContainsCat(image, confidenceThreshold);
+        store(new Key(hash, confidenceThreshold), containsCat, null);
+        return containsCat;
+    }
+
+    /**
+     * Reuses the classification of a similar frame whatever threshold the caller later applies.
+     * Classifications are cached apart from the decisions made by
+     * {@link #imageContainsCat(BufferedImage, float)}.
+     */
+    @Override
+    public ClassificationResult classify(BufferedImage image) {
+        PerceptualHash.Fingerprint fingerprint = image == null ? null : PerceptualHash.fingerprint(image);
+        if (!isCacheable(fingerprint)) {
+            misses.increment();
+            return delegate.classify(image);
+        }
+        long hash = fingerprint.hash();
+        Result cached = lookup(hash, ANY_THRESHOLD);
+        if (cached != null) {
+            hits.increment();
+            return cached.classification();
+        }
+        misses.increment();
+        ClassificationResult classification = delegate.classify(image);
+        if (classification != null) {
+            store(new Key(hash, ANY_THRESHOLD), false, classification);
+        }
+        return classification;
+    }
+
+    /**
+     * Answers what it can from the cache and passes the remaining images to the delegate as a
+     * single batch.
+     */
+    @Override
+    public List<ClassificationResult> classifyAll(List<BufferedImage> images) {
+        ClassificationResult[] results = new ClassificationResult[images.size()];
+        long[] hashes = new long[images.size()];
+        boolean[] cacheable = new boolean[images.size()];
+        List<BufferedImage> missed = new ArrayList<>();
+        List<Integer> missedIndexes = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            BufferedImage image = images.get(i);
+            PerceptualHash.Fingerprint fingerprint = image == null ? null : PerceptualHash.fingerprint(image);
+            cacheable[i] = isCacheable(fingerprint);
+            if (cacheable[i]) {
+                hashes[i] = fingerprint.hash();
+                Result cached = lookup(hashes[i], ANY_THRESHOLD);
+                results[i] = cached == null ? null : cached.classification();
+            }
+            if (results[i] != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+                missed.add(image);
+                missedIndexes.add(i);
+            }
+        }
+        if (!missed.isEmpty()) {
+            List<ClassificationResult> classified = delegate.classifyAll(missed);
+            for (int j = 0; j < missed.size(); j++) {
+                int i = missedIndexes.get(j);
+                results[i] = classified.get(j);
+                if (cacheable[i] && results[i] != null) {
+                    store(new Key(hashes[i], ANY_THRESHOLD), false, results[i]);
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bands.clear();
+        }
+    }
+
+    private static boolean isCacheable(PerceptualHash.Fingerprint fingerprint) {
+        return fingerprint != null && fingerprint.gradientEnergy() >= MIN_GRADIENT_ENERGY;
+    }
+
+    // Exact match first; otherwise the closest live entry within the distance limit among the
+    // entries sharing a band with the hash
+    private Result lookup(long hash, float confidenceThreshold) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Key exact = new Key(hash, confidenceThreshold);
+            Result result = entries.get(exact);
+            if (result != null && now - result.expiresAt() < 0) {
+                return result;
+            }
+
+            Key closest = null;
+            int closestDistance = maxHammingDistance + 1;
+            List<Key> expired = new ArrayList<>();
+            for (int band = 0; band < bandCount; band++) {
+                Map<Key, Result> candidates = bands.get(band(band, hash, confidenceThreshold));
+                if (candidates == null) {
+                    continue;
+                }
+                for (Map.Entry<Key, Result> candidate : candidates.entrySet()) {
+                    if (now - candidate.getValue().expiresAt() >= 0) {
+                        expired.add(candidate.getKey());
+                        continue;
+                    }
+                    int distance = PerceptualHash.hammingDistance(hash, candidate.getKey().hash());
+                    if (distance < closestDistance) {
+                        closest = candidate.getKey();
+                        closestDistance = distance;
+                    }
+                }
+            }
+            expired.forEach(this::remove);
+            // get() marks the entry as recently used
+            return closest == null ? null : entries.get(closest);
+        }
+    }
+
+    private void store(Key key, boolean containsCat, ClassificationResult classification) {
+        Result result = new Result(containsCat, classification, clock.getAsLong() + ttlNanos);
+        synchronized (entries) {
+            entries.put(key, result);
+            for (int band = 0; band < bandCount; band++) {
+                bands.computeIfAbsent(band(band, key.hash(), key.confidenceThreshold()), b -> new HashMap<>())
+                        .put(key, result);
+            }
+            if (entries.size() > maxEntries) {
+                remove(entries.keySet().iterator().next());
+            }
+        }
+    }
+
+    // Caller holds the lock
+    private void remove(Key key) {
+        entries.remove(key);
+        for (int band = 0; band < bandCount; band++) {
+            Band indexed = band(band, key.hash(), key.confidenceThreshold());
+            Map<Key, Result> candidates = bands.get(indexed);
+            if (candidates != null && candidates.remove(key) != null && candidates.isEmpty()) {
+                bands.remove(indexed);
+            }
+        }
+    }
+
+    // Band i holds bits [64 * i / bandCount, 64 * (i + 1) / bandCount) of the hash
+    private Band band(int index, long hash, float confidenceThreshold) {
+        int from = Long.SIZE * index / bandCount;
+        int to = Long.SIZE * (index + 1) / bandCount;
+        long mask = to - from == Long.SIZE ? -1L : (1L << (to - from)) - 1;
+        return new Band(index, (hash >>> from) & mask, confidenceThreshold);
+    }
+}
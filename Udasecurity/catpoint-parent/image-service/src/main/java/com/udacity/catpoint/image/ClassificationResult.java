@@ -0,0 +1,43 @@
+package com.udacity.catpoint.image;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * What an {@link ImageService} found in one image, independent of any confidence threshold, so
+ * the same result can be checked against as many thresholds as needed.
+ *
+ * @param catConfidence confidence, from 0 to 100, that the image contains a cat
+ * @param labels        every label the service reported with its confidence, from 0 to 100, in
+ *                      the order the service reported them
+ * @param latency       how long the classification took
+ */
+public record ClassificationResult(float catConfidence, Map<String, Float> labels, Duration latency) {
+
+    public ClassificationResult {
+        if (!(catConfidence >= 0 && catConfidence <= 100)) {
+            throw new IllegalArgumentException("Cat confidence must be between 0 and 100");
+        }
+        labels = Collections.unmodifiableMap(new LinkedHashMap<>(Objects.requireNonNull(labels, "Labels cannot be null")));
+        Objects.requireNonNull(latency, "Latency cannot be null");
+    }
+
+    /**
+     * Result for a service that only answers yes or no: full confidence for a cat, none
+     * otherwise, and no labels.
+     */
+    public static ClassificationResult ofDecision(boolean containsCat, Duration latency) {
+        return new ClassificationResult(containsCat ? 100f : 0f, Map.of(), latency);
+    }
+
+    /**
+     * Returns true if the cat confidence reaches the threshold, the same test
+     * {@link ImageService#imageContainsCat(java.awt.image.BufferedImage, float)} applies.
+     */
+    public boolean containsCat(float confidenceThreshold) {
+        return catConfidence >= confidenceThreshold;
+    }
+}
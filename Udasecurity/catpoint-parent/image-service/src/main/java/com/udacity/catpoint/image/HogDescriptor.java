@@ -0,0 +1,127 @@
+package com.udacity.catpoint.image;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of oriented gradients over a square grayscale window. The window is split into
+ * {@code cellSize} square cells, each holding a histogram of unsigned gradient orientations in
+ * {@code bins} bins; overlapping 2x2 blocks of cells are L2-Hys normalised and concatenated into
+ * the feature vector. All work happens in caller-supplied arrays so one set of buffers can be
+ * reused for every image.
+ */
+final class HogDescriptor {
+
+    private static final int BLOCK_CELLS = 2;
+    private static final float HYS_CLIP = 0.2f;
+    private static final float EPSILON = 1e-6f;
+
+    private final int windowSize;
+    private final int cellSize;
+    private final int bins;
+    private final int cellsPerSide;
+    private final int blocksPerSide;
+
+    HogDescriptor(int windowSize, int cellSize, int bins) {
+        if (cellSize < 1 || bins < 1 || windowSize < cellSize * BLOCK_CELLS || windowSize % cellSize != 0) {
+            throw new IllegalArgumentException("Window must be a multiple of the cell size and hold at least 2x2 cells");
+        }
+        this.windowSize = windowSize;
+        this.cellSize = cellSize;
+        this.bins = bins;
+        this.cellsPerSide = windowSize / cellSize;
+        this.blocksPerSide = cellsPerSide - BLOCK_CELLS + 1;
+    }
+
+    int windowSize() {
+        return windowSize;
+    }
+
+    int cellSize() {
+        return cellSize;
+    }
+
+    int bins() {
+        return bins;
+    }
+
+    int featureCount() {
+        return blocksPerSide * blocksPerSide * BLOCK_CELLS * BLOCK_CELLS * bins;
+    }
+
+    int histogramLength() {
+        return cellsPerSide * cellsPerSide * bins;
+    }
+
+    /**
+     * @param window     row-major luma values, {@code windowSize * windowSize}
+     * @param histograms scratch space of {@link #histogramLength()} floats
+     * @param features   receives {@link #featureCount()} floats
+     */
+    void compute(float[] window, float[] histograms, float[] features) {
+        Arrays.fill(histograms, 0f);
+        float binWidth = (float) Math.PI / bins;
+        for (int y = 0; y < windowSize; y++) {
+            int up = Math.max(0, y - 1) * windowSize;
+            int down = Math.min(windowSize - 1, y + 1) * windowSize;
+            int row = y * windowSize;
+            int cellRow = (y / cellSize) * cellsPerSide;
+            for (int x = 0; x < windowSize; x++) {
+                float gx = window[row + Math.min(windowSize - 1, x + 1)] - window[row + Math.max(0, x - 1)];
+                float gy = window[down + x] - window[up + x];
+                float magnitude = (float) Math.sqrt(gx * gx + gy * gy);
+                if (magnitude == 0f) {
+                    continue;
+                }
+                double angle = Math.atan2(gy, gx);
+                if (angle < 0) {
+                    angle += Math.PI;
+                }
+                // Split the vote between the two nearest bins
+                float position = (float) (angle / binWidth) - 0.5f;
+                int lower = (int) Math.floor(position);
+                float upperShare = position - lower;
+                int cell = (cellRow + x / cellSize) * bins;
+                histograms[cell + Math.floorMod(lower, bins)] += magnitude * (1f - upperShare);
+                histograms[cell + Math.floorMod(lower + 1, bins)] += magnitude * upperShare;
+            }
+        }
+
+        int out = 0;
+        int blockLength = BLOCK_CELLS * BLOCK_CELLS * bins;
+        for (int by = 0; by < blocksPerSide; by++) {
+            for (int bx = 0; bx < blocksPerSide; bx++) {
+                int start = out;
+                for (int cy = by; cy < by + BLOCK_CELLS; cy++) {
+                    for (int cx = bx; cx < bx + BLOCK_CELLS; cx++) {
+                        System.arraycopy(histograms, (cy * cellsPerSide + cx) * bins, features, out, bins);
+                        out += bins;
+                    }
+                }
+                normaliseBlock(features, start, blockLength);
+            }
+        }
+    }
+
+    // L2-Hys: L2 normalise, clip large components, normalise again
+    private static void normaliseBlock(float[] features, int start, int length) {
+        scale(features, start, length, 1f / (float) Math.sqrt(sumOfSquares(features, start, length) + EPSILON));
+        for (int i = start; i < start + length; i++) {
+            features[i] = Math.min(features[i], HYS_CLIP);
+        }
+        scale(features, start, length, 1f / (float) Math.sqrt(sumOfSquares(features, start, length) + EPSILON));
+    }
+
+    private static float sumOfSquares(float[] values, int start, int length) {
+        float sum = 0f;
+        for (int i = start; i < start + length; i++) {
+            sum += values[i] * values[i];
+        }
+        return sum;
+    }
+
+    private static void scale(float[] values, int start, int length, float factor) {
+        for (int i = start; i < start + length; i++) {
+            values[i] *= factor;
+        }
+    }
+}
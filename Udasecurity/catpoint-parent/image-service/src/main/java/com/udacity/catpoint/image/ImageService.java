@@ -1,7 +1,44 @@
 package com.udacity.catpoint.image;
 
 import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 public interface ImageService {
+
+    /**
+     * Threshold, as a percentage, used where the caller has not chosen one.
+     */
+    float DEFAULT_CONFIDENCE_THRESHOLD = 50f;
+
     boolean imageContainsCat(BufferedImage image, float confidenceThreshold);
-}
\ No newline at end of file
+
+    /**
+     * Classifies an image without committing to a threshold; the result can then be checked
+     * against any threshold without classifying the image again. Services that score images
+     * should override this and make {@link #imageContainsCat(BufferedImage, float)} a check over
+     * it. The default asks for a decision at {@link #DEFAULT_CONFIDENCE_THRESHOLD} and reports it
+     * as full or zero confidence.
+     */
+    default ClassificationResult classify(BufferedImage image) {
+        long start = System.nanoTime();
+        boolean containsCat = imageContainsCat(image, DEFAULT_CONFIDENCE_THRESHOLD);
+        return ClassificationResult.ofDecision(containsCat, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Classifies several images without committing to a threshold. Implementations that can
+     * classify a batch more cheaply than one image at a time should override this; the default
+     * simply calls {@link #classify(BufferedImage)} for each image in turn.
+     *
+     * @return one result per image, in the same order
+     */
+    default List<ClassificationResult> classifyAll(List<BufferedImage> images) {
+        List<ClassificationResult> results = new ArrayList<>(images.size());
+        for (BufferedImage image : images) {
+            results.add(classify(image));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,198 @@
+package com.udacity.catpoint.image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Turns frames into compact JPEG payloads for remote classification. Frames whose longest edge
+ * exceeds {@code maxEdge} are scaled down first, and frames JPEG cannot hold directly, such as
+ * those with alpha, are drawn onto an RGB canvas. Encoding contexts (a configured
+ * {@link ImageWriter}, the scaling canvas and the output buffer) are pooled, so a steady stream
+ * of same-sized frames only allocates the returned payload array.
+ */
+final class JpegPayloadEncoder {
+
+    private static final int MAX_POOLED_CONTEXTS = 4;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final int maxEdge;
+    private final float quality;
+    private final BlockingQueue<Context> pool = new ArrayBlockingQueue<>(MAX_POOLED_CONTEXTS);
+
+    /**
+     * @param maxEdge longest edge, in pixels, of the encoded image
+     * @param quality JPEG quality between 0 and 1
+     */
+    JpegPayloadEncoder(int maxEdge, float quality) {
+        if (maxEdge < 1) {
+            throw new IllegalArgumentException("Max edge must be at least one pixel");
+        }
+        if (!(quality >= 0f && quality <= 1f)) {
+            throw new IllegalArgumentException("JPEG quality must be between 0 and 1");
+        }
+        this.maxEdge = maxEdge;
+        this.quality = quality;
+    }
+
+    int getMaxEdge() {
+        return maxEdge;
+    }
+
+    float getQuality() {
+        return quality;
+    }
+
+    byte[] encode(BufferedImage image) throws IOException {
+        Context context = pool.poll();
+        if (context == null) {
+            context = new Context();
+        }
+        byte[] payload;
+        try {
+            payload = context.encode(prepare(image, context));
+        } catch (IOException | RuntimeException e) {
+            // The writer may be left mid-image; let it go rather than pool it
+            context.writer.dispose();
+            throw e;
+        }
+        if (!pool.offer(context)) {
+            context.writer.dispose();
+        }
+        return payload;
+    }
+
+    private BufferedImage prepare(BufferedImage image, Context context) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        if (scale == 1.0 && isJpegCompatible(image.getType())) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        BufferedImage canvas = context.canvas;
+        if (canvas == null || canvas.getWidth() != targetWidth || canvas.getHeight() != targetHeight) {
+            canvas = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_3BYTE_BGR);
+            context.canvas = canvas;
+        }
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return canvas;
+    }
+
+    private static boolean isJpegCompatible(int type) {
+        return type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_INT_BGR
+                || type == BufferedImage.TYPE_BYTE_GRAY;
+    }
+
+    private final class Context {
+        private final ImageWriter writer;
+        private final ImageWriteParam param;
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private BufferedImage canvas;
+
+        private Context() {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+            if (!writers.hasNext()) {
+                throw new IllegalStateException("No JPEG writer available");
+            }
+            writer = writers.next();
+            param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+
+        private byte[] encode(BufferedImage image) throws IOException {
+            BufferOutputStream out = new BufferOutputStream(buffer);
+            try {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.setOutput(null);
+                // Keep the buffer even if it grew, so the next frame starts at that size
+                buffer = out.buffer;
+            }
+            return Arrays.copyOf(out.buffer, (int) out.length);
+        }
+    }
+
+    // Writes straight into a caller-owned array, unlike ImageIO's stream wrappers, which copy
+    // through caches of their own
+    private static final class BufferOutputStream extends ImageOutputStreamImpl {
+        private byte[] buffer;
+        private long length;
+
+        private BufferOutputStream(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + 1);
+            buffer[(int) streamPos++] = (byte) b;
+            length = Math.max(length, streamPos);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + len);
+            System.arraycopy(b, off, buffer, (int) streamPos, len);
+            streamPos += len;
+            length = Math.max(length, streamPos);
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            return streamPos < length ? buffer[(int) streamPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - streamPos);
+            System.arraycopy(buffer, (int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        private void ensureCapacity(long capacity) throws IOException {
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IOException("JPEG payload too large");
+            }
+            if (capacity > buffer.length) {
+                buffer = Arrays.copyOf(buffer, (int) Math.max(capacity, 2L * buffer.length));
+            }
+        }
+    }
+}
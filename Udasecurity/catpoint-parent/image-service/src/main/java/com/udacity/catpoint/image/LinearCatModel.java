@@ -0,0 +1,168 @@
+package com.udacity.catpoint.image;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Linear classifier over HOG features: the cat confidence of an image is
+ * {@code 100 * sigmoid(bias + weights . features)}. No weights ship with the application; a model
+ * trained offline (for example a logistic regression or linear SVM over the same HOG layout) is
+ * loaded from a file, stream or classpath resource in this format, all values big-endian:
+ * <pre>
+ *   int    magic 0x43504C4D ("CPLM")
+ *   int    format version (1)
+ *   int    window size in pixels
+ *   int    cell size in pixels
+ *   int    orientation bins
+ *   int    feature count, which must match the HOG layout above
+ *   float  bias
+ *   float[feature count] weights
+ * </pre>
+ */
+public final class LinearCatModel {
+
+    private static final int MAGIC = 0x43504C4D;
+    private static final int FORMAT_VERSION = 1;
+
+    private final HogDescriptor descriptor;
+    private final float bias;
+    private final float[] weights;
+
+    public LinearCatModel(int windowSize, int cellSize, int bins, float bias, float[] weights) {
+        this.descriptor = new HogDescriptor(windowSize, cellSize, bins);
+        Objects.requireNonNull(weights, "Weights cannot be null");
+        if (weights.length != descriptor.featureCount()) {
+            throw new IllegalArgumentException("Expected " + descriptor.featureCount()
+                    + " weights for this HOG layout but got " + weights.length);
+        }
+        this.bias = bias;
+        this.weights = weights.clone();
+    }
+
+    public static LinearCatModel read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a cat model");
+        }
+        int version = data.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cat model version " + version);
+        }
+        int windowSize = data.readInt();
+        int cellSize = data.readInt();
+        int bins = data.readInt();
+        int featureCount = data.readInt();
+        if (featureCount < 1 || featureCount > 1 << 24) {
+            throw new IOException("Corrupt cat model feature count " + featureCount);
+        }
+        float bias = data.readFloat();
+        float[] weights = new float[featureCount];
+        for (int i = 0; i < featureCount; i++) {
+            weights[i] = data.readFloat();
+        }
+        try {
+            return new LinearCatModel(windowSize, cellSize, bins, bias, weights);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt cat model: " + e.getMessage(), e);
+        }
+    }
+
+    public static LinearCatModel fromFile(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Loads a model from the classpath, relative to the root.
+     */
+    public static LinearCatModel fromResource(String resourceName) throws IOException {
+        try (InputStream in = LinearCatModel.class.getClassLoader().getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IOException("Cat model resource not found: " + resourceName);
+            }
+            return read(in);
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeInt(FORMAT_VERSION);
+        data.writeInt(descriptor.windowSize());
+        data.writeInt(descriptor.cellSize());
+        data.writeInt(descriptor.bins());
+        data.writeInt(weights.length);
+        data.writeFloat(bias);
+        for (float weight : weights) {
+            data.writeFloat(weight);
+        }
+        data.flush();
+    }
+
+    public int windowSize() {
+        return descriptor.windowSize();
+    }
+
+    HogDescriptor descriptor() {
+        return descriptor;
+    }
+
+    /**
+     * Returns the cat confidence, 0 to 100, for a HOG feature vector.
+     */
+    float confidence(float[] features) {
+        // Four independent accumulators keep the loop free of a serial dependency
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (; i + 3 < weights.length; i += 4) {
+            s0 += weights[i] * features[i];
+            s1 += weights[i + 1] * features[i + 1];
+            s2 += weights[i + 2] * features[i + 2];
+            s3 += weights[i + 3] * features[i + 3];
+        }
+        for (; i < weights.length; i++) {
+            s0 += weights[i] * features[i];
+        }
+        double score = bias + s0 + s1 + s2 + s3;
+        return (float) (100.0 / (1.0 + Math.exp(-score)));
+    }
+
+    @Override
+    public String toString() {
+        return "LinearCatModel[window=" + descriptor.windowSize() + ", cell=" + descriptor.cellSize()
+                + ", bins=" + descriptor.bins() + ", features=" + weights.length + "]";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LinearCatModel other)) {
+            return false;
+        }
+        return descriptor.windowSize() == other.descriptor.windowSize()
+                && descriptor.cellSize() == other.descriptor.cellSize()
+                && descriptor.bins() == other.descriptor.bins()
+                && Float.compare(bias, other.bias) == 0
+                && Arrays.equals(weights, other.weights);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Float.hashCode(bias) + Arrays.hashCode(weights);
+    }
+}
@@ -0,0 +1,212 @@
+package com.udacity.catpoint.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a camera frame changed enough to be worth classifying. Each frame is sampled
+ * on a coarse luma grid and compared with the last frame from the same source that passed the
+ * gate; if fewer than {@code minChangedFraction} of the grid cells moved by more than the noise
+ * floor, the frame is reported as static. Comparing against the last passed frame rather than
+ * the immediately preceding one means slow changes still add up and eventually pass.
+ *
+ * <p>Sampling reads the pixel arrays of the common RGB, BGR and gray image types directly and
+ * reuses two grids per source, so checking a frame does not allocate. Reading the arrays
+ * directly stops Java2D from caching those frames in video memory, which does not matter for
+ * frames that are only analysed. Other image types fall back to
+ * {@link BufferedImage#getRGB(int, int)}.
+ */
+public final class MotionGate {
+
+    public static final String DEFAULT_SOURCE = "default";
+    public static final int DEFAULT_GRID_WIDTH = 64;
+    public static final int DEFAULT_GRID_HEIGHT = 48;
+    public static final int DEFAULT_NOISE_FLOOR = 16;
+    public static final double DEFAULT_MIN_CHANGED_FRACTION = 0.01;
+
+    // Pixel access paths, see sample()
+    private static final int PACKED_RGB = 0;
+    private static final int INTERLEAVED_RGB = 1;
+    private static final int GRAY = 2;
+    private static final int GENERIC = 3;
+
+    private final int gridWidth;
+    private final int gridHeight;
+    private final int noiseFloor;
+    private final int minChangedCells;
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+    private final LongAdder passedFrames = new LongAdder();
+    private final LongAdder skippedFrames = new LongAdder();
+
+    public MotionGate() {
+        this(DEFAULT_MIN_CHANGED_FRACTION);
+    }
+
+    public MotionGate(double minChangedFraction) {
+        this(DEFAULT_GRID_WIDTH, DEFAULT_GRID_HEIGHT, DEFAULT_NOISE_FLOOR, minChangedFraction);
+    }
+
+    /**
+     * @param gridWidth          luma samples per row
+     * @param gridHeight         luma sample rows
+     * @param noiseFloor         luma change (0-255) a cell must exceed to count as changed
+     * @param minChangedFraction fraction of cells that must change for a frame to pass
+     */
+    public MotionGate(int gridWidth, int gridHeight, int noiseFloor, double minChangedFraction) {
+        if (gridWidth < 1 || gridHeight < 1) {
+            throw new IllegalArgumentException("Grid must be at least 1x1");
+        }
+        if (noiseFloor < 0 || noiseFloor > 255) {
+            throw new IllegalArgumentException("Noise floor must be between 0 and 255");
+        }
+        if (!(minChangedFraction >= 0 && minChangedFraction <= 1)) {
+            throw new IllegalArgumentException("Changed fraction must be between 0 and 1");
+        }
+        this.gridWidth = gridWidth;
+        this.gridHeight = gridHeight;
+        this.noiseFloor = noiseFloor;
+        this.minChangedCells = Math.max(1, (int) Math.ceil(minChangedFraction * gridWidth * gridHeight));
+    }
+
+    /**
+     * Returns true if the frame should be classified: it is the first frame from the source, its
+     * size changed, or enough of it changed since the last frame that passed. A frame that passes
+     * becomes the reference straight away, so a caller that then fails to classify it should
+     * {@link #reset(String)} the source; otherwise the rest of that scene is skipped as static.
+     */
+    public boolean hasMotion(String sourceId, BufferedImage frame) {
+        Objects.requireNonNull(sourceId, "Source id cannot be null");
+        Objects.requireNonNull(frame, "Frame cannot be null");
+        Source source = sources.computeIfAbsent(sourceId, id -> new Source(gridWidth * gridHeight));
+        boolean motion;
+        synchronized (source) {
+            motion = source.offer(frame);
+        }
+        (motion ? passedFrames : skippedFrames).increment();
+        return motion;
+    }
+
+    /**
+     * Forgets the source's reference frame, so its next frame passes.
+     */
+    public void reset(String sourceId) {
+        sources.remove(Objects.requireNonNull(sourceId, "Source id cannot be null"));
+    }
+
+    public long getPassedFrames() {
+        return passedFrames.sum();
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames.sum();
+    }
+
+    private final class Source {
+        private int[] reference;
+        private int[] scratch;
+        private int frameWidth = -1;
+        private int frameHeight = -1;
+
+        private Source(int cells) {
+            this.reference = new int[cells];
+            this.scratch = new int[cells];
+        }
+
+        private boolean offer(BufferedImage frame) {
+            sample(frame, scratch);
+            boolean sameSize = frame.getWidth() == frameWidth && frame.getHeight() == frameHeight;
+            if (sameSize && countChanged(reference, scratch) < minChangedCells) {
+                return false;
+            }
+            frameWidth = frame.getWidth();
+            frameHeight = frame.getHeight();
+            int[] passed = scratch;
+            scratch = reference;
+            reference = passed;
+            return true;
+        }
+    }
+
+    // Straight-line loop over two int arrays, which the JIT can vectorise
+    private int countChanged(int[] reference, int[] current) {
+        int changed = 0;
+        for (int i = 0; i < current.length; i++) {
+            changed += Math.abs(current[i] - reference[i]) > noiseFloor ? 1 : 0;
+        }
+        return changed;
+    }
+
+    private void sample(BufferedImage frame, int[] luma) {
+        Raster raster = frame.getRaster();
+        SampleModel model = raster.getSampleModel();
+        DataBuffer buffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+        int type = frame.getType();
+
+        // Pick the pixel access path once per frame rather than per sample
+        int[] ints = null;
+        byte[] bytes = null;
+        int bufferOffset = buffer.getOffset();
+        int path;
+        if (isPackedRgb(type) && buffer instanceof DataBufferInt intBuffer && model instanceof SinglePixelPackedSampleModel) {
+            path = PACKED_RGB;
+            ints = intBuffer.getData();
+        } else if (isInterleavedRgb(type) && buffer instanceof DataBufferByte byteBuffer && model instanceof ComponentSampleModel) {
+            path = INTERLEAVED_RGB;
+            bytes = byteBuffer.getData();
+        } else if (type == BufferedImage.TYPE_BYTE_GRAY && buffer instanceof DataBufferByte byteBuffer
+                && model instanceof ComponentSampleModel) {
+            path = GRAY;
+            bytes = byteBuffer.getData();
+        } else {
+            path = GENERIC;
+        }
+
+        int i = 0;
+        for (int gy = 0; gy < gridHeight; gy++) {
+            int y = (int) ((gy + 0.5) * frame.getHeight() / gridHeight);
+            int sy = y - translateY;
+            for (int gx = 0; gx < gridWidth; gx++) {
+                int x = (int) ((gx + 0.5) * frame.getWidth() / gridWidth);
+                int sx = x - translateX;
+                luma[i++] = switch (path) {
+                    case PACKED_RGB -> PerceptualHash.luma(
+                            ints[bufferOffset + ((SinglePixelPackedSampleModel) model).getOffset(sx, sy)]);
+                    case INTERLEAVED_RGB -> {
+                        ComponentSampleModel component = (ComponentSampleModel) model;
+                        int r = bytes[bufferOffset + component.getOffset(sx, sy, 0)] & 0xFF;
+                        int g = bytes[bufferOffset + component.getOffset(sx, sy, 1)] & 0xFF;
+                        int b = bytes[bufferOffset + component.getOffset(sx, sy, 2)] & 0xFF;
+                        yield (r * 299 + g * 587 + b * 114) / 1000;
+                    }
+                    case GRAY -> bytes[bufferOffset + ((ComponentSampleModel) model).getOffset(sx, sy, 0)] & 0xFF;
+                    default -> PerceptualHash.luma(frame.getRGB(x, y));
+                };
+            }
+        }
+    }
+
+    private static boolean isPackedRgb(int type) {
+        return type == BufferedImage.TYPE_INT_RGB
+                || type == BufferedImage.TYPE_INT_ARGB
+                || type == BufferedImage.TYPE_INT_ARGB_PRE;
+    }
+
+    // Raster bands are R, G, B(, A) for these types whatever their byte order in memory
+    private static boolean isInterleavedRgb(int type) {
+        return type == BufferedImage.TYPE_3BYTE_BGR
+                || type == BufferedImage.TYPE_4BYTE_ABGR
+                || type == BufferedImage.TYPE_4BYTE_ABGR_PRE;
+    }
+}
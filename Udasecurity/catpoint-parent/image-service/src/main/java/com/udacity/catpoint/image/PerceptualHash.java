@@ -0,0 +1,88 @@
+package com.udacity.catpoint.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Difference hash (dHash) of an image: the image is reduced to a 9x8 grayscale grid and each bit
+ * records whether a cell is brighter than its right-hand neighbour. Frames that look alike to a
+ * person, e.g. consecutive frames of a still scene or the same frame re-encoded, produce hashes
+ * that differ in only a few bits.
+ */
+public final class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+    // Pixels sampled per cell along each axis; enough to average out noise on large frames
+    private static final int SAMPLES_PER_CELL = 8;
+
+    private PerceptualHash() {
+        throw new AssertionError("This is a utility class");
+    }
+
+    /**
+     * A frame's dHash together with the mean luma difference between the neighbouring cells it
+     * compared. In a dark or flat frame those differences are down at noise level, so the hash
+     * bits are noise too and two such frames hash alike however different they are.
+     */
+    public record Fingerprint(long hash, double gradientEnergy) {
+    }
+
+    public static long dHash(BufferedImage image) {
+        return fingerprint(image).hash();
+    }
+
+    public static Fingerprint fingerprint(BufferedImage image) {
+        double[] cells = grayscaleGrid(image);
+        long hash = 0;
+        double energy = 0;
+        int bit = 0;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                double difference = cells[y * GRID_WIDTH + x] - cells[y * GRID_WIDTH + x + 1];
+                if (difference > 0) {
+                    hash |= 1L << bit;
+                }
+                energy += Math.abs(difference);
+                bit++;
+            }
+        }
+        return new Fingerprint(hash, energy / bit);
+    }
+
+    public static int hammingDistance(long first, long second) {
+        return Long.bitCount(first ^ second);
+    }
+
+    // Mean luma of each grid cell, from a fixed number of evenly spaced samples per cell
+    private static double[] grayscaleGrid(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] cells = new double[GRID_WIDTH * GRID_HEIGHT];
+        for (int cy = 0; cy < GRID_HEIGHT; cy++) {
+            for (int cx = 0; cx < GRID_WIDTH; cx++) {
+                double sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = sampleCoordinate(cy, sy, GRID_HEIGHT, height);
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        sum += luma(image.getRGB(sampleCoordinate(cx, sx, GRID_WIDTH, width), y));
+                    }
+                }
+                cells[cy * GRID_WIDTH + cx] = sum / (SAMPLES_PER_CELL * SAMPLES_PER_CELL);
+            }
+        }
+        return cells;
+    }
+
+    private static int sampleCoordinate(int cell, int sample, int cells, int size) {
+        double position = (cell + (sample + 0.5) / SAMPLES_PER_CELL) * size / cells;
+        return Math.min(size - 1, (int) position);
+    }
+
+    // ITU-R BT.601 luma
+    static int luma(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return (r * 299 + g * 587 + b * 114) / 1000;
+    }
+}
@@ -0,0 +1,428 @@
+package com.udacity.catpoint.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * {@link ImageService} decorator for slow or unreliable classifiers, typically a remote one.
+ * <ul>
+ *     <li>Every call has a deadline; a call that misses it counts as a failure.</li>
+ *     <li>Once enough calls have succeeded to know the p95 latency, a call still running after
+ *     that long is hedged: the same image is sent again and whichever answer arrives first
+ *     wins.</li>
+ *     <li>After {@code failureThreshold} failures in a row the circuit opens and the delegate is
+ *     not called for {@code openDuration}; then a single trial call decides whether it closes
+ *     again.</li>
+ *     <li>Whenever the delegate cannot answer, the fallback service answers instead, or if there
+ *     is none, the last result the delegate gave.</li>
+ * </ul>
+ * Delegate calls run on daemon threads owned by this service, at most
+ * {@code maxConcurrentAttempts} at a time; a call that finds them all busy fails straight away
+ * rather than starting another thread. A call abandoned at its deadline is interrupted, but a
+ * delegate may keep reading its image regardless, so every call hands the delegate its own copy
+ * of the image: the caller is free to reuse or recycle the image as soon as the call returns.
+ * The copy is made only once a call is let through to the delegate, and is cheap next to a
+ * remote call.
+ */
+public final class ResilientImageService implements ImageService, AutoCloseable {
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(3);
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+    public static final int DEFAULT_MAX_CONCURRENT_ATTEMPTS = 16;
+
+    // Latency samples kept for percentiles, and how many are needed before hedging starts
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_SAMPLES_FOR_HEDGING = 20;
+    private static final int HEDGE_DELAY_REFRESH_INTERVAL = 16;
+
+    private static final AtomicInteger SERVICE_NUMBER = new AtomicInteger();
+
+    public enum CircuitState {
+        /**
+         * Calls go to the delegate.
+         */
+        CLOSED,
+        /**
+         * Calls go straight to the fallback until the open duration has passed.
+         */
+        OPEN,
+        /**
+         * One trial call goes to the delegate; the others use the fallback.
+         */
+        HALF_OPEN
+    }
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService delegate;
+    private final ImageService fallback;
+    private final long timeoutNanos;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final ThreadPoolExecutor executor;
+
+    // Guarded by this
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    // Guarded by latencies
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencyCount;
+    private volatile long hedgeDelayNanos;
+
+    private volatile Boolean lastResult;
+    private volatile ClassificationResult lastClassification;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder hedgedCalls = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder rejectedAttempts = new LongAdder();
+
+    public ResilientImageService(ImageService delegate, ImageService fallback) {
+        this(delegate, fallback, DEFAULT_TIMEOUT, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION);
+    }
+
+    /**
+     * @param delegate         classifier being protected
+     * @param fallback         answers while the delegate cannot; null to repeat the last result
+     * @param timeout          deadline for each call, hedge included
+     * @param failureThreshold failures in a row that open the circuit
+     * @param openDuration     how long the circuit stays open before a trial call
+     */
+    public ResilientImageService(ImageService delegate, ImageService fallback, Duration timeout,
+                                 int failureThreshold, Duration openDuration) {
+        this(delegate, fallback, timeout, failureThreshold, openDuration, DEFAULT_MAX_CONCURRENT_ATTEMPTS);
+    }
+
+    /**
+     * @param delegate              classifier being protected
+     * @param fallback              answers while the delegate cannot; null to repeat the last result
+     * @param timeout               deadline for each call, hedge included
+     * @param failureThreshold      failures in a row that open the circuit
+     * @param openDuration          how long the circuit stays open before a trial call
+     * @param maxConcurrentAttempts most delegate calls running at once, hedges and calls abandoned
+     *                              at their deadline included
+     */
+    public ResilientImageService(ImageService delegate, ImageService fallback, Duration timeout,
+                                 int failureThreshold, Duration openDuration, int maxConcurrentAttempts) {
+        this.delegate = Objects.requireNonNull(delegate, "ImageService cannot be null");
+        this.fallback = fallback;
+        Objects.requireNonNull(timeout, "Timeout cannot be null");
+        Objects.requireNonNull(openDuration, "Open duration cannot be null");
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("Timeout must be positive");
+        }
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        if (openDuration.isNegative()) {
+            throw new IllegalArgumentException("Open duration cannot be negative");
+        }
+        if (maxConcurrentAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt must be allowed at a time");
+        }
+        this.timeoutNanos = timeout.toNanos();
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+
+        int number = SERVICE_NUMBER.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        // No queue: an attempt that cannot start now would only start after its deadline
+        this.executor = new ThreadPoolExecutor(0, maxConcurrentAttempts, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "image-remote-" + number + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+        Boolean result = protect(image, frame -> delegate.imageContainsCat(frame, confidenceThreshold));
+        if (result == null) {
+            return fallback(image, confidenceThreshold);
+        }
+        lastResult = result;
+        return result;
+    }
+
+    /**
+     * Classifies through the same deadline, hedging and circuit as
+     * {@link #imageContainsCat(BufferedImage, float)}. When the delegate cannot answer, the
+     * fallback service classifies instead, or if there is none, the last classification the
+     * delegate gave is repeated.
+     */
+    @Override
+    public ClassificationResult classify(BufferedImage image) {
+        ClassificationResult result = protect(image, delegate::classify);
+        if (result == null) {
+            return fallbackClassification(image);
+        }
+        lastClassification = result;
+        return result;
+    }
+
+    // Null if the circuit turned the call away, or the delegate failed, missed the deadline or
+    // gave no result
+    private <T> T protect(BufferedImage image, Function<BufferedImage, T> attempt) {
+        boolean admitted;
+        boolean trial;
+        synchronized (this) {
+            if (circuitState == CircuitState.OPEN && System.nanoTime() - openedAt >= openDurationNanos) {
+                circuitState = CircuitState.HALF_OPEN;
+            }
+            trial = circuitState == CircuitState.HALF_OPEN && !trialInFlight;
+            admitted = circuitState == CircuitState.CLOSED || trial;
+            if (trial) {
+                trialInFlight = true;
+            }
+        }
+        if (!admitted) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        BufferedImage frame = copyOf(image);
+        T result = call(() -> attempt.apply(frame), start);
+        synchronized (this) {
+            if (trial) {
+                trialInFlight = false;
+            }
+            if (result != null) {
+                recordSuccess();
+            } else {
+                recordFailure();
+            }
+        }
+        if (result != null) {
+            recordLatency(System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    public CircuitState getCircuitState() {
+        synchronized (this) {
+            return circuitState;
+        }
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Calls that timed out or threw, including timeouts.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getHedgedCalls() {
+        return hedgedCalls.sum();
+    }
+
+    /**
+     * Hedged calls where the duplicate answered first.
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * Calls, and hedges, that did not start because {@code maxConcurrentAttempts} were running.
+     * A call turned away this way counts as a failure.
+     */
+    public long getRejectedAttempts() {
+        return rejectedAttempts.sum();
+    }
+
+    /**
+     * Returns the given percentile, between 0 and 100, of the latency of recent successful calls,
+     * or {@link Duration#ZERO} if there have been none.
+     */
+    public Duration getLatencyPercentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        return Duration.ofNanos(percentile(percentile));
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // Null if the delegate failed or missed the deadline
+    private <T> T call(Callable<T> task, long start) {
+        ExecutorCompletionService<T> calls = new ExecutorCompletionService<>(executor);
+        Future<T> primary;
+        try {
+            primary = calls.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedAttempts.increment();
+            log.warn("Image classification not attempted: {} calls already running", executor.getMaximumPoolSize());
+            return null;
+        }
+        Future<T> hedge = null;
+        long deadline = start + timeoutNanos;
+        long hedgeDelay = hedgeDelayNanos;
+        int outstanding = 1;
+        try {
+            if (hedgeDelay > 0 && hedgeDelay < timeoutNanos) {
+                Future<T> first = calls.poll(hedgeDelay, TimeUnit.NANOSECONDS);
+                if (first != null) {
+                    return first.get();
+                }
+                try {
+                    hedge = calls.submit(task);
+                    hedgedCalls.increment();
+                    outstanding++;
+                } catch (RejectedExecutionException e) {
+                    // Every thread is busy; keep waiting on the first call alone
+                    rejectedAttempts.increment();
+                }
+            }
+            while (outstanding > 0) {
+                Future<T> done = calls.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    timeouts.increment();
+                    log.warn("Image classification missed its {} ms deadline", TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+                    return null;
+                }
+                outstanding--;
+                try {
+                    T result = done.get();
+                    if (done == hedge) {
+                        hedgeWins.increment();
+                    }
+                    return result;
+                } catch (ExecutionException e) {
+                    // The other call, if any, may still succeed
+                    log.warn("Image classification failed", e.getCause());
+                }
+            }
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Image classification failed", e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    // The delegate's own copy, which an abandoned call may go on reading after the caller reused the original
+    private static BufferedImage copyOf(BufferedImage image) {
+        if (image == null) {
+            return null;
+        }
+        return new BufferedImage(image.getColorModel(), image.copyData(null), image.isAlphaPremultiplied(), null);
+    }
+
+    private boolean fallback(BufferedImage image, float confidenceThreshold) {
+        fallbacks.increment();
+        if (fallback != null) {
+            try {
+                return fallback.imageContainsCat(image, confidenceThreshold);
+            } catch (RuntimeException e) {
+                log.warn("Fallback image classification failed", e);
+            }
+        }
+        Boolean last = lastResult;
+        return last != null && last;
+    }
+
+    private ClassificationResult fallbackClassification(BufferedImage image) {
+        fallbacks.increment();
+        if (fallback != null) {
+            try {
+                ClassificationResult result = fallback.classify(image);
+                if (result != null) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Fallback image classification failed", e);
+            }
+        }
+        ClassificationResult last = lastClassification;
+        return last != null ? last : ClassificationResult.ofDecision(false, Duration.ZERO);
+    }
+
+    // Called holding this
+    private void recordSuccess() {
+        consecutiveFailures = 0;
+        if (circuitState != CircuitState.CLOSED) {
+            log.info("Image classification recovered, closing circuit");
+            circuitState = CircuitState.CLOSED;
+        }
+    }
+
+    // Called holding this
+    private void recordFailure() {
+        failures.increment();
+        consecutiveFailures++;
+        if (circuitState == CircuitState.HALF_OPEN
+                || (circuitState == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("Image classification failed {} times in a row, opening circuit for {} s",
+                    consecutiveFailures, TimeUnit.NANOSECONDS.toSeconds(openDurationNanos));
+            circuitState = CircuitState.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        boolean refresh;
+        synchronized (latencies) {
+            latencies[(int) (latencyCount % LATENCY_WINDOW)] = nanos;
+            latencyCount++;
+            refresh = latencyCount == MIN_SAMPLES_FOR_HEDGING
+                    || (latencyCount > MIN_SAMPLES_FOR_HEDGING && latencyCount % HEDGE_DELAY_REFRESH_INTERVAL == 0);
+        }
+        if (refresh) {
+            hedgeDelayNanos = percentile(95);
+        }
+    }
+
+    private long percentile(double percentile) {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW));
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+}
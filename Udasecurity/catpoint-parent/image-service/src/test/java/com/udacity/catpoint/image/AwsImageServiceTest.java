@@ -0,0 +1,82 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Label;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AwsImageServiceTest {
+
+    private final RekognitionClient client = mock(RekognitionClient.class);
+
+    @Test
+    void catLabel_shouldBeDetected() {
+        when(client.detectLabels(any(DetectLabelsRequest.class))).thenReturn(response("Cat", "Animal"));
+        AwsImageService service = new AwsImageService(client, 640, 0.8f);
+
+        assertTrue(service.imageContainsCat(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB), 50f));
+    }
+
+    @Test
+    void noCatLabel_shouldNotBeDetected() {
+        when(client.detectLabels(any(DetectLabelsRequest.class))).thenReturn(response("Dog", "Animal"));
+        AwsImageService service = new AwsImageService(client, 640, 0.8f);
+
+        assertFalse(service.imageContainsCat(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB), 50f));
+    }
+
+    @Test
+    void upload_shouldBeDownscaledJpegWithThreshold() throws IOException {
+        when(client.detectLabels(any(DetectLabelsRequest.class))).thenReturn(response());
+        AwsImageService service = new AwsImageService(client, 400, 0.8f);
+
+        service.imageContainsCat(new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_ARGB), 75f);
+
+        ArgumentCaptor<DetectLabelsRequest> request = ArgumentCaptor.forClass(DetectLabelsRequest.class);
+        verify(client).detectLabels(request.capture());
+        assertEquals(75f, request.getValue().minConfidence());
+        BufferedImage uploaded = ImageIO.read(new ByteArrayInputStream(request.getValue().image().bytes().asByteArray()));
+        assertEquals(400, uploaded.getWidth());
+        assertEquals(300, uploaded.getHeight());
+    }
+
+    @Test
+    void classify_shouldReportLabelsAndStrongestCatConfidence() {
+        DetectLabelsResponse response = DetectLabelsResponse.builder().labels(
+                Label.builder().name("Animal").confidence(98f).build(),
+                Label.builder().name("Cat").confidence(71f).build(),
+                Label.builder().name("Wildcat").confidence(35f).build()).build();
+        when(client.detectLabels(any(DetectLabelsRequest.class))).thenReturn(response);
+        AwsImageService service = new AwsImageService(client, 640, 0.8f);
+
+        ClassificationResult result = service.classify(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB));
+
+        assertEquals(71f, result.catConfidence());
+        assertEquals(List.of("Animal", "Cat", "Wildcat"), List.copyOf(result.labels().keySet()));
+        assertTrue(result.containsCat(70f));
+        assertFalse(result.containsCat(80f));
+        ArgumentCaptor<DetectLabelsRequest> request = ArgumentCaptor.forClass(DetectLabelsRequest.class);
+        verify(client).detectLabels(request.capture());
+        assertEquals(AwsImageService.MIN_LABEL_CONFIDENCE, request.getValue().minConfidence());
+    }
+
+    private static DetectLabelsResponse response(String... names) {
+        Label[] labels = new Label[names.length];
+        for (int i = 0; i < names.length; i++) {
+            labels[i] = Label.builder().name(names[i]).confidence(90f).build();
+        }
+        return DetectLabelsResponse.builder().labels(labels).build();
+    }
+}
@@ -0,0 +1,240 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingImageServiceTest {
+
+    private final AtomicInteger delegateCalls = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+    private final ImageService delegate = (image, confidenceThreshold) -> {
+        delegateCalls.incrementAndGet();
+        return true;
+    };
+
+    @Test
+    void nearDuplicateFrame_shouldReuseCachedResult() {
+        CachingImageService cache = cache(16, 4);
+        BufferedImage frame = gradient(false);
+        BufferedImage noisyFrame = gradient(false);
+        noisyFrame.setRGB(10, 10, 0xFFFFFF);
+
+        assertTrue(cache.imageContainsCat(frame, 50.0f));
+        assertTrue(cache.imageContainsCat(noisyFrame, 50.0f));
+
+        assertEquals(1, delegateCalls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void differentFrame_shouldCallDelegate() {
+        CachingImageService cache = cache(16, 4);
+
+        cache.imageContainsCat(gradient(false), 50.0f);
+        cache.imageContainsCat(gradient(true), 50.0f);
+
+        assertEquals(2, delegateCalls.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void differentThreshold_shouldCallDelegate() {
+        CachingImageService cache = cache(16, 4);
+        BufferedImage frame = gradient(false);
+
+        cache.imageContainsCat(frame, 50.0f);
+        cache.imageContainsCat(frame, 90.0f);
+
+        assertEquals(2, delegateCalls.get());
+    }
+
+    @Test
+    void classification_shouldBeReusedWhateverTheThreshold() {
+        ImageService scoring = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+                return classify(image).containsCat(confidenceThreshold);
+            }
+
+            @Override
+            public ClassificationResult classify(BufferedImage image) {
+                delegateCalls.incrementAndGet();
+                return new ClassificationResult(70f, Map.of("Cat", 70f), Duration.ofMillis(5));
+            }
+        };
+        CachingImageService cache = new CachingImageService(scoring, 16, Duration.ofSeconds(10), 4, clock::get);
+        BufferedImage frame = gradient(false);
+
+        ClassificationResult first = cache.classify(frame);
+        ClassificationResult second = cache.classify(frame);
+
+        assertSame(first, second);
+        assertTrue(second.containsCat(50.0f));
+        assertFalse(second.containsCat(90.0f));
+        assertEquals(1, delegateCalls.get());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void batchClassification_shouldOnlyPassMissesToDelegate() {
+        CachingImageService cache = cache(16, 4);
+        ClassificationResult cached = cache.classify(gradient(false));
+
+        List<ClassificationResult> results = cache.classifyAll(List.of(gradient(false), gradient(true)));
+
+        assertSame(cached, results.get(0));
+        assertTrue(results.get(1).containsCat(50.0f));
+        assertEquals(2, delegateCalls.get());
+        assertEquals(1, cache.getHits());
+        assertSame(results.get(1), cache.classify(gradient(true)));
+        assertEquals(2, delegateCalls.get());
+    }
+
+    @Test
+    void failedClassification_shouldNotBeCached() {
+        ImageService failingOnce = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+                return classify(image).containsCat(confidenceThreshold);
+            }
+
+            @Override
+            public ClassificationResult classify(BufferedImage image) {
+                if (delegateCalls.incrementAndGet() == 1) {
+                    throw new UncheckedIOException(new IOException("encoder failed"));
+                }
+                return new ClassificationResult(70f, Map.of("Cat", 70f), Duration.ofMillis(5));
+            }
+        };
+        CachingImageService cache = new CachingImageService(failingOnce, 16, Duration.ofSeconds(10), 4, clock::get);
+        BufferedImage frame = gradient(false);
+
+        assertThrows(UncheckedIOException.class, () -> cache.classify(frame));
+
+        assertTrue(cache.classify(frame).containsCat(50.0f));
+        assertEquals(2, delegateCalls.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    void expiredEntry_shouldCallDelegateAgain() {
+        CachingImageService cache = cache(16, 4);
+        BufferedImage frame = gradient(false);
+
+        cache.imageContainsCat(frame, 50.0f);
+        clock.addAndGet(Duration.ofSeconds(11).toNanos());
+        cache.imageContainsCat(frame, 50.0f);
+
+        assertEquals(2, delegateCalls.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void fullCache_shouldEvictLeastRecentlyUsed() {
+        CachingImageService cache = cache(1, 0);
+        BufferedImage first = gradient(false);
+        BufferedImage second = gradient(true);
+
+        cache.imageContainsCat(first, 50.0f);
+        cache.imageContainsCat(second, 50.0f);
+        cache.imageContainsCat(first, 50.0f);
+
+        assertEquals(3, delegateCalls.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void darkFrames_shouldNotBeCached() {
+        CachingImageService cache = cache(16, 4);
+        BufferedImage black = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        BufferedImage dim = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        dim.setRGB(45, 40, 0x010101);
+
+        cache.imageContainsCat(black, 50.0f);
+        cache.imageContainsCat(dim, 50.0f);
+        cache.classify(black);
+
+        assertEquals(3, delegateCalls.get());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void manyEntries_shouldStillFindTheNearDuplicate() {
+        CachingImageService cache = cache(256, 4);
+        for (int shift = 1; shift <= 100; shift++) {
+            cache.imageContainsCat(stripes(shift), 50.0f);
+        }
+        // Brightening the top left cell flips one hash bit
+        BufferedImage changedFrame = gradient(false);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                changedFrame.setRGB(x, y, 0x3C3C3C);
+            }
+        }
+        assertEquals(1, PerceptualHash.hammingDistance(PerceptualHash.dHash(gradient(false)), PerceptualHash.dHash(changedFrame)));
+        cache.imageContainsCat(gradient(false), 50.0f);
+        int calls = delegateCalls.get();
+
+        cache.imageContainsCat(changedFrame, 50.0f);
+
+        assertEquals(calls, delegateCalls.get());
+    }
+
+    @Test
+    void fingerprint_shouldReportLowGradientEnergyForFlatFrames() {
+        BufferedImage flat = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+
+        assertEquals(0.0, PerceptualHash.fingerprint(flat).gradientEnergy());
+        assertTrue(PerceptualHash.fingerprint(gradient(false)).gradientEnergy() > CachingImageService.MIN_GRADIENT_ENERGY);
+        assertEquals(PerceptualHash.dHash(gradient(false)), PerceptualHash.fingerprint(gradient(false)).hash());
+    }
+
+    @Test
+    void dHash_shouldBeStableAndDistinguishMirroredImages() {
+        long hash = PerceptualHash.dHash(gradient(false));
+
+        assertEquals(hash, PerceptualHash.dHash(gradient(false)));
+        assertTrue(PerceptualHash.hammingDistance(hash, PerceptualHash.dHash(gradient(true))) > 32);
+    }
+
+    private CachingImageService cache(int maxEntries, int maxHammingDistance) {
+        return new CachingImageService(delegate, maxEntries, Duration.ofSeconds(10), maxHammingDistance, clock::get);
+    }
+
+    // Blocks whose brightness pattern depends on the shift, so each shift hashes differently
+    private static BufferedImage stripes(int shift) {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int value = ((x / 10 * 7 + y / 10 * 3 + shift) * shift * 37) % 256;
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+
+    // Brightness ramp that rises left to right, or right to left when mirrored
+    private static BufferedImage gradient(boolean mirrored) {
+        BufferedImage image = new BufferedImage(90, 80, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int column = mirrored ? image.getWidth() - 1 - x : x;
+                int value = Math.min(255, column * 2 + (y / 10) * 3);
+                image.setRGB(x, y, value << 16 | value << 8 | value);
+            }
+        }
+        return image;
+    }
+}
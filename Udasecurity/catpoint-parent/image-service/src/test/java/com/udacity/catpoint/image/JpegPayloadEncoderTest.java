@@ -0,0 +1,105 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JpegPayloadEncoderTest {
+
+    @Test
+    void largeFrame_shouldBeScaledToMaxEdgeKeepingAspect() throws IOException {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(640, 0.8f);
+
+        BufferedImage decoded = decode(encoder.encode(frame(1920, 1080, BufferedImage.TYPE_INT_RGB)));
+
+        assertEquals(640, decoded.getWidth());
+        assertEquals(360, decoded.getHeight());
+    }
+
+    @Test
+    void smallFrame_shouldKeepItsSize() throws IOException {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(640, 0.8f);
+
+        BufferedImage decoded = decode(encoder.encode(frame(320, 240, BufferedImage.TYPE_3BYTE_BGR)));
+
+        assertEquals(320, decoded.getWidth());
+        assertEquals(240, decoded.getHeight());
+    }
+
+    @Test
+    void frameWithAlpha_shouldStillEncode() throws IOException {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(640, 0.8f);
+
+        BufferedImage decoded = decode(encoder.encode(frame(320, 240, BufferedImage.TYPE_INT_ARGB)));
+
+        assertEquals(320, decoded.getWidth());
+    }
+
+    @Test
+    void lowerQuality_shouldShrinkPayload() throws IOException {
+        BufferedImage frame = frame(640, 480, BufferedImage.TYPE_INT_RGB);
+
+        int high = new JpegPayloadEncoder(640, 0.95f).encode(frame).length;
+        int low = new JpegPayloadEncoder(640, 0.3f).encode(frame).length;
+
+        assertTrue(low < high, low + " >= " + high);
+    }
+
+    @Test
+    void repeatedAndConcurrentEncodes_shouldProduceSamePayload() throws Exception {
+        JpegPayloadEncoder encoder = new JpegPayloadEncoder(320, 0.8f);
+        BufferedImage frame = frame(1280, 720, BufferedImage.TYPE_INT_RGB);
+        byte[] expected = encoder.encode(frame);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> payloads = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                payloads.add(pool.submit(() -> encoder.encode(frame)));
+            }
+            for (Future<byte[]> payload : payloads) {
+                assertArrayEquals(expected, payload.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void constructor_shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new JpegPayloadEncoder(0, 0.8f));
+        assertThrows(IllegalArgumentException.class, () -> new JpegPayloadEncoder(640, 1.5f));
+        assertThrows(IllegalArgumentException.class, () -> new JpegPayloadEncoder(640, Float.NaN));
+    }
+
+    private static BufferedImage decode(byte[] payload) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(payload));
+        assertNotNull(image, "payload is not a readable image");
+        return image;
+    }
+
+    private static BufferedImage frame(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(i * 20, 255 - i * 20, (i * 67) % 256));
+            g.fillOval(i * width / 12, (i % 3) * height / 3, width / 8, height / 4);
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,57 @@
+package com.udacity.catpoint.image;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures per-image latency of {@link LocalImageService} on camera-sized frames. The model has
+ * random weights, which cost the same to evaluate as trained ones. Not a unit test; run
+ * {@link #main(String[])} by hand, e.g. from the IDE.
+ */
+public final class LocalImageServiceBenchmark {
+
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 2_000;
+
+    private LocalImageServiceBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int features = new HogDescriptor(64, 8, 9).featureCount();
+        float[] weights = new float[features];
+        for (int i = 0; i < features; i++) {
+            weights[i] = (float) random.nextGaussian();
+        }
+        LocalImageService service = new LocalImageService(new LinearCatModel(64, 8, 9, 0f, weights));
+
+        int[][] sizes = {{320, 240}, {640, 480}, {1280, 720}};
+        for (int[] size : sizes) {
+            BufferedImage frame = frame(size[0], size[1], random);
+            for (int i = 0; i < WARMUP; i++) {
+                service.classify(frame);
+            }
+            long[] latencies = new long[MEASURED];
+            for (int i = 0; i < MEASURED; i++) {
+                latencies[i] = service.classify(frame).latency().toNanos();
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%dx%d: median %.0f us, p99 %.0f us%n", size[0], size[1],
+                    latencies[MEASURED / 2] / 1e3, latencies[MEASURED * 99 / 100] / 1e3);
+        }
+    }
+
+    private static BufferedImage frame(int width, int height, Random random) {
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = frame.createGraphics();
+        for (int i = 0; i < 40; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        g.dispose();
+        return frame;
+    }
+}
@@ -0,0 +1,165 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalImageServiceTest {
+
+    private static final int WINDOW = 64;
+    private static final int CELL = 8;
+    private static final int BINS = 9;
+
+    @Test
+    void confidenceThreshold_shouldBeHonoured() {
+        // All-zero weights and bias: every image scores exactly 50%
+        LocalImageService service = new LocalImageService(model(0f, new float[featureCount()]));
+        BufferedImage image = stripes(true, WINDOW, WINDOW, BufferedImage.TYPE_INT_RGB);
+
+        ClassificationResult result = service.classify(image);
+        assertEquals(50f, result.catConfidence(), 0.001f);
+        assertEquals(List.of(LocalImageService.CAT_LABEL), List.copyOf(result.labels().keySet()));
+        assertTrue(service.imageContainsCat(image, 40f));
+        assertTrue(service.imageContainsCat(image, 50f));
+        assertFalse(service.imageContainsCat(image, 60f));
+    }
+
+    @Test
+    void model_shouldSeparateEdgeOrientations() {
+        // Weights pointing from horizontal stripes towards vertical stripes
+        float[] vertical = features(stripes(true, WINDOW, WINDOW, BufferedImage.TYPE_INT_RGB));
+        float[] horizontal = features(stripes(false, WINDOW, WINDOW, BufferedImage.TYPE_INT_RGB));
+        float[] weights = new float[featureCount()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = vertical[i] - horizontal[i];
+        }
+        LocalImageService service = new LocalImageService(model(0f, weights));
+
+        assertTrue(service.imageContainsCat(stripes(true, WINDOW, WINDOW, BufferedImage.TYPE_INT_RGB), 50f));
+        assertFalse(service.imageContainsCat(stripes(false, WINDOW, WINDOW, BufferedImage.TYPE_INT_RGB), 50f));
+        // Larger frames of another pixel layout are reduced to the same window
+        assertTrue(service.imageContainsCat(stripes(true, 640, 480, BufferedImage.TYPE_3BYTE_BGR), 50f));
+        assertFalse(service.imageContainsCat(stripes(false, 640, 480, BufferedImage.TYPE_3BYTE_BGR), 50f));
+    }
+
+    @Test
+    void predictions_shouldMatchAcrossThreads() throws Exception {
+        float[] weights = new float[featureCount()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (i % 7) - 3;
+        }
+        LocalImageService service = new LocalImageService(model(0.5f, weights));
+        BufferedImage image = stripes(true, 320, 240, BufferedImage.TYPE_INT_RGB);
+        float expected = service.classify(image).catConfidence();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Float>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(pool.submit(() -> service.classify(image).catConfidence()));
+            }
+            for (Future<Float> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(41, service.getClassifiedImages());
+        assertTrue(service.getAverageLatencyNanos() > 0);
+    }
+
+    @Test
+    void model_shouldRoundTripThroughStream() throws IOException {
+        float[] weights = new float[featureCount()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = i * 0.001f;
+        }
+        LinearCatModel model = model(-1.5f, weights);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.write(out);
+
+        assertEquals(model, LinearCatModel.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void read_shouldRejectOtherFiles() {
+        byte[] notAModel = {'{', '"', 'x', '"', ':', '1', '}', '\n'};
+
+        assertThrows(IOException.class, () -> LinearCatModel.read(new ByteArrayInputStream(notAModel)));
+        assertThrows(IOException.class, () -> LinearCatModel.fromResource("no-such-model.bin"));
+    }
+
+    @Test
+    void fromConfig_shouldLoadConfiguredModelFile(@TempDir Path dir) throws IOException {
+        LinearCatModel model = model(0f, new float[featureCount()]);
+        Path modelFile = dir.resolve("cat-model.bin");
+        try (OutputStream out = Files.newOutputStream(modelFile)) {
+            model.write(out);
+        }
+        Properties props = new Properties();
+
+        assertTrue(LocalImageService.fromConfig(props).isEmpty());
+
+        props.setProperty(LocalImageService.MODEL_PATH_KEY, modelFile.toString());
+        LocalImageService service = LocalImageService.fromConfig(props).orElseThrow();
+        assertEquals(50f, service.classify(stripes(true, WINDOW, WINDOW, BufferedImage.TYPE_INT_RGB)).catConfidence(), 0.001f);
+
+        props.setProperty(LocalImageService.MODEL_PATH_KEY, dir.resolve("missing.bin").toString());
+        assertThrows(IOException.class, () -> LocalImageService.fromConfig(props));
+    }
+
+    @Test
+    void constructor_shouldRejectWeightsForAnotherLayout() {
+        assertThrows(IllegalArgumentException.class, () -> model(0f, new float[featureCount() - 1]));
+        assertThrows(IllegalArgumentException.class, () -> new LinearCatModel(60, CELL, BINS, 0f, new float[1]));
+    }
+
+    private static LinearCatModel model(float bias, float[] weights) {
+        return new LinearCatModel(WINDOW, CELL, BINS, bias, weights);
+    }
+
+    private static int featureCount() {
+        return new HogDescriptor(WINDOW, CELL, BINS).featureCount();
+    }
+
+    // A window-sized image maps one to one onto the HOG window
+    private static float[] features(BufferedImage image) {
+        HogDescriptor descriptor = new HogDescriptor(WINDOW, CELL, BINS);
+        float[] window = new float[WINDOW * WINDOW];
+        for (int y = 0; y < WINDOW; y++) {
+            for (int x = 0; x < WINDOW; x++) {
+                window[y * WINDOW + x] = PerceptualHash.luma(image.getRGB(x, y));
+            }
+        }
+        float[] features = new float[descriptor.featureCount()];
+        descriptor.compute(window, new float[descriptor.histogramLength()], features);
+        return features;
+    }
+
+    // Black and white stripes, four window pixels wide
+    private static BufferedImage stripes(boolean vertical, int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int position = vertical ? x * WINDOW / width : y * WINDOW / height;
+                image.setRGB(x, y, (position / 4) % 2 == 0 ? 0x000000 : 0xFFFFFF);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,71 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MotionGateTest {
+
+    private final MotionGate gate = new MotionGate();
+
+    @Test
+    void firstFrame_shouldPass() {
+        assertTrue(gate.hasMotion("camera", scene(BufferedImage.TYPE_INT_RGB, false)));
+    }
+
+    @Test
+    void staticFrame_shouldBeSkipped() {
+        gate.hasMotion("camera", scene(BufferedImage.TYPE_INT_RGB, false));
+
+        assertFalse(gate.hasMotion("camera", scene(BufferedImage.TYPE_INT_RGB, false)));
+        assertEquals(1, gate.getPassedFrames());
+        assertEquals(1, gate.getSkippedFrames());
+    }
+
+    @Test
+    void changedFrame_shouldPassForEveryPixelLayout() {
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY};
+        for (int type : types) {
+            MotionGate typeGate = new MotionGate();
+            typeGate.hasMotion("camera", scene(type, false));
+
+            assertFalse(typeGate.hasMotion("camera", scene(type, false)), "static, type " + type);
+            assertTrue(typeGate.hasMotion("camera", scene(type, true)), "moved, type " + type);
+        }
+    }
+
+    @Test
+    void sources_shouldBeComparedSeparately() {
+        gate.hasMotion("front", scene(BufferedImage.TYPE_INT_RGB, false));
+
+        assertTrue(gate.hasMotion("back", scene(BufferedImage.TYPE_INT_RGB, false)));
+        assertFalse(gate.hasMotion("front", scene(BufferedImage.TYPE_INT_RGB, false)));
+    }
+
+    @Test
+    void reset_shouldLetNextFramePass() {
+        gate.hasMotion("camera", scene(BufferedImage.TYPE_INT_RGB, false));
+        gate.reset("camera");
+
+        assertTrue(gate.hasMotion("camera", scene(BufferedImage.TYPE_INT_RGB, false)));
+    }
+
+    // Gray room; when catPresent, a bright block covering a few percent of the frame
+    private static BufferedImage scene(int type, boolean catPresent) {
+        BufferedImage image = new BufferedImage(320, 240, type);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.GRAY);
+        graphics.fillRect(0, 0, 320, 240);
+        if (catPresent) {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(40, 40, 60, 50);
+        }
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,220 @@
+package com.udacity.catpoint.image;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientImageServiceTest {
+
+    private final BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+    private final ImageService fallbackService = (image, confidenceThreshold) -> false;
+    private ResilientImageService service;
+
+    @AfterEach
+    void close() {
+        if (service != null) {
+            service.close();
+        }
+    }
+
+    @Test
+    void slowCall_shouldMissDeadlineAndRepeatLastResult() {
+        SimulatedBackend backend = new SimulatedBackend(call -> call == 1 ? 0 : 2_000);
+        service = new ResilientImageService(backend, null, Duration.ofMillis(100), 5, Duration.ofSeconds(30));
+        assertTrue(service.imageContainsCat(image, 50f));
+
+        long start = System.nanoTime();
+        assertTrue(service.imageContainsCat(image, 50f));
+
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos(), "waited for the slow call");
+        assertEquals(1, service.getTimeouts());
+        assertEquals(1, service.getFallbacks());
+    }
+
+    @Test
+    void repeatedFailures_shouldOpenCircuitAndUseFallback() {
+        SimulatedBackend backend = new SimulatedBackend(call -> -1);
+        service = new ResilientImageService(backend, fallbackService, Duration.ofSeconds(1), 3, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(service.imageContainsCat(image, 50f));
+        }
+
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+        assertEquals(3, backend.calls.get());
+        assertEquals(3, service.getFailures());
+        assertEquals(5, service.getFallbacks());
+    }
+
+    @Test
+    void trialCall_shouldCloseCircuitOnceBackendRecovers() throws InterruptedException {
+        // Fails three times, then recovers
+        SimulatedBackend backend = new SimulatedBackend(call -> call <= 3 ? -1 : 0);
+        service = new ResilientImageService(backend, fallbackService, Duration.ofSeconds(1), 3, Duration.ofMillis(50));
+        for (int i = 0; i < 3; i++) {
+            service.imageContainsCat(image, 50f);
+        }
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+
+        Thread.sleep(80);
+
+        assertTrue(service.imageContainsCat(image, 50f));
+        assertEquals(ResilientImageService.CircuitState.CLOSED, service.getCircuitState());
+    }
+
+    @Test
+    void failedTrialCall_shouldReopenCircuit() throws InterruptedException {
+        SimulatedBackend backend = new SimulatedBackend(call -> -1);
+        service = new ResilientImageService(backend, fallbackService, Duration.ofSeconds(1), 2, Duration.ofMillis(50));
+        service.imageContainsCat(image, 50f);
+        service.imageContainsCat(image, 50f);
+
+        Thread.sleep(80);
+        service.imageContainsCat(image, 50f);
+
+        assertEquals(ResilientImageService.CircuitState.OPEN, service.getCircuitState());
+        assertEquals(3, backend.calls.get());
+    }
+
+    @Test
+    void stragglingCall_shouldBeHedged() {
+        // Enough quick calls to learn the p95, then one call that stalls while its duplicate is quick
+        SimulatedBackend backend = new SimulatedBackend(call -> 5);
+        service = new ResilientImageService(backend, fallbackService, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+        for (int i = 0; i < 40; i++) {
+            service.imageContainsCat(image, 50f);
+        }
+        long hedgedBefore = service.getHedgedCalls();
+        long winsBefore = service.getHedgeWins();
+        backend.stallNextCall.set(true);
+
+        long start = System.nanoTime();
+        assertTrue(service.imageContainsCat(image, 50f));
+
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos(), "waited for the straggler");
+        assertEquals(hedgedBefore + 1, service.getHedgedCalls());
+        assertEquals(winsBefore + 1, service.getHedgeWins());
+        assertEquals(0, service.getFallbacks());
+    }
+
+    @Test
+    void latencyPercentiles_shouldReflectSuccessfulCalls() {
+        SimulatedBackend backend = new SimulatedBackend(call -> call % 10 == 0 ? 60 : 1);
+        service = new ResilientImageService(backend, fallbackService, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+        assertEquals(Duration.ZERO, service.getLatencyPercentile(99));
+
+        for (int i = 0; i < 20; i++) {
+            service.imageContainsCat(image, 50f);
+        }
+
+        assertTrue(service.getLatencyPercentile(50).toMillis() < 30);
+        assertTrue(service.getLatencyPercentile(99).toMillis() >= 50);
+        assertThrows(IllegalArgumentException.class, () -> service.getLatencyPercentile(101));
+    }
+
+    @Test
+    void failedClassification_shouldRepeatLastClassification() {
+        SimulatedBackend backend = new SimulatedBackend(call -> call == 1 ? 0 : -1);
+        service = new ResilientImageService(backend, null, Duration.ofSeconds(1), 5, Duration.ofMinutes(1));
+        ClassificationResult first = service.classify(image);
+
+        assertSame(first, service.classify(image));
+        assertEquals(1, service.getFailures());
+        assertEquals(1, service.getFallbacks());
+    }
+
+    @Test
+    void abandonedCall_shouldNotSeeTheCallerReuseTheImage() throws InterruptedException {
+        CountDownLatch abandoned = new CountDownLatch(1);
+        AtomicInteger pixelRead = new AtomicInteger();
+        CountDownLatch read = new CountDownLatch(1);
+        ImageService lingering = (frame, confidenceThreshold) -> {
+            // Ignores the interrupt, as an encoder reading the frame might
+            while (abandoned.getCount() > 0) {
+                try {
+                    abandoned.await();
+                } catch (InterruptedException e) {
+                    // Keep going
+                }
+            }
+            pixelRead.set(frame.getRGB(0, 0));
+            read.countDown();
+            return true;
+        };
+        service = new ResilientImageService(lingering, fallbackService, Duration.ofMillis(50), 5, Duration.ofMinutes(1));
+        BufferedImage frame = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        frame.setRGB(0, 0, 0x112233);
+
+        assertFalse(service.imageContainsCat(frame, 50f));
+        frame.setRGB(0, 0, 0xFFFFFF);
+        abandoned.countDown();
+
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        assertEquals(0x112233, pixelRead.get() & 0xFFFFFF);
+    }
+
+    @Test
+    void busyAttempts_shouldTurnNewCallsAwayWithoutWaiting() {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService stuck = (frame, confidenceThreshold) -> {
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Holds its thread past the deadline
+                }
+            }
+            return true;
+        };
+        service = new ResilientImageService(stuck, fallbackService, Duration.ofMillis(500), 5, Duration.ofMinutes(1), 1);
+        try {
+            assertFalse(service.imageContainsCat(image, 50f));
+
+            long start = System.nanoTime();
+            assertFalse(service.imageContainsCat(image, 50f));
+
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(250).toNanos(), "waited for a thread");
+            assertEquals(1, service.getRejectedAttempts());
+            assertEquals(2, service.getFailures());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    // Always sees a cat; the delay function maps the call number (from 1) to milliseconds to
+    // wait, or to a negative number to fail the call. The next call after stallNextCall is set
+    // takes two seconds instead.
+    private static final class SimulatedBackend implements ImageService {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicBoolean stallNextCall = new AtomicBoolean();
+        private final IntUnaryOperator delayMillis;
+
+        private SimulatedBackend(IntUnaryOperator delayMillis) {
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+            int delay = stallNextCall.compareAndSet(true, false) ? 2_000 : delayMillis.applyAsInt(calls.incrementAndGet());
+            if (delay < 0) {
+                throw new IllegalStateException("backend unavailable");
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("call abandoned", e);
+            }
+            return true;
+        }
+    }
+}
@@ -3,15 +3,26 @@ package com.udacity.catpoint.security.application;
 import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.image.LocalImageService;
+import com.udacity.catpoint.security.service.ClassificationExecutor;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
 import javax.swing.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
 
 public class CatpointGui extends JFrame {
-    private final transient SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private final transient FakeImageService imageService = new FakeImageService();
-    private final transient SecurityService securityService = new SecurityService(securityRepository, imageService);
+    private final transient SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl(Duration.ofMillis(500), 64);
+    private final transient ImageService imageService = createImageService();
+    private final transient ClassificationExecutor classificationExecutor =
+            new ClassificationExecutor(1, 4, ClassificationExecutor.BackpressurePolicy.DROP_OLDEST);
+    private final transient SecurityService securityService =
+            new SecurityService(securityRepository, imageService, classificationExecutor);
     private final DisplayPanel displayPanel = new DisplayPanel(securityService);
     private final ControlPanel controlPanel = new ControlPanel(securityService);
     private final SensorPanel sensorPanel = new SensorPanel(securityService);
@@ -22,6 +33,14 @@ public class CatpointGui extends JFrame {
         setSize(600, 850);
         setTitle("Very Secure App");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                // Write out anything the repository is still holding before the JVM exits
+                classificationExecutor.close();
+                securityRepository.close();
+            }
+        });
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
@@ -32,4 +51,20 @@ public class CatpointGui extends JFrame {
 
         getContentPane().add(mainPanel);
     }
+
+    /**
+     * Uses the offline model named by the {@value LocalImageService#MODEL_PATH_KEY} system
+     * property, e.g. {@code -Dlocal.modelPath=cat-model.bin}, and the fake service otherwise.
+     */
+    private static ImageService createImageService() {
+        try {
+            Optional<LocalImageService> localService = LocalImageService.fromConfig(System.getProperties());
+            if (localService.isPresent()) {
+                return localService.get();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not load the cat model, using the fake image service: " + e.getMessage());
+        }
+        return new FakeImageService();
+    }
 }
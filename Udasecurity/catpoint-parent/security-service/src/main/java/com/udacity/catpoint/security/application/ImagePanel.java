@@ -12,12 +12,16 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 public final class ImagePanel extends JPanel implements StatusListener {
     private final SecurityService securityService;
     private final JLabel cameraHeader;
     private final JLabel cameraLabel;
-    private BufferedImage currentCameraImage;
+    private final ImageIcon previewIcon = new ImageIcon();
+    private final PreviewRenderer previewRenderer;
+    private volatile BufferedImage currentCameraImage;
 
     private static final int IMAGE_WIDTH = 300;
     private static final int IMAGE_HEIGHT = 225;
@@ -38,6 +42,7 @@ public final class ImagePanel extends JPanel implements StatusListener {
         cameraLabel.setBackground(Color.WHITE);
         cameraLabel.setPreferredSize(new Dimension(IMAGE_WIDTH, IMAGE_HEIGHT));
         cameraLabel.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
+        this.previewRenderer = new PreviewRenderer(IMAGE_WIDTH, IMAGE_HEIGHT, this::showPreview);
 
         // Button to select new image
         JButton addPictureButton = createAddPictureButton();
@@ -66,27 +71,49 @@ public final class ImagePanel extends JPanel implements StatusListener {
                     if (selectedFile != null) {
                         BufferedImage image = ImageIO.read(selectedFile);
                         if (image != null) {
-                            currentCameraImage = image;
-                            Image scaledImage = new ImageIcon(image)
-                                    .getImage()
-                                    .getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH);
-                            cameraLabel.setIcon(new ImageIcon(scaledImage));
+                            showCameraImage(image);
                         }
                     }
                 } catch (IOException ioe) {
                     JOptionPane.showMessageDialog(null, "Invalid image selected: " + ioe.getMessage());
                 }
-                repaint();
             }
         });
         return button;
     }
 
+    /**
+     * Makes the image the one scanned next and shows it once its preview is ready. May be called
+     * from any thread, as often as a camera delivers frames; frames arriving faster than previews
+     * can be drawn are skipped.
+     */
+    public void showCameraImage(BufferedImage image) {
+        currentCameraImage = Objects.requireNonNull(image, "Image cannot be null");
+        previewRenderer.submit(image);
+    }
+
+    // Runs on the EDT with a preview the renderer will not touch until this is next called
+    private void showPreview(BufferedImage preview) {
+        previewIcon.setImage(preview);
+        if (cameraLabel.getIcon() != previewIcon) {
+            cameraLabel.setIcon(previewIcon);
+        }
+        cameraLabel.repaint();
+    }
+
     private JButton createScanPictureButton() {
         JButton button = new JButton("Scan Picture");
         button.addActionListener(e -> {
             if (currentCameraImage != null) {
-                securityService.processImage(currentCameraImage);
+                // Classify off the EDT; listeners hop back onto it to update the UI
+                securityService.processImageAsync(currentCameraImage).whenComplete((detected, error) -> {
+                    // Failures of a dependent stage arrive wrapped; a cancelled frame was dropped, not failed
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause != null && !(cause instanceof CancellationException)) {
+                        EventQueue.invokeLater(() ->
+                                JOptionPane.showMessageDialog(null, "Unable to scan picture: " + cause.getMessage()));
+                    }
+                });
             } else {
                 JOptionPane.showMessageDialog(null, "No image selected to scan");
             }
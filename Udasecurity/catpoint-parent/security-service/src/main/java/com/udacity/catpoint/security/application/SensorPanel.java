@@ -20,6 +20,7 @@ public final class SensorPanel extends JPanel {
     private final JButton addNewSensorButton = new JButton("Add New Sensor");
 
     private final JPanel sensorListPanel;
+    private long renderedSensorsVersion = -1;
     private final JPanel newSensorPanel;
 
     public SensorPanel(SecurityService securityService) {
@@ -73,6 +74,12 @@ public final class SensorPanel extends JPanel {
     }
 
     private void updateSensorList(JPanel panel) {
+        // Nothing to redraw if the repository has not changed since the last pass
+        long sensorsVersion = securityService.getSensorsVersion();
+        if (sensorsVersion == renderedSensorsVersion) {
+            return;
+        }
+        renderedSensorsVersion = sensorsVersion;
         panel.removeAll();
         securityService.getSensors().stream()
                 .sorted()
@@ -98,7 +105,8 @@ public final class SensorPanel extends JPanel {
     }
 
     private void setSensorActivity(Sensor sensor, boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
+        // By id: the listed sensor belongs to the repository's snapshot and is not changed in place
+        securityService.changeSensorActivationStatus(sensor.getSensorId(), isActive);
         updateSensorList();
     }
 
@@ -6,4 +6,11 @@ public interface StatusListener {
     void notify(AlarmStatus status);
     void catDetected(boolean catDetected);
     void sensorStatusChanged();
-}
\ No newline at end of file
+
+    /**
+     * Called when one camera's detection result is applied, before
+     * {@link #catDetected(boolean)} reports whether any camera sees a cat.
+     */
+    default void catDetected(String cameraId, boolean catDetected) {
+    }
+}
@@ -0,0 +1,56 @@
+package com.udacity.catpoint.security.data;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * When a file-backed repository forces written records to the storage device, trading
+ * durability of acknowledged writes against write latency and throughput.
+ *
+ * @param mode                how writes are synced
+ * @param groupCommitInterval how often pending writes are synced in {@link Mode#GROUP_COMMIT}
+ *                            mode; {@code null} for the other modes
+ */
+public record DurabilityPolicy(Mode mode, Duration groupCommitInterval) {
+
+    public enum Mode {
+        /**
+         * A write returns only once it is on disk. Writers that arrive while a sync is in flight
+         * share the next one, so concurrent writers cost one {@code force()} per batch.
+         */
+        SYNC_EVERY_WRITE,
+        /**
+         * A write returns once handed to the OS; a background sync runs every interval, so at
+         * most one interval of acknowledged writes can be lost on power failure.
+         */
+        GROUP_COMMIT,
+        /**
+         * Records are only synced on flush and close; the OS decides when data reaches disk.
+         */
+        OS_MANAGED
+    }
+
+    public DurabilityPolicy {
+        Objects.requireNonNull(mode, "Mode cannot be null");
+        if (mode == Mode.GROUP_COMMIT) {
+            Objects.requireNonNull(groupCommitInterval, "Group commit interval cannot be null");
+            if (groupCommitInterval.isNegative() || groupCommitInterval.isZero()) {
+                throw new IllegalArgumentException("Group commit interval must be positive");
+            }
+        } else if (groupCommitInterval != null) {
+            throw new IllegalArgumentException("Only group commit takes an interval");
+        }
+    }
+
+    public static DurabilityPolicy syncEveryWrite() {
+        return new DurabilityPolicy(Mode.SYNC_EVERY_WRITE, null);
+    }
+
+    public static DurabilityPolicy groupCommit(Duration interval) {
+        return new DurabilityPolicy(Mode.GROUP_COMMIT, interval);
+    }
+
+    public static DurabilityPolicy osManaged() {
+        return new DurabilityPolicy(Mode.OS_MANAGED, null);
+    }
+}
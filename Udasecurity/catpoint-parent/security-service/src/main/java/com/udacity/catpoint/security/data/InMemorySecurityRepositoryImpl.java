@@ -0,0 +1,96 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Security repository that keeps all state in memory and persists nothing. Every instance owns
+ * its own sensor store and status fields, so many instances (one per premise) can be hosted in
+ * one process without sharing a lock. An idle instance holds no sensors and allocates no
+ * buffers; it only carries the empty store and two status references.
+ */
+public final class InMemorySecurityRepositoryImpl implements SecurityRepository {
+
+    private final SensorStore sensors;
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    public InMemorySecurityRepositoryImpl() {
+        this(List.of());
+    }
+
+    public InMemorySecurityRepositoryImpl(Collection<Sensor> initialSensors) {
+        this.sensors = new SensorStore(Objects.requireNonNull(initialSensors, "Sensors cannot be null"));
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.add(Objects.requireNonNull(sensor, "Sensor cannot be null"));
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(Objects.requireNonNull(sensor, "Sensor cannot be null"));
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        sensors.update(Objects.requireNonNull(sensor, "Sensor cannot be null"));
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensorBatch) {
+        Objects.requireNonNull(sensorBatch, "Sensors cannot be null");
+        sensorBatch.forEach(sensor -> Objects.requireNonNull(sensor, "Sensor cannot be null"));
+        sensors.updateAll(sensorBatch);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = Objects.requireNonNull(alarmStatus, "AlarmStatus cannot be null");
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = Objects.requireNonNull(armingStatus, "ArmingStatus cannot be null");
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors.sensors();
+    }
+
+    @Override
+    public long getSensorsVersion() {
+        return sensors.version();
+    }
+
+    @Override
+    public Optional<Sensor> findSensor(UUID sensorId) {
+        return sensors.find(sensorId);
+    }
+
+    @Override
+    public Set<Sensor> sensorsByType(SensorType sensorType) {
+        return sensors.byType(sensorType);
+    }
+
+    @Override
+    public Set<Sensor> activeSensors() {
+        return sensors.active();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+}
@@ -0,0 +1,749 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Security repository that records every mutation as a small binary record appended to a
+ * journal file. A write appends its own records and updates the in-memory {@link SensorStore},
+ * which costs O(log n) in the number of sensors; it never rewrites the stored state.
+ *
+ * <p>Once the journal holds {@code compactionThreshold} records it is renamed aside and a fresh
+ * journal is started, which is all the writer that crossed the threshold pays. A background
+ * thread then writes the state as of the rename to a snapshot file and deletes the renamed
+ * journal, which keeps restart time bounded: startup loads the snapshot and replays only the
+ * journal tail. If the process stops before the snapshot is in place, startup replays the
+ * renamed journal as well and finishes the compaction itself.
+ *
+ * <p>Each journal record is framed as {@code [int length][int crc32][payload]}. A torn record at
+ * the end of the journal (for example after a crash mid-write) is detected by its checksum and
+ * discarded on the next startup.
+ *
+ * <p>When records are forced to disk is governed by a {@link DurabilityPolicy}. Syncs are
+ * tracked by a running count of appended bytes: a sync covers everything appended before it
+ * started, so writers waiting on the same sync never force again.
+ */
+public final class JournalSecurityRepositoryImpl implements SecurityRepository {
+
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+    static final String JOURNAL_FILE = "security.journal";
+    static final String SNAPSHOT_FILE = "security.snapshot";
+    static final String COMPACTING_FILE = "security.journal.compacting";
+
+    // Record types
+    private static final byte PUT_SENSOR = 1;
+    private static final byte REMOVE_SENSOR = 2;
+    private static final byte ALARM_STATUS = 3;
+    private static final byte ARMING_STATUS = 4;
+
+    private static final int SNAPSHOT_MAGIC = 0x43505331; // "CPS1"
+    private static final int FRAME_HEADER_BYTES = Integer.BYTES * 2;
+    // type + uuid + sensor type + active flag + name length
+    private static final int SENSOR_FIXED_BYTES = 1 + Long.BYTES * 2 + 1 + 1 + Integer.BYTES;
+
+    private final Path journalPath;
+    private final Path snapshotPath;
+    private final Path compactingPath;
+    private final int compactionThreshold;
+    private final Object writeLock = new Object();
+    private final CRC32 crc = new CRC32();
+
+    private final DurabilityPolicy durability;
+    // Null unless the policy is group commit
+    private final ScheduledExecutorService syncer;
+    private final Object syncLock = new Object();
+    // Total bytes ever appended, written under writeLock; never reset by compaction
+    private volatile long appendedBytes;
+    // Guarded by syncLock
+    private long durableBytes;
+    private boolean syncInProgress;
+
+    // Writes snapshots off the write path; its thread exits while there is nothing to compact
+    private final ThreadPoolExecutor compactor;
+    // Set under writeLock; the compaction in progress, or the last one
+    private CompletableFuture<Void> compaction = CompletableFuture.completedFuture(null);
+
+    private final SensorStore sensors;
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private volatile ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    // Swapped under writeLock and syncLock, so a sync sees the channels its bytes went to
+    private volatile FileChannel journal;
+    // Journal renamed aside until its compaction finishes; null otherwise
+    private volatile FileChannel rotated;
+    private ByteBuffer recordBuffer = ByteBuffer.allocateDirect(256);
+    private int recordsSinceCompaction;
+
+    public JournalSecurityRepositoryImpl(Path directory) {
+        this(directory, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param directory           directory holding the journal and snapshot files; created if missing
+     * @param compactionThreshold number of journal records after which the journal is folded into a snapshot
+     */
+    public JournalSecurityRepositoryImpl(Path directory, int compactionThreshold) {
+        this(directory, compactionThreshold, DurabilityPolicy.osManaged());
+    }
+
+    /**
+     * @param directory           directory holding the journal and snapshot files; created if missing
+     * @param compactionThreshold number of journal records after which the journal is folded into a snapshot
+     * @param durability          when appended records are forced to disk
+     */
+    public JournalSecurityRepositoryImpl(Path directory, int compactionThreshold, DurabilityPolicy durability) {
+        Objects.requireNonNull(directory, "Directory cannot be null");
+        this.durability = Objects.requireNonNull(durability, "DurabilityPolicy cannot be null");
+        if (compactionThreshold < 1) {
+            throw new IllegalArgumentException("Compaction threshold must be at least 1");
+        }
+        this.journalPath = directory.resolve(JOURNAL_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.compactingPath = directory.resolve(COMPACTING_FILE);
+        this.compactionThreshold = compactionThreshold;
+
+        Map<UUID, Sensor> loadedSensors = new LinkedHashMap<>();
+        try {
+            Files.createDirectories(directory);
+            loadSnapshot(loadedSensors);
+            finishInterruptedCompaction(loadedSensors);
+            this.journal = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replayJournal(loadedSensors);
+            journal.position(journal.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open security journal in " + directory, e);
+        }
+        this.sensors = new SensorStore(loadedSensors.values());
+        this.compactor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "security-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        compactor.allowCoreThreadTimeOut(true);
+
+        if (durability.mode() == DurabilityPolicy.Mode.GROUP_COMMIT) {
+            this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "security-journal-syncer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(durability.groupCommitInterval().toNanos()));
+            syncer.scheduleWithFixedDelay(this::groupCommit, intervalMicros, intervalMicros, TimeUnit.MICROSECONDS);
+        } else {
+            this.syncer = null;
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "Sensor cannot be null");
+        long appended;
+        synchronized (writeLock) {
+            appended = appendSensor(PUT_SENSOR, sensor);
+            sensors.add(sensor);
+            compactIfNeeded();
+        }
+        commit(appended);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "Sensor cannot be null");
+        long appended;
+        synchronized (writeLock) {
+            appended = appendSensor(REMOVE_SENSOR, sensor);
+            sensors.remove(sensor);
+            compactIfNeeded();
+        }
+        commit(appended);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        Objects.requireNonNull(sensor, "Sensor cannot be null");
+        long appended;
+        synchronized (writeLock) {
+            appended = appendSensor(PUT_SENSOR, sensor);
+            sensors.update(sensor);
+            compactIfNeeded();
+        }
+        commit(appended);
+    }
+
+    /**
+     * Appends one record per sensor, all in a single write.
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> sensorBatch) {
+        Objects.requireNonNull(sensorBatch, "Sensors cannot be null");
+        sensorBatch.forEach(sensor -> Objects.requireNonNull(sensor, "Sensor cannot be null"));
+        long appended;
+        synchronized (writeLock) {
+            appended = appendSensors(PUT_SENSOR, sensorBatch);
+            sensors.updateAll(sensorBatch);
+            compactIfNeeded();
+        }
+        commit(appended);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        Objects.requireNonNull(alarmStatus, "AlarmStatus cannot be null");
+        long appended;
+        synchronized (writeLock) {
+            appended = appendStatus(ALARM_STATUS, alarmStatus.ordinal());
+            this.alarmStatus = alarmStatus;
+            compactIfNeeded();
+        }
+        commit(appended);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        Objects.requireNonNull(armingStatus, "ArmingStatus cannot be null");
+        long appended;
+        synchronized (writeLock) {
+            appended = appendStatus(ARMING_STATUS, armingStatus.ordinal());
+            this.armingStatus = armingStatus;
+            compactIfNeeded();
+        }
+        commit(appended);
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return sensors.sensors();
+    }
+
+    @Override
+    public long getSensorsVersion() {
+        return sensors.version();
+    }
+
+    @Override
+    public Optional<Sensor> findSensor(UUID sensorId) {
+        return sensors.find(sensorId);
+    }
+
+    @Override
+    public Set<Sensor> sensorsByType(SensorType sensorType) {
+        return sensors.byType(sensorType);
+    }
+
+    @Override
+    public Set<Sensor> activeSensors() {
+        return sensors.active();
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durability;
+    }
+
+    /**
+     * Forces appended records to the storage device, whatever the durability policy.
+     */
+    @Override
+    public void flush() {
+        if (journal.isOpen()) {
+            syncTo(appendedBytes);
+        }
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot and waits until it is written. Compaction runs in
+     * the background once the compaction threshold is reached; calling this directly, e.g.
+     * before shutdown, also folds in every record appended so far.
+     */
+    public void compact() {
+        while (true) {
+            await(currentCompaction());
+            CompletableFuture<Void> started;
+            synchronized (writeLock) {
+                if (rotated != null) {
+                    // A writer started another one meanwhile; wait for it and go again
+                    continue;
+                }
+                started = startCompaction();
+            }
+            await(started);
+            return;
+        }
+    }
+
+    /**
+     * Waits for a group commit or compaction in progress to finish, forces everything appended
+     * to disk and closes the journal.
+     */
+    @Override
+    public void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+            try {
+                if (!syncer.awaitTermination(5, TimeUnit.SECONDS)) {
+                    System.err.println("Security journal syncer did not stop; closing anyway");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.err.println("Security journal compaction did not finish; the next start completes it");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (writeLock) {
+            if (!journal.isOpen()) {
+                return;
+            }
+            // Through syncTo, so a flush() still forcing finishes before the channel closes
+            syncTo(appendedBytes);
+            try {
+                journal.close();
+                FileChannel pending = rotated;
+                if (pending != null) {
+                    pending.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to close security journal", e);
+            }
+        }
+    }
+
+    private void commit(long appended) {
+        if (durability.mode() == DurabilityPolicy.Mode.SYNC_EVERY_WRITE) {
+            syncTo(appended);
+        }
+    }
+
+    private void groupCommit() {
+        try {
+            if (journal.isOpen()) {
+                syncTo(appendedBytes);
+            }
+        } catch (UncheckedIOException e) {
+            // Keep the schedule alive; the next interval retries
+            System.err.println("Error syncing security journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns once everything up to {@code target} appended bytes is on disk. The first caller to
+     * find no sync in flight forces all bytes appended so far; callers arriving meanwhile wait
+     * for it and only force again if their records were appended after it started.
+     */
+    private void syncTo(long target) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long covered;
+                FileChannel pending;
+                FileChannel current;
+                synchronized (syncLock) {
+                    while (syncInProgress && durableBytes < target) {
+                        try {
+                            syncLock.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (durableBytes >= target) {
+                        return;
+                    }
+                    syncInProgress = true;
+                    covered = appendedBytes;
+                    pending = rotated;
+                    current = journal;
+                }
+                boolean synced = false;
+                try {
+                    if (pending != null) {
+                        forceRotated(pending);
+                    }
+                    current.force(false);
+                    synced = true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Unable to sync security journal", e);
+                } finally {
+                    synchronized (syncLock) {
+                        syncInProgress = false;
+                        if (synced) {
+                            durableBytes = Math.max(durableBytes, covered);
+                        }
+                        syncLock.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void forceRotated(FileChannel pending) throws IOException {
+        try {
+            pending.force(false);
+        } catch (ClosedChannelException e) {
+            // The compactor closes it only after forcing it and marking its bytes durable
+        }
+    }
+
+    private void markDurable(long appended) {
+        synchronized (syncLock) {
+            durableBytes = Math.max(durableBytes, appended);
+            syncLock.notifyAll();
+        }
+    }
+
+    private long appendSensor(byte type, Sensor sensor) {
+        return appendSensors(type, List.of(sensor));
+    }
+
+    // Encodes the whole batch into one buffer so it reaches the journal in a single write
+    private long appendSensors(byte type, Collection<Sensor> batch) {
+        byte[][] names = new byte[batch.size()][];
+        int size = 0;
+        int i = 0;
+        for (Sensor sensor : batch) {
+            names[i] = type == PUT_SENSOR ? nameBytes(sensor) : new byte[0];
+            size += FRAME_HEADER_BYTES + SENSOR_FIXED_BYTES + names[i].length;
+            i++;
+        }
+        ByteBuffer buffer = recordBuffer(size);
+        i = 0;
+        for (Sensor sensor : batch) {
+            int start = beginFrame(buffer);
+            buffer.put(type);
+            writeSensor(buffer, sensor, names[i++]);
+            sealFrame(buffer, start);
+        }
+        return writeRecords(buffer);
+    }
+
+    private long appendStatus(byte type, int ordinal) {
+        ByteBuffer buffer = recordBuffer(FRAME_HEADER_BYTES + 2);
+        int start = beginFrame(buffer);
+        buffer.put(type);
+        buffer.put((byte) ordinal);
+        sealFrame(buffer, start);
+        return writeRecords(buffer);
+    }
+
+    private ByteBuffer recordBuffer(int size) {
+        if (recordBuffer.capacity() < size) {
+            recordBuffer = ByteBuffer.allocateDirect(Integer.highestOneBit(size) << 1);
+        }
+        recordBuffer.clear();
+        return recordBuffer;
+    }
+
+    private int beginFrame(ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.position(start + FRAME_HEADER_BYTES);
+        return start;
+    }
+
+    private void sealFrame(ByteBuffer buffer, int start) {
+        int payloadStart = start + FRAME_HEADER_BYTES;
+        int payloadLength = buffer.position() - payloadStart;
+        crc.reset();
+        crc.update(buffer.slice(payloadStart, payloadLength));
+        buffer.putInt(start, payloadLength);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        recordsSinceCompaction++;
+    }
+
+    // Returns the running total of appended bytes, including these records
+    private long writeRecords(ByteBuffer buffer) {
+        buffer.flip();
+        int length = buffer.remaining();
+        try {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to append to security journal", e);
+        }
+        appendedBytes += length;
+        return appendedBytes;
+    }
+
+    // Called under writeLock once the in-memory state reflects the record just appended
+    private void compactIfNeeded() {
+        if (recordsSinceCompaction >= compactionThreshold && rotated == null) {
+            startCompaction();
+        }
+    }
+
+    private CompletableFuture<Void> currentCompaction() {
+        synchronized (writeLock) {
+            return compaction;
+        }
+    }
+
+    /**
+     * Renames the journal aside, starts a fresh one and hands the state as of the rename to the
+     * compactor. Called under writeLock with no compaction in progress; only the rename and the
+     * new file are paid for here.
+     */
+    private CompletableFuture<Void> startCompaction() {
+        SensorStore.Snapshot state = sensors.snapshot();
+        AlarmStatus alarm = alarmStatus;
+        ArmingStatus arming = armingStatus;
+        long rotatedBytes = appendedBytes;
+        FileChannel fresh;
+        try {
+            Files.move(journalPath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            try {
+                fresh = FileChannel.open(journalPath,
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                Files.move(compactingPath, journalPath, StandardCopyOption.ATOMIC_MOVE);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to rotate security journal", e);
+        }
+        synchronized (syncLock) {
+            rotated = journal;
+            journal = fresh;
+        }
+        recordsSinceCompaction = 0;
+        try {
+            compaction = CompletableFuture.runAsync(() -> finishCompaction(state, alarm, arming, rotatedBytes), compactor);
+        } catch (RuntimeException e) {
+            // Closing; the rotated journal is replayed and folded in on the next start
+            compaction = CompletableFuture.failedFuture(e);
+        }
+        return compaction;
+    }
+
+    // Runs on the compactor thread
+    private void finishCompaction(SensorStore.Snapshot state, AlarmStatus alarm, ArmingStatus arming, long rotatedBytes) {
+        FileChannel pending = rotated;
+        try {
+            // Writers waiting on records that went to the rotated journal are released first
+            pending.force(false);
+            markDurable(rotatedBytes);
+            writeSnapshot(state.sensors(), alarm, arming);
+            Files.delete(compactingPath);
+            synchronized (syncLock) {
+                rotated = null;
+            }
+            pending.close();
+        } catch (IOException e) {
+            // The rotated journal stays in place, so the next start replays it and tries again
+            System.err.println("Unable to compact security journal: " + e.getMessage());
+            throw new UncheckedIOException("Unable to compact security journal", e);
+        }
+    }
+
+    private static void await(CompletableFuture<Void> compaction) {
+        try {
+            compaction.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Replays a journal renamed aside by a compaction that never finished, and completes it
+    private void finishInterruptedCompaction(Map<UUID, Sensor> loadedSensors) throws IOException {
+        if (!Files.exists(compactingPath)) {
+            return;
+        }
+        try (FileChannel pending = FileChannel.open(compactingPath, StandardOpenOption.READ)) {
+            replay(pending, loadedSensors);
+        }
+        writeSnapshot(loadedSensors.values(), alarmStatus, armingStatus);
+        Files.delete(compactingPath);
+        recordsSinceCompaction = 0;
+    }
+
+    private void replayJournal(Map<UUID, Sensor> loadedSensors) throws IOException {
+        long size = journal.size();
+        long validLength = replay(journal, loadedSensors);
+        if (validLength < size) {
+            // Drop a torn tail so new records are not appended after garbage
+            System.err.println("Discarding " + (size - validLength) + " unreadable bytes from security journal");
+            journal.truncate(validLength);
+        }
+    }
+
+    // Applies every intact record and returns the length of the intact prefix
+    private long replay(FileChannel channel, Map<UUID, Sensor> loadedSensors) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return 0;
+        }
+        // A journal only grows past one compaction interval while a compaction is running, so it
+        // is read in a single pass
+        ByteBuffer log = ByteBuffer.allocate(Math.toIntExact(size));
+        while (log.hasRemaining() && channel.read(log, log.position()) >= 0) {
+            // keep reading until the buffer is full
+        }
+        log.flip();
+        long validLength = 0;
+        while (log.remaining() >= FRAME_HEADER_BYTES) {
+            int payloadLength = log.getInt();
+            int checksum = log.getInt();
+            if (payloadLength <= 0 || payloadLength > log.remaining()) {
+                break;
+            }
+            ByteBuffer payload = log.slice(log.position(), payloadLength);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            applyRecord(payload, loadedSensors);
+            log.position(log.position() + payloadLength);
+            validLength = log.position();
+            recordsSinceCompaction++;
+        }
+        return validLength;
+    }
+
+    private void applyRecord(ByteBuffer payload, Map<UUID, Sensor> loadedSensors) throws IOException {
+        byte type = payload.get();
+        switch (type) {
+            case PUT_SENSOR -> {
+                Sensor sensor = readSensor(payload);
+                loadedSensors.put(sensor.getSensorId(), sensor);
+            }
+            case REMOVE_SENSOR -> loadedSensors.remove(readSensor(payload).getSensorId());
+            case ALARM_STATUS -> alarmStatus = enumAt(AlarmStatus.values(), payload.get());
+            case ARMING_STATUS -> armingStatus = enumAt(ArmingStatus.values(), payload.get());
+            default -> throw new IOException("Corrupt security journal: unknown record type " + type);
+        }
+    }
+
+    // A record can pass its checksum and still hold an ordinal this version does not know
+    private static <E extends Enum<E>> E enumAt(E[] values, byte ordinal) throws IOException {
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Corrupt security journal: no "
+                    + values.getClass().getComponentType().getSimpleName() + " with ordinal " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private void loadSnapshot(Map<UUID, Sensor> loadedSensors) throws IOException {
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+        if (snapshot.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("Not a security snapshot: " + snapshotPath);
+        }
+        alarmStatus = enumAt(AlarmStatus.values(), snapshot.get());
+        armingStatus = enumAt(ArmingStatus.values(), snapshot.get());
+        int count = snapshot.getInt();
+        for (int i = 0; i < count; i++) {
+            snapshot.get(); // record type, always PUT_SENSOR
+            Sensor sensor = readSensor(snapshot);
+            loadedSensors.put(sensor.getSensorId(), sensor);
+        }
+    }
+
+    private void writeSnapshot(Collection<Sensor> current, AlarmStatus alarm, ArmingStatus arming) throws IOException {
+        int size = Integer.BYTES + 2 + Integer.BYTES;
+        byte[][] names = new byte[current.size()][];
+        int i = 0;
+        for (Sensor sensor : current) {
+            names[i] = nameBytes(sensor);
+            size += SENSOR_FIXED_BYTES + names[i].length;
+            i++;
+        }
+
+        ByteBuffer snapshot = ByteBuffer.allocate(size);
+        snapshot.putInt(SNAPSHOT_MAGIC);
+        snapshot.put((byte) alarm.ordinal());
+        snapshot.put((byte) arming.ordinal());
+        snapshot.putInt(current.size());
+        i = 0;
+        for (Sensor sensor : current) {
+            snapshot.put(PUT_SENSOR);
+            writeSensor(snapshot, sensor, names[i++]);
+        }
+        snapshot.flip();
+
+        // Write next to the live snapshot and swap it in, so a crash never leaves a half-written file
+        Path tmp = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                out.write(snapshot);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static byte[] nameBytes(Sensor sensor) {
+        return sensor.getName() == null ? new byte[0] : sensor.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeSensor(ByteBuffer buffer, Sensor sensor, byte[] name) {
+        UUID id = sensor.getSensorId();
+        buffer.putLong(id.getMostSignificantBits());
+        buffer.putLong(id.getLeastSignificantBits());
+        buffer.put((byte) sensor.getSensorType().ordinal());
+        buffer.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        buffer.putInt(name.length);
+        buffer.put(name);
+    }
+
+    private static Sensor readSensor(ByteBuffer buffer) throws IOException {
+        UUID id = new UUID(buffer.getLong(), buffer.getLong());
+        SensorType type = enumAt(SensorType.values(), buffer.get());
+        boolean active = buffer.get() != 0;
+        int nameLength = buffer.getInt();
+        if (nameLength < 0 || nameLength > buffer.remaining()) {
+            throw new IOException("Corrupt security journal: sensor name of " + nameLength + " bytes");
+        }
+        byte[] name = new byte[nameLength];
+        buffer.get(name);
+        return new Sensor(id, new String(name, StandardCharsets.UTF_8), type, active);
+    }
+}
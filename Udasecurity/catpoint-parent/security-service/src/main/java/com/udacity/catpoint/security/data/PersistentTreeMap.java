@@ -0,0 +1,194 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Immutable sorted map backed by an AVL tree. {@link #put} and {@link #remove} return a new map
+ * that shares every node off the changed path with this one, so an update costs O(log n) time
+ * and allocation however large the map is, and every earlier version stays valid for readers.
+ * Backs the {@link SensorStore} indexes and the service's active sensor set.
+ */
+public final class PersistentTreeMap<K, V> implements Iterable<V> {
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private record Node<K, V>(K key, V value, Node<K, V> left, Node<K, V> right, int height, int size) {
+    }
+
+    private PersistentTreeMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    public static <K, V> PersistentTreeMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentTreeMap<>(Objects.requireNonNull(comparator, "Comparator cannot be null"), null);
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = find(key);
+        return node == null ? null : node.value();
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    public PersistentTreeMap<K, V> put(K key, V value) {
+        return new PersistentTreeMap<>(comparator, put(root, key, value));
+    }
+
+    /**
+     * Returns this map itself if it has no entry for the key.
+     */
+    public PersistentTreeMap<K, V> remove(K key) {
+        Node<K, V> removed = remove(root, key);
+        return removed == root ? this : new PersistentTreeMap<>(comparator, removed);
+    }
+
+    /**
+     * Iterates over the values in key order.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<>() {
+            private final ArrayDeque<Node<K, V>> path = new ArrayDeque<>();
+
+            {
+                descendLeft(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public V next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<K, V> node = path.pop();
+                descendLeft(node.right());
+                return node.value();
+            }
+
+            private void descendLeft(Node<K, V> node) {
+                for (; node != null; node = node.left()) {
+                    path.push(node);
+                }
+            }
+        };
+    }
+
+    private Node<K, V> find(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int order = comparator.compare(key, node.key());
+            if (order == 0) {
+                return node;
+            }
+            node = order < 0 ? node.left() : node.right();
+        }
+        return null;
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value) {
+        if (node == null) {
+            return new Node<>(key, value, null, null, 1, 1);
+        }
+        int order = comparator.compare(key, node.key());
+        if (order == 0) {
+            return new Node<>(key, value, node.left(), node.right(), node.height(), node.size());
+        }
+        return order < 0
+                ? balance(node.key(), node.value(), put(node.left(), key, value), node.right())
+                : balance(node.key(), node.value(), node.left(), put(node.right(), key, value));
+    }
+
+    // Returns the node itself when the key is not below it, so callers can tell nothing changed
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int order = comparator.compare(key, node.key());
+        if (order < 0) {
+            Node<K, V> left = remove(node.left(), key);
+            return left == node.left() ? node : balance(node.key(), node.value(), left, node.right());
+        }
+        if (order > 0) {
+            Node<K, V> right = remove(node.right(), key);
+            return right == node.right() ? node : balance(node.key(), node.value(), node.left(), right);
+        }
+        if (node.left() == null) {
+            return node.right();
+        }
+        if (node.right() == null) {
+            return node.left();
+        }
+        Node<K, V> successor = node.right();
+        while (successor.left() != null) {
+            successor = successor.left();
+        }
+        return balance(successor.key(), successor.value(), node.left(), removeFirst(node.right()));
+    }
+
+    private Node<K, V> removeFirst(Node<K, V> node) {
+        if (node.left() == null) {
+            return node.right();
+        }
+        return balance(node.key(), node.value(), removeFirst(node.left()), node.right());
+    }
+
+    private static <K, V> Node<K, V> balance(K key, V value, Node<K, V> left, Node<K, V> right) {
+        int skew = height(left) - height(right);
+        if (skew > 1) {
+            if (height(left.left()) < height(left.right())) {
+                left = rotateLeft(left);
+            }
+            return node(left.key(), left.value(), left.left(), node(key, value, left.right(), right));
+        }
+        if (skew < -1) {
+            if (height(right.right()) < height(right.left())) {
+                right = rotateRight(right);
+            }
+            return node(right.key(), right.value(), node(key, value, left, right.left()), right.right());
+        }
+        return node(key, value, left, right);
+    }
+
+    private static <K, V> Node<K, V> rotateLeft(Node<K, V> node) {
+        Node<K, V> right = node.right();
+        return node(right.key(), right.value(), node(node.key(), node.value(), node.left(), right.left()), right.right());
+    }
+
+    private static <K, V> Node<K, V> rotateRight(Node<K, V> node) {
+        Node<K, V> left = node.left();
+        return node(left.key(), left.value(), left.left(), node(node.key(), node.value(), left.right(), node.right()));
+    }
+
+    private static <K, V> Node<K, V> node(K key, V value, Node<K, V> left, Node<K, V> right) {
+        return new Node<>(key, value, left, right, Math.max(height(left), height(right)) + 1,
+                size(left) + size(right) + 1);
+    }
+
+    private static int height(Node<?, ?> node) {
+        return node == null ? 0 : node.height();
+    }
+
+    private static int size(Node<?, ?> node) {
+        return node == null ? 0 : node.size();
+    }
+}
@@ -1,109 +1,247 @@
 package com.udacity.catpoint.security.data;
 
-import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 
-import java.lang.reflect.Type;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import java.util.Objects;
 
+/**
+ * Security repository backed by {@link Preferences}. The alarm and arming status are read in the
+ * constructor, so they are available as soon as it returns; the sensors are decoded on a
+ * background thread and only the first call that needs them waits for that load to finish.
+ *
+ * <p>The sensors are too large for one preferences value, so each write stores them as a new
+ * generation of chunks and only then points the generation key at it. A write that is cut short
+ * leaves the previous generation in place. If the stored sensors cannot be read, the sensor
+ * methods throw rather than start from an empty set that the next write would persist.
+ */
 public final class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository {
 
-    private final Set<Sensor> sensors;
-    private AlarmStatus alarmStatus;
-    private ArmingStatus armingStatus;
+    // Completes once the stored sensors have been decoded; see sensors()
+    private final CompletableFuture<SensorStore> sensorLoad;
+    private volatile AlarmStatus alarmStatus;
+    private volatile ArmingStatus armingStatus;
+
+    // Write-behind state; flusher is null when every mutation is written through
+    private final ScheduledExecutorService flusher;
+    private final int flushThreshold;
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private volatile boolean closed;
+
+    // Set while pre-binary keys (still read on startup, never written) are left to clean up
+    private volatile boolean legacySensorsPresent;
+    private volatile boolean legacyStatusPresent;
+    private final Object statusLock = new Object();
 
     // Preference keys
     private static final String SENSORS = "SENSORS";
     private static final String ALARM_STATUS = "ALARM_STATUS";
     private static final String ARMING_STATUS = "ARMING_STATUS";
+    private static final String SENSOR_DATA = "SENSOR_DATA";
+    private static final String STATUS = "STATUS";
+    private static final String CHUNK_COUNT = "chunks";
+    private static final String GENERATION_SUFFIX = ".generation";
+
+    // Preferences values are capped, and byte arrays are stored base64-encoded (4 chars per 3 bytes)
+    private static final int CHUNK_BYTES = Preferences.MAX_VALUE_LENGTH / 4 * 3;
 
     private static final Preferences prefs = Preferences
             .userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
     private static final Gson gson = new Gson();
 
+    /**
+     * Creates a repository that writes every mutation straight through to preferences.
+     */
     public PretendDatabaseSecurityRepositoryImpl() {
-        // Initialize with defaults first
-        Set<Sensor> loadedSensors = new TreeSet<>();
+        this(null, 0);
+    }
+
+    /**
+     * Creates a write-behind repository. Mutations only mark the repository dirty; a single
+     * coalesced snapshot is written every {@code flushInterval}, or sooner once
+     * {@code flushThreshold} mutations have piled up. Call {@link #close()} on shutdown so the
+     * last changes are not lost.
+     *
+     * @param flushInterval  maximum time a mutation may stay unwritten
+     * @param flushThreshold number of pending mutations that triggers an early flush
+     */
+    public PretendDatabaseSecurityRepositoryImpl(Duration flushInterval, int flushThreshold) {
+        // Status is tiny and needed first; sensors can be large, so they load in the background
         AlarmStatus loadedAlarmStatus = AlarmStatus.NO_ALARM;
         ArmingStatus loadedArmingStatus = ArmingStatus.DISARMED;
-
         try {
-            // Load from preferences
-            loadedAlarmStatus = AlarmStatus.valueOf(
-                    Objects.requireNonNull(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString())));
-
-            loadedArmingStatus = ArmingStatus.valueOf(
-                    Objects.requireNonNull(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString())));
-
-            String sensorString = prefs.get(SENSORS, null);
-            if (sensorString != null) {
-                Type type = new TypeToken<Set<Sensor>>() {
-                }.getType();
-                Set<Sensor> parsedSensors = gson.fromJson(sensorString, type);
-                if (parsedSensors != null) {
-                    loadedSensors = new TreeSet<>(parsedSensors);
-                }
+            // Load from preferences, falling back to the legacy string keys
+            byte[] status = prefs.getByteArray(STATUS, null);
+            if (status != null) {
+                loadedAlarmStatus = SensorCodec.decodeAlarmStatus(status);
+                loadedArmingStatus = SensorCodec.decodeArmingStatus(status);
+            } else {
+                loadedAlarmStatus = AlarmStatus.valueOf(
+                        Objects.requireNonNull(prefs.get(ALARM_STATUS, AlarmStatus.NO_ALARM.toString())));
+
+                loadedArmingStatus = ArmingStatus.valueOf(
+                        Objects.requireNonNull(prefs.get(ARMING_STATUS, ArmingStatus.DISARMED.toString())));
+                legacyStatusPresent = prefs.get(ALARM_STATUS, null) != null || prefs.get(ARMING_STATUS, null) != null;
             }
         } catch (Exception e) {
             // Log error but continue with defaults
             System.err.println("Error loading preferences: " + e.getMessage());
         } finally {
-            // Assign to final fields
-            this.sensors = Collections.synchronizedSet(new TreeSet<>(loadedSensors));
             this.alarmStatus = loadedAlarmStatus;
             this.armingStatus = loadedArmingStatus;
         }
+
+        this.sensorLoad = CompletableFuture.supplyAsync(this::loadSensors, runnable -> {
+            Thread thread = new Thread(runnable, "security-repository-loader");
+            thread.setDaemon(true);
+            thread.start();
+        });
+
+        if (flushInterval == null) {
+            this.flusher = null;
+            this.flushThreshold = 0;
+        } else {
+            if (flushInterval.isNegative() || flushInterval.isZero()) {
+                throw new IllegalArgumentException("Flush interval must be positive");
+            }
+            if (flushThreshold < 1) {
+                throw new IllegalArgumentException("Flush threshold must be at least 1");
+            }
+            this.flushThreshold = flushThreshold;
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "security-repository-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = Math.max(1, flushInterval.toMillis());
+            flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void addSensor(Sensor sensor) {
         Objects.requireNonNull(sensor, "Sensor cannot be null");
-        synchronized (sensors) {
-            sensors.add(sensor);
-            prefs.put(SENSORS, gson.toJson(sensors));
+        SensorStore store = sensors();
+        synchronized (store) {
+            Set<Sensor> current = store.add(sensor);
+            if (isWriteThrough()) {
+                writeSensors(current);
+            }
         }
+        markDirty();
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
         Objects.requireNonNull(sensor, "Sensor cannot be null");
-        synchronized (sensors) {
-            sensors.remove(sensor);
-            prefs.put(SENSORS, gson.toJson(sensors));
+        SensorStore store = sensors();
+        synchronized (store) {
+            Set<Sensor> current = store.remove(sensor);
+            if (isWriteThrough()) {
+                writeSensors(current);
+            }
         }
+        markDirty();
     }
 
     @Override
     public void updateSensor(Sensor sensor) {
         Objects.requireNonNull(sensor, "Sensor cannot be null");
-        synchronized (sensors) {
-            sensors.remove(sensor);
-            sensors.add(sensor);
-            prefs.put(SENSORS, gson.toJson(sensors));
+        SensorStore store = sensors();
+        synchronized (store) {
+            Set<Sensor> current = store.update(sensor);
+            if (isWriteThrough()) {
+                writeSensors(current);
+            }
+        }
+        markDirty();
+    }
+
+    /**
+     * Updates the whole batch under one lock with a single snapshot and a single preferences write.
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> sensorBatch) {
+        Objects.requireNonNull(sensorBatch, "Sensors cannot be null");
+        sensorBatch.forEach(sensor -> Objects.requireNonNull(sensor, "Sensor cannot be null"));
+        SensorStore store = sensors();
+        synchronized (store) {
+            Set<Sensor> current = store.updateAll(sensorBatch);
+            if (isWriteThrough()) {
+                writeSensors(current);
+            }
         }
+        markDirty();
     }
 
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = Objects.requireNonNull(alarmStatus, "AlarmStatus cannot be null");
-        prefs.put(ALARM_STATUS, this.alarmStatus.toString());
+        if (isWriteThrough()) {
+            writeStatus();
+        }
+        markDirty();
     }
 
     @Override
     public void setArmingStatus(ArmingStatus armingStatus) {
         this.armingStatus = Objects.requireNonNull(armingStatus, "ArmingStatus cannot be null");
-        prefs.put(ARMING_STATUS, this.armingStatus.toString());
+        if (isWriteThrough()) {
+            writeStatus();
+        }
+        markDirty();
     }
 
+    /**
+     * Returns the current read-only sensor snapshot without locking or copying.
+     */
     @Override
     public Set<Sensor> getSensors() {
-        synchronized (sensors) {
-            return Collections.unmodifiableSet(new TreeSet<>(sensors));
-        }
+        return sensors().sensors();
+    }
+
+    @Override
+    public long getSensorsVersion() {
+        return sensors().version();
+    }
+
+    @Override
+    public Optional<Sensor> findSensor(UUID sensorId) {
+        return sensors().find(sensorId);
+    }
+
+    @Override
+    public Set<Sensor> sensorsByType(SensorType sensorType) {
+        return sensors().byType(sensorType);
+    }
+
+    @Override
+    public Set<Sensor> activeSensors() {
+        return sensors().active();
     }
 
     @Override
@@ -115,4 +253,194 @@ public final class PretendDatabaseSecurityRepositoryImpl implements SecurityRepo
     public ArmingStatus getArmingStatus() {
         return armingStatus;
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes one snapshot of the current state if anything changed since the last flush.
+     * Serialization works on the published snapshot, so writers are never held up by it.
+     */
+    @Override
+    public void flush() {
+        if (flusher == null) {
+            return;
+        }
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            if (pendingWrites.getAndSet(0) == 0) {
+                return;
+            }
+            try {
+                writeSensors(sensors().sensors());
+                writeStatus();
+            } catch (RuntimeException e) {
+                // Keep the scheduler alive; the next flush retries with fresh state
+                pendingWrites.incrementAndGet();
+                System.err.println("Error writing preferences: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes whatever is still pending. Mutations made after
+     * closing are written through immediately.
+     */
+    @Override
+    public void close() {
+        if (flusher == null) {
+            return;
+        }
+        closed = true;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        try {
+            prefs.flush();
+        } catch (BackingStoreException e) {
+            System.err.println("Error flushing preferences: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits for the background load to finish if it is still running.
+     *
+     * @throws IllegalStateException if the stored sensors could not be read
+     */
+    private SensorStore sensors() {
+        try {
+            return sensorLoad.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Stored sensors could not be read", e.getCause());
+        }
+    }
+
+    // Runs on the loader thread; a failure is kept in sensorLoad and rethrown by sensors(), as
+    // starting empty would overwrite the stored sensors with the next write
+    private SensorStore loadSensors() {
+        List<Sensor> loadedSensors = List.of();
+        try {
+            byte[] sensorData = getChunked(SENSOR_DATA);
+            String sensorString = sensorData == null ? prefs.get(SENSORS, null) : null;
+            if (sensorData != null) {
+                loadedSensors = SensorCodec.decodeSensors(sensorData);
+            } else if (sensorString != null) {
+                legacySensorsPresent = true;
+                loadedSensors = parseLegacySensors(sensorString);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SensorStore(loadedSensors);
+    }
+
+    // Streams the legacy JSON array straight into a list instead of materialising a Set first
+    private static List<Sensor> parseLegacySensors(String json) throws IOException {
+        List<Sensor> parsedSensors = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                parsedSensors.add(gson.fromJson(reader, Sensor.class));
+            }
+            reader.endArray();
+        }
+        return parsedSensors;
+    }
+
+    private void writeSensors(Collection<Sensor> current) {
+        putChunked(SENSOR_DATA, SensorCodec.encodeSensors(current));
+        if (legacySensorsPresent) {
+            prefs.remove(SENSORS);
+            legacySensorsPresent = false;
+        }
+    }
+
+    // Reads both statuses under the lock so the last writer always stores the latest pair
+    private void writeStatus() {
+        synchronized (statusLock) {
+            prefs.putByteArray(STATUS, SensorCodec.encodeStatus(alarmStatus, armingStatus));
+            if (legacyStatusPresent) {
+                prefs.remove(ALARM_STATUS);
+                prefs.remove(ARMING_STATUS);
+                legacyStatusPresent = false;
+            }
+        }
+    }
+
+    /**
+     * Writes the data as a new generation under {@code key.<generation>.} and switches the
+     * generation key to it last, so a reader sees either the old data or the new, never a mix.
+     * The previous generation, and anything a write cut short left behind, is removed after.
+     * Callers serialize writes to the same key.
+     */
+    private static void putChunked(String key, byte[] data) {
+        long generation = prefs.getLong(key + GENERATION_SUFFIX, 0) + 1;
+        String prefix = key + "." + generation + ".";
+        int chunks = Math.max(1, (data.length + CHUNK_BYTES - 1) / CHUNK_BYTES);
+        for (int i = 0; i < chunks; i++) {
+            int from = i * CHUNK_BYTES;
+            prefs.putByteArray(prefix + i, Arrays.copyOfRange(data, from, Math.min(data.length, from + CHUNK_BYTES)));
+        }
+        prefs.putInt(prefix + CHUNK_COUNT, chunks);
+        prefs.putLong(key + GENERATION_SUFFIX, generation);
+        removeStaleChunks(key, prefix);
+    }
+
+    // Returns null if nothing was ever written under the key
+    private static byte[] getChunked(String key) {
+        long generation = prefs.getLong(key + GENERATION_SUFFIX, 0);
+        if (generation == 0) {
+            return null;
+        }
+        String prefix = key + "." + generation + ".";
+        int chunks = prefs.getInt(prefix + CHUNK_COUNT, 0);
+        if (chunks == 0) {
+            throw new IllegalStateException("Missing chunk count of " + key + " generation " + generation);
+        }
+        ByteArrayOutputStream data = new ByteArrayOutputStream(chunks * CHUNK_BYTES);
+        for (int i = 0; i < chunks; i++) {
+            byte[] chunk = prefs.getByteArray(prefix + i, null);
+            if (chunk == null) {
+                throw new IllegalStateException("Missing chunk " + i + " of " + key + " generation " + generation);
+            }
+            data.writeBytes(chunk);
+        }
+        return data.toByteArray();
+    }
+
+    private static void removeStaleChunks(String key, String currentPrefix) {
+        try {
+            for (String stored : prefs.keys()) {
+                if (stored.startsWith(key + ".") && !stored.startsWith(currentPrefix)
+                        && !stored.equals(key + GENERATION_SUFFIX)) {
+                    prefs.remove(stored);
+                }
+            }
+        } catch (BackingStoreException e) {
+            // Harmless: stale chunks are unreachable and the next write retries
+            System.err.println("Error removing stale sensor chunks: " + e.getMessage());
+        }
+    }
+
+    private boolean isWriteThrough() {
+        return flusher == null;
+    }
+
+    private void markDirty() {
+        if (flusher == null) {
+            return;
+        }
+        int pending = pendingWrites.incrementAndGet();
+        if (closed) {
+            flush();
+        } else if (pending >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // Lost the race with close(); write the change ourselves
+                flush();
+            }
+        }
+    }
+}
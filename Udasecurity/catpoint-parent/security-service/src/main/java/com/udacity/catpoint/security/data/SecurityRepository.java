@@ -1,15 +1,66 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 
-public interface SecurityRepository {
+public interface SecurityRepository extends AutoCloseable {
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Updates several sensors as one write. Implementations that persist state should override
+     * this to store the whole batch at once; the default simply updates them one by one.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
     Set<Sensor> getSensors();
+
+    /**
+     * Returns the version of the sensor set handed out by {@link #getSensors()}. The version
+     * changes whenever a sensor is added, removed or updated, so callers can skip work when it
+     * has not moved since they last looked.
+     */
+    long getSensorsVersion();
+
+    /**
+     * Looks a sensor up by id without scanning the sensor set.
+     */
+    Optional<Sensor> findSensor(UUID sensorId);
+
+    /**
+     * Returns a read-only snapshot of the sensors of the given type. Later changes are not
+     * reflected in it; call again to see them.
+     */
+    Set<Sensor> sensorsByType(SensorType sensorType);
+
+    /**
+     * Returns a read-only snapshot of the sensors that are currently active. Later changes are
+     * not reflected in it; call again to see them.
+     */
+    Set<Sensor> activeSensors();
+
     AlarmStatus getAlarmStatus();
     ArmingStatus getArmingStatus();
 
+    /**
+     * Pushes any state that has been buffered in memory out to the backing store.
+     * Write-through implementations have nothing to do here.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Flushes outstanding state and releases any background resources.
+     */
+    @Override
+    default void close() {
+        flush();
+    }
 }
@@ -19,6 +19,17 @@ public class Sensor implements Comparable<Sensor> {
         this.active = Boolean.FALSE;
     }
 
+    /**
+     * Recreates a stored sensor. Unlike {@link #Sensor(String, SensorType)} this does not
+     * generate a random id, which matters when decoding large sensor sets.
+     */
+    public Sensor(UUID sensorId, String name, SensorType sensorType, Boolean active) {
+        this.sensorId = sensorId;
+        this.name = name;
+        this.sensorType = sensorType;
+        this.active = active;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,175 @@
+package com.udacity.catpoint.security.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact, versioned binary encoding for sensor collections and the alarm/arming status.
+ *
+ * <p>Sensor layout (format version 1), laid out column by column so each column is a tight loop:
+ * <pre>
+ *   byte          format version
+ *   varint        sensor count n
+ *   n x 2 x long  sensor id (most, least significant bits)
+ *   n x byte      sensor type ordinal
+ *   ceil(n/8)     active flags, one bit per sensor
+ *   n x (varint length, UTF-8 bytes)   sensor name
+ * </pre>
+ * Status layout: {@code [format version][alarm ordinal][arming ordinal]}.
+ *
+ * <p>Enum values are stored by ordinal, so new constants must only ever be appended.
+ */
+public final class SensorCodec {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+
+    private SensorCodec() {
+        throw new AssertionError("This is a utility class");
+    }
+
+    public static byte[] encodeSensors(Collection<Sensor> sensors) {
+        int count = sensors.size();
+        byte[][] names = new byte[count][];
+        int size = 1 + varIntSize(count) + count * (Long.BYTES * 2 + 1) + (count + 7) / 8;
+        int i = 0;
+        for (Sensor sensor : sensors) {
+            names[i] = sensor.getName() == null ? new byte[0] : sensor.getName().getBytes(StandardCharsets.UTF_8);
+            size += varIntSize(names[i].length) + names[i].length;
+            i++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(FORMAT_VERSION);
+        putVarInt(buffer, count);
+        for (Sensor sensor : sensors) {
+            UUID id = sensor.getSensorId();
+            buffer.putLong(id.getMostSignificantBits());
+            buffer.putLong(id.getLeastSignificantBits());
+        }
+        for (Sensor sensor : sensors) {
+            buffer.put((byte) sensor.getSensorType().ordinal());
+        }
+        int bits = 0;
+        i = 0;
+        for (Sensor sensor : sensors) {
+            if (Boolean.TRUE.equals(sensor.getActive())) {
+                bits |= 1 << (i & 7);
+            }
+            if ((++i & 7) == 0) {
+                buffer.put((byte) bits);
+                bits = 0;
+            }
+        }
+        if ((i & 7) != 0) {
+            buffer.put((byte) bits);
+        }
+        for (byte[] name : names) {
+            putVarInt(buffer, name.length);
+            buffer.put(name);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodes sensors written by {@link #encodeSensors(Collection)}, in their original order.
+     *
+     * @throws IllegalArgumentException if the data is truncated or uses an unknown format version
+     */
+    public static List<Sensor> decodeSensors(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            checkVersion(buffer.get());
+            int count = getVarInt(buffer);
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Corrupt sensor count " + count);
+            }
+
+            long[] ids = new long[count * 2];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = buffer.getLong();
+            }
+            byte[] types = new byte[count];
+            buffer.get(types);
+            byte[] activeBits = new byte[(count + 7) / 8];
+            buffer.get(activeBits);
+
+            List<Sensor> sensors = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[getVarInt(buffer)];
+                buffer.get(name);
+                sensors.add(new Sensor(new UUID(ids[2 * i], ids[2 * i + 1]),
+                        new String(name, StandardCharsets.UTF_8),
+                        SENSOR_TYPES[types[i]],
+                        (activeBits[i >>> 3] & (1 << (i & 7))) != 0));
+            }
+            return sensors;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated or corrupt sensor data", e);
+        }
+    }
+
+    public static byte[] encodeStatus(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        return new byte[]{FORMAT_VERSION, (byte) alarmStatus.ordinal(), (byte) armingStatus.ordinal()};
+    }
+
+    public static AlarmStatus decodeAlarmStatus(byte[] status) {
+        checkStatus(status);
+        return ALARM_STATUSES[status[1]];
+    }
+
+    public static ArmingStatus decodeArmingStatus(byte[] status) {
+        checkStatus(status);
+        return ARMING_STATUSES[status[2]];
+    }
+
+    private static void checkStatus(byte[] status) {
+        if (status.length != 3) {
+            throw new IllegalArgumentException("Corrupt status data");
+        }
+        checkVersion(status[0]);
+    }
+
+    private static void checkVersion(byte version) {
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported sensor data format version " + version);
+        }
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
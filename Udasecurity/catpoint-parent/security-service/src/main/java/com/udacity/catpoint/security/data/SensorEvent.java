@@ -0,0 +1,18 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * A single sensor state change as reported by a device or gateway.
+ */
+public record SensorEvent(UUID sensorId, boolean active) {
+
+    public SensorEvent {
+        Objects.requireNonNull(sensorId, "Sensor id cannot be null");
+    }
+
+    public static SensorEvent of(Sensor sensor, boolean active) {
+        return new SensorEvent(sensor.getSensorId(), active);
+    }
+}
@@ -0,0 +1,230 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Copy-on-write sensor collection shared by the repository implementations. Every write
+ * publishes a new {@link Snapshot} through a single volatile reference: the sorted sensors, their
+ * indexes by id, by {@link SensorType} and by active state, and a version number, all built
+ * together so an index never disagrees with the set it was read alongside. Readers just read
+ * that reference, so they never lock or copy. Writes are serialised on this object; callers that
+ * need to persist the new snapshot in write order can synchronise on the store around the
+ * mutation.
+ *
+ * <p>The sorted set and the indexes are {@link PersistentTreeMap}s: a write replaces the written
+ * sensor's entries and shares everything else with the previous snapshot, so it costs O(log n)
+ * per sensor written, not a copy of the whole set. Sensors are copied on the way in, so a caller
+ * changing its own instance later does not change what the store holds. The sensors handed out
+ * belong to the snapshot and are to be treated as read-only; a change is stored by passing a
+ * changed sensor to an update.
+ */
+final class SensorStore {
+
+    private static final Comparator<UUID> BY_ID = Comparator.naturalOrder();
+    private static final Snapshot EMPTY = new Snapshot(0, PersistentTreeMap.empty(Comparator.naturalOrder()),
+            PersistentTreeMap.empty(BY_ID), emptyByType(), PersistentTreeMap.empty(BY_ID));
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * The sensors at a given version, with indexes built from the same sensors. None of the
+     * collections change once published; the sets are read-only views over them.
+     */
+    static final class Snapshot {
+        private final long version;
+        private final PersistentTreeMap<Sensor, Sensor> sorted;
+        private final PersistentTreeMap<UUID, Sensor> byId;
+        private final Map<SensorType, PersistentTreeMap<UUID, Sensor>> byType;
+        private final PersistentTreeMap<UUID, Sensor> active;
+        private final Set<Sensor> sensors;
+        private final Map<SensorType, Set<Sensor>> byTypeViews;
+        private final Set<Sensor> activeView;
+
+        private Snapshot(long version, PersistentTreeMap<Sensor, Sensor> sorted, PersistentTreeMap<UUID, Sensor> byId,
+                         Map<SensorType, PersistentTreeMap<UUID, Sensor>> byType, PersistentTreeMap<UUID, Sensor> active) {
+            this.version = version;
+            this.sorted = sorted;
+            this.byId = byId;
+            this.byType = byType;
+            this.active = active;
+            this.sensors = new SensorSet<>(sorted, Function.identity());
+            this.byTypeViews = new EnumMap<>(SensorType.class);
+            byType.forEach((type, ofType) -> byTypeViews.put(type, new SensorSet<>(ofType, Sensor::getSensorId)));
+            this.activeView = new SensorSet<>(active, Sensor::getSensorId);
+        }
+
+        long version() {
+            return version;
+        }
+
+        /**
+         * The sensors in their natural order.
+         */
+        Set<Sensor> sensors() {
+            return sensors;
+        }
+    }
+
+    SensorStore(Collection<Sensor> initialSensors) {
+        this.snapshot = EMPTY;
+        if (!initialSensors.isEmpty()) {
+            this.snapshot = next(EMPTY, initialSensors, List.of());
+        }
+    }
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    Set<Sensor> sensors() {
+        return snapshot.sensors;
+    }
+
+    long version() {
+        return snapshot.version;
+    }
+
+    Optional<Sensor> find(UUID sensorId) {
+        return Optional.ofNullable(snapshot.byId.get(sensorId));
+    }
+
+    Set<Sensor> byType(SensorType type) {
+        return snapshot.byTypeViews.get(Objects.requireNonNull(type, "SensorType cannot be null"));
+    }
+
+    Set<Sensor> active() {
+        return snapshot.activeView;
+    }
+
+    synchronized Set<Sensor> add(Sensor sensor) {
+        return updateAll(List.of(sensor));
+    }
+
+    synchronized Set<Sensor> remove(Sensor sensor) {
+        Snapshot current = snapshot;
+        if (current.byId.get(sensor.getSensorId()) == null) {
+            return current.sensors;
+        }
+        snapshot = next(current, List.of(), List.of(sensor.getSensorId()));
+        return snapshot.sensors;
+    }
+
+    synchronized Set<Sensor> update(Sensor sensor) {
+        return updateAll(List.of(sensor));
+    }
+
+    /**
+     * Adds or updates every given sensor and publishes a single new snapshot for the lot.
+     */
+    synchronized Set<Sensor> updateAll(Collection<Sensor> sensors) {
+        if (sensors.isEmpty()) {
+            return snapshot.sensors;
+        }
+        snapshot = next(snapshot, sensors, List.of());
+        return snapshot.sensors;
+    }
+
+    // Swaps each written or removed sensor's entries, leaving every other entry shared
+    private static Snapshot next(Snapshot current, Collection<Sensor> written, Collection<UUID> removed) {
+        PersistentTreeMap<Sensor, Sensor> sorted = current.sorted;
+        PersistentTreeMap<UUID, Sensor> byId = current.byId;
+        Map<SensorType, PersistentTreeMap<UUID, Sensor>> byType = new EnumMap<>(current.byType);
+        PersistentTreeMap<UUID, Sensor> active = current.active;
+        boolean ordered = true;
+        for (Sensor sensor : written) {
+            Sensor previous = byId.get(sensor.getSensorId());
+            if (previous != null) {
+                PersistentTreeMap<Sensor, Sensor> without = sorted.remove(previous);
+                // Misses if a handed-out sensor was renamed in place; rebuilt from byId below
+                ordered &= without != sorted;
+                sorted = without;
+                unindex(byType, previous);
+            }
+            Sensor copy = copyOf(sensor);
+            byId = byId.put(copy.getSensorId(), copy);
+            sorted = sorted.put(copy, copy);
+            if (copy.getSensorType() != null) {
+                byType.put(copy.getSensorType(), byType.get(copy.getSensorType()).put(copy.getSensorId(), copy));
+            }
+            active = Boolean.TRUE.equals(copy.getActive())
+                    ? active.put(copy.getSensorId(), copy)
+                    : active.remove(copy.getSensorId());
+        }
+        for (UUID sensorId : removed) {
+            Sensor previous = byId.get(sensorId);
+            if (previous == null) {
+                continue;
+            }
+            PersistentTreeMap<Sensor, Sensor> without = sorted.remove(previous);
+            ordered &= without != sorted;
+            sorted = without;
+            byId = byId.remove(sensorId);
+            unindex(byType, previous);
+            active = active.remove(sensorId);
+        }
+        if (!ordered) {
+            sorted = PersistentTreeMap.empty(Comparator.naturalOrder());
+            for (Sensor sensor : byId) {
+                sorted = sorted.put(sensor, sensor);
+            }
+        }
+        return new Snapshot(current.version + 1, sorted, byId, Collections.unmodifiableMap(byType), active);
+    }
+
+    private static void unindex(Map<SensorType, PersistentTreeMap<UUID, Sensor>> byType, Sensor sensor) {
+        // Every type entry is checked as the type a sensor was indexed under may have been changed in place
+        for (Map.Entry<SensorType, PersistentTreeMap<UUID, Sensor>> entry : byType.entrySet()) {
+            entry.setValue(entry.getValue().remove(sensor.getSensorId()));
+        }
+    }
+
+    private static Map<SensorType, PersistentTreeMap<UUID, Sensor>> emptyByType() {
+        Map<SensorType, PersistentTreeMap<UUID, Sensor>> byType = new EnumMap<>(SensorType.class);
+        for (SensorType type : SensorType.values()) {
+            byType.put(type, PersistentTreeMap.empty(BY_ID));
+        }
+        return Collections.unmodifiableMap(byType);
+    }
+
+    private static Sensor copyOf(Sensor sensor) {
+        return new Sensor(sensor.getSensorId(), sensor.getName(), sensor.getSensorType(), sensor.getActive());
+    }
+
+    // Read-only set view over one version of a map; membership is looked up, not scanned
+    private static final class SensorSet<K> extends AbstractSet<Sensor> {
+        private final PersistentTreeMap<K, Sensor> map;
+        private final Function<Sensor, K> keyOf;
+
+        private SensorSet(PersistentTreeMap<K, Sensor> map, Function<Sensor, K> keyOf) {
+            this.map = map;
+            this.keyOf = keyOf;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Sensor sensor && sensor.equals(map.get(keyOf.apply(sensor)));
+        }
+
+        @Override
+        public Iterator<Sensor> iterator() {
+            return map.iterator();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.PersistentTreeMap;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The sensors that are active, by id, with their count in total and per {@link SensorType}, so
+ * "are all sensors inactive" is a constant-time check instead of a scan over every sensor.
+ * Immutable: changes return a new instance, so whether a sensor was active is part of the state
+ * a {@link SecurityService} swaps atomically, and two threads changing the same sensor cannot
+ * both count the change. The active sensors are a {@link PersistentTreeMap}, so a change replaces
+ * one entry in O(log n) and shares the rest with the previous instance; the counts are a few ints
+ * moved by one.
+ */
+final class ActiveSensors {
+
+    private static final SensorType[] TYPES = SensorType.values();
+    // One slot per sensor type plus a trailing slot for the total
+    private static final int TOTAL = TYPES.length;
+
+    static final ActiveSensors NONE = new ActiveSensors(PersistentTreeMap.empty(Comparator.naturalOrder()),
+            new int[TYPES.length + 1]);
+
+    // The type is the one the sensor was counted under
+    private final PersistentTreeMap<UUID, SensorType> active;
+    // Never modified once constructed
+    private final int[] counts;
+
+    private ActiveSensors(PersistentTreeMap<UUID, SensorType> active, int[] counts) {
+        this.active = active;
+        this.counts = counts;
+    }
+
+    static ActiveSensors of(Collection<Sensor> sensors) {
+        ActiveSensors active = NONE;
+        for (Sensor sensor : sensors) {
+            if (Boolean.TRUE.equals(sensor.getActive())) {
+                active = active.withActivation(sensor.getSensorId(), sensor.getSensorType(), true);
+            }
+        }
+        return active;
+    }
+
+    boolean isActive(UUID sensorId) {
+        return active.containsKey(sensorId);
+    }
+
+    /**
+     * Returns this instance if the sensor already has the given state, so activating an active
+     * sensor or deactivating an inactive one counts nothing.
+     */
+    ActiveSensors withActivation(UUID sensorId, SensorType type, boolean isActive) {
+        if (isActive == active.containsKey(sensorId)) {
+            return this;
+        }
+        int[] adjusted = counts.clone();
+        if (isActive) {
+            add(adjusted, type, 1);
+            return new ActiveSensors(active.put(sensorId, type), adjusted);
+        }
+        add(adjusted, active.get(sensorId), -1);
+        return new ActiveSensors(active.remove(sensorId), adjusted);
+    }
+
+    int total() {
+        return counts[TOTAL];
+    }
+
+    int count(SensorType type) {
+        return counts[type.ordinal()];
+    }
+
+    Map<SensorType, Integer> counts() {
+        Map<SensorType, Integer> snapshot = new EnumMap<>(SensorType.class);
+        for (SensorType type : TYPES) {
+            snapshot.put(type, counts[type.ordinal()]);
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private static void add(int[] counts, SensorType type, int delta) {
+        if (type != null) {
+            counts[type.ordinal()] += delta;
+        }
+        counts[TOTAL] += delta;
+    }
+}
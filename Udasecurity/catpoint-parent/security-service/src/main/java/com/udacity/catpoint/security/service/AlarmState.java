@@ -0,0 +1,112 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.util.UUID;
+
+/**
+ * Everything the alarm decisions of a {@link SecurityService} depend on, as one immutable value
+ * the service swaps atomically. Transitions return the state that follows and have no side
+ * effects, so a transition that lost a race to another thread is simply applied again to the
+ * newer state. The statuses are null until the repository has one.
+ *
+ * @param catDetected   whether any camera saw a cat as of the last detection applied
+ * @param armingVersion bumped whenever a transition sets the arming status, even to the status
+ *                      it already has, so the repository and listeners hear of every status set
+ * @param alarmVersion  likewise for the alarm status
+ */
+record AlarmState(ArmingStatus armingStatus, AlarmStatus alarmStatus, boolean catDetected,
+                  ActiveSensors activeSensors, long armingVersion, long alarmVersion) {
+
+    AlarmState withAlarmStatus(AlarmStatus status) {
+        return new AlarmState(armingStatus, status, catDetected, activeSensors, armingVersion, alarmVersion + 1);
+    }
+
+    AlarmState withActiveSensors(ActiveSensors sensors) {
+        if (sensors == activeSensors) {
+            return this;
+        }
+        return new AlarmState(armingStatus, alarmStatus, catDetected, sensors, armingVersion, alarmVersion);
+    }
+
+    boolean allSensorsInactive() {
+        return activeSensors.total() == 0;
+    }
+
+    /**
+     * Disarming silences the alarm. Arming starts with every sensor inactive, and arming at home
+     * while a cat is in view raises the alarm straight away.
+     */
+    AlarmState afterArmingChange(ArmingStatus status) {
+        AlarmState next = this;
+        if (status == ArmingStatus.DISARMED) {
+            next = next.withAlarmStatus(AlarmStatus.NO_ALARM);
+        } else {
+            next = next.withActiveSensors(ActiveSensors.NONE);
+            if (status == ArmingStatus.ARMED_HOME && catDetected) {
+                next = next.withAlarmStatus(AlarmStatus.ALARM);
+            }
+        }
+        return new AlarmState(status, next.alarmStatus, catDetected, next.activeSensors,
+                armingVersion + 1, next.alarmVersion);
+    }
+
+    /**
+     * Records the sensor's new state and moves the alarm on from the change. A sensor change
+     * never moves an alarm that is already going off.
+     *
+     * @param wasActive the sensor's state before the change; callers take it from
+     *                  {@link #activeSensors()} for every sensor this state knows about
+     */
+    AlarmState afterSensorChange(UUID sensorId, SensorType type, boolean wasActive, boolean isActive) {
+        AlarmState next = withActiveSensors(activeSensors.withActivation(sensorId, type, isActive));
+        if (alarmStatus == AlarmStatus.ALARM) {
+            return next;
+        }
+        AlarmStatus status = alarmStatusAfterSensorChange(wasActive, isActive, next.allSensorsInactive());
+        return status == null ? next : next.withAlarmStatus(status);
+    }
+
+    // Returns the alarm status a single sensor change leads to, or null if it leaves it alone
+    private AlarmStatus alarmStatusAfterSensorChange(boolean wasActive, boolean isActive, boolean allSensorsInactive) {
+        if (isActive) {
+            if (armingStatus == ArmingStatus.DISARMED) {
+                return null;
+            }
+            boolean shouldTriggerAlarm = alarmStatus == AlarmStatus.PENDING_ALARM || wasActive;
+            return shouldTriggerAlarm ? AlarmStatus.ALARM : AlarmStatus.PENDING_ALARM;
+        }
+        if (wasActive && alarmStatus == AlarmStatus.PENDING_ALARM && allSensorsInactive) {
+            return AlarmStatus.NO_ALARM;
+        }
+        return null;
+    }
+
+    /**
+     * A cat in view while armed at home raises the alarm; once no camera sees one, a quiet house
+     * with no alarm going off is reset to no alarm.
+     */
+    AlarmState afterCatDetection(boolean detected) {
+        AlarmState next = detected == catDetected ? this
+                : new AlarmState(armingStatus, alarmStatus, detected, activeSensors, armingVersion, alarmVersion);
+        if (detected && armingStatus == ArmingStatus.ARMED_HOME) {
+            return next.withAlarmStatus(AlarmStatus.ALARM);
+        }
+        if (!detected && allSensorsInactive() && alarmStatus != AlarmStatus.ALARM) {
+            return next.withAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+        return next;
+    }
+
+    /**
+     * A pending alarm is called off once every sensor is inactive.
+     */
+    AlarmState afterSensorCheck() {
+        if (alarmStatus == AlarmStatus.PENDING_ALARM && allSensorsInactive()) {
+            return withAlarmStatus(AlarmStatus.NO_ALARM);
+        }
+        return this;
+    }
+}
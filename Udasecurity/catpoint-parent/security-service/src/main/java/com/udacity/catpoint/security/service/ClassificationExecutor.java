@@ -0,0 +1,180 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded thread pool for image classification. At most {@code queueCapacity} frames wait for a
+ * free thread; what happens to a frame submitted beyond that is decided by the
+ * {@link BackpressurePolicy}. Threads are daemons and exit once idle for
+ * {@value #IDLE_TIMEOUT_SECONDS} seconds, so an unclosed executor never keeps the JVM alive and an
+ * idle one holds no threads.
+ */
+public final class ClassificationExecutor implements AutoCloseable {
+
+    public enum BackpressurePolicy {
+        /**
+         * The new frame's future fails with a {@link RejectedExecutionException}.
+         */
+        REJECT,
+        /**
+         * The submitting thread waits until there is room in the queue.
+         */
+        BLOCK,
+        /**
+         * The oldest queued frame is cancelled to make room; suited to live camera feeds, where
+         * only the latest frames matter.
+         */
+        DROP_OLDEST
+    }
+
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+
+    private final ThreadPoolExecutor executor;
+    private final BackpressurePolicy policy;
+    private final LongAdder rejectedFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+
+    /**
+     * @param threads       number of frames classified concurrently
+     * @param queueCapacity number of frames allowed to wait for a thread
+     * @param policy        what to do with a frame when the queue is full
+     */
+    public ClassificationExecutor(int threads, int queueCapacity, BackpressurePolicy policy) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.policy = Objects.requireNonNull(policy, "BackpressurePolicy cannot be null");
+        int pool = POOL_NUMBER.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "image-classifier-" + pool + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, rejectionHandler(policy));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns a new executor for a service that was not given one: one thread, a queue of four
+     * frames and {@link BackpressurePolicy#DROP_OLDEST}.
+     */
+    static ClassificationExecutor forService() {
+        return new ClassificationExecutor(1, 4, BackpressurePolicy.DROP_OLDEST);
+    }
+
+    /**
+     * Queues the task. The returned future completes with its result, fails with
+     * {@link RejectedExecutionException} if the frame was rejected or the executor is closed, and
+     * is cancelled if the frame was dropped to make room for a newer one.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        Task<T> queued = new Task<>(Objects.requireNonNull(task, "Task cannot be null"));
+        try {
+            executor.execute(queued);
+        } catch (RejectedExecutionException e) {
+            rejectedFrames.increment();
+            queued.future.completeExceptionally(e);
+        }
+        return queued.future;
+    }
+
+    public BackpressurePolicy getBackpressurePolicy() {
+        return policy;
+    }
+
+    public int getQueuedFrames() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedFrames() {
+        return rejectedFrames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    /**
+     * Stops accepting frames and cancels those still queued; frames already being classified
+     * run to completion.
+     */
+    @Override
+    public void close() {
+        for (Runnable pending : executor.shutdownNow()) {
+            if (pending instanceof Task<?> task) {
+                task.future.cancel(false);
+            }
+        }
+    }
+
+    private RejectedExecutionHandler rejectionHandler(BackpressurePolicy policy) {
+        return switch (policy) {
+            case REJECT -> new ThreadPoolExecutor.AbortPolicy();
+            case BLOCK -> (runnable, pool) -> {
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("Classification executor is closed");
+                }
+                try {
+                    pool.getQueue().put(runnable);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+                }
+                // Closed while we waited; the task would never run
+                if (pool.isShutdown() && pool.remove(runnable)) {
+                    throw new RejectedExecutionException("Classification executor is closed");
+                }
+            };
+            case DROP_OLDEST -> (runnable, pool) -> {
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("Classification executor is closed");
+                }
+                Runnable oldest = pool.getQueue().poll();
+                if (oldest instanceof Task<?> dropped) {
+                    droppedFrames.increment();
+                    dropped.future.cancel(false);
+                }
+                pool.execute(runnable);
+            };
+        };
+    }
+
+    private static final class Task<T> implements Runnable {
+        private final Callable<T> callable;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(callable.call());
+            } catch (Throwable e) {
+                // Whatever was thrown, the frame's caller must not be left waiting
+                future.completeExceptionally(e);
+                if (e instanceof VirtualMachineError error) {
+                    throw error;
+                }
+            }
+        }
+    }
+}
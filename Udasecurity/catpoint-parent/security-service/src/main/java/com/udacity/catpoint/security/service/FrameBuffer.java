@@ -0,0 +1,251 @@
+package com.udacity.catpoint.security.service;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free buffer of frames from one source, such as a camera, waiting to be
+ * processed. {@link #offer(Object)} never blocks: when the buffer is full the overflow policy
+ * decides which frame goes, so however fast a source bursts, no more than {@code capacity} of
+ * its frames are held. Any number of threads may offer and poll.
+ *
+ * <p>Every frame offered is either returned by {@link #poll()} or passed to the drop handler,
+ * exactly once, which lets callers release or recycle dropped frames.
+ *
+ * @param <T> frame type, e.g. a decoded image or its encoded bytes
+ */
+public final class FrameBuffer<T> {
+
+    public enum OverflowPolicy {
+        /**
+         * Holds a single frame; each new frame replaces the one waiting. Suited to live
+         * previews and detection, where only the newest frame matters.
+         */
+        LATEST_WINS,
+        /**
+         * Frames are kept in order and a new frame is dropped while the buffer is full.
+         */
+        FIFO,
+        /**
+         * Frames are kept in order and the oldest waiting frame is dropped to make room.
+         */
+        DROP_OLDEST
+    }
+
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final Consumer<? super T> dropHandler;
+
+    // Buffers of one frame, which includes every LATEST_WINS buffer, use a single slot
+    private final AtomicReference<T> slot;
+
+    // Larger buffers use a ring where each slot's sequence says whose turn it is. A slot is free
+    // for the producer at position p when its sequence is p, and holds a frame for the consumer
+    // at position p when its sequence is p + 1; this needs at least two slots to be unambiguous.
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final LongAdder offeredFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final AtomicLong peakDepth = new AtomicLong();
+
+    public FrameBuffer(OverflowPolicy policy, int capacity) {
+        this(policy, capacity, frame -> {
+        });
+    }
+
+    /**
+     * @param policy      what happens when a frame is offered to a full buffer
+     * @param capacity    frames held at most; ignored for {@link OverflowPolicy#LATEST_WINS},
+     *                    which always holds one
+     * @param dropHandler called, on the thread that caused the drop, with each frame that will
+     *                    never be polled
+     */
+    public FrameBuffer(OverflowPolicy policy, int capacity, Consumer<? super T> dropHandler) {
+        this.policy = Objects.requireNonNull(policy, "Overflow policy cannot be null");
+        this.dropHandler = Objects.requireNonNull(dropHandler, "Drop handler cannot be null");
+        if (policy != OverflowPolicy.LATEST_WINS && capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = policy == OverflowPolicy.LATEST_WINS ? 1 : capacity;
+        if (this.capacity == 1) {
+            this.slot = new AtomicReference<>();
+            this.slots = null;
+            this.sequences = null;
+        } else {
+            this.slot = null;
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.sequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, i);
+            }
+        }
+    }
+
+    /**
+     * Adds the frame, dropping a frame instead if the buffer is full.
+     *
+     * @return false if the frame itself was dropped, which only {@link OverflowPolicy#FIFO} does
+     */
+    public boolean offer(T frame) {
+        Objects.requireNonNull(frame, "Frame cannot be null");
+        offeredFrames.increment();
+        if (slot != null) {
+            return offerToSlot(frame);
+        }
+        switch (policy) {
+            case FIFO -> {
+                if (enqueue(frame)) {
+                    return true;
+                }
+                drop(frame);
+                return false;
+            }
+            case DROP_OLDEST -> {
+                while (!enqueue(frame)) {
+                    T oldest = dequeue();
+                    if (oldest != null) {
+                        drop(oldest);
+                    } else {
+                        // Another producer has claimed the oldest slot but not filled it yet
+                        Thread.onSpinWait();
+                    }
+                }
+                return true;
+            }
+            default -> throw new IllegalStateException("Unknown policy " + policy);
+        }
+    }
+
+    private boolean offerToSlot(T frame) {
+        if (policy == OverflowPolicy.FIFO) {
+            if (!slot.compareAndSet(null, frame)) {
+                drop(frame);
+                return false;
+            }
+            peakDepth.accumulateAndGet(1, Math::max);
+            return true;
+        }
+        // With room for one frame, dropping the oldest is the same as keeping the latest
+        T replaced = slot.getAndSet(frame);
+        if (replaced != null) {
+            drop(replaced);
+        } else {
+            peakDepth.accumulateAndGet(1, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * Removes and returns the oldest waiting frame, or the only one for
+     * {@link OverflowPolicy#LATEST_WINS}, or null if there is none.
+     */
+    public T poll() {
+        return slot != null ? slot.getAndSet(null) : dequeue();
+    }
+
+    /**
+     * Drops every waiting frame.
+     */
+    public void clear() {
+        T frame;
+        while ((frame = poll()) != null) {
+            drop(frame);
+        }
+    }
+
+    public boolean isEmpty() {
+        return depth() == 0;
+    }
+
+    /**
+     * Returns the number of frames waiting. Exact when no other thread is offering or polling.
+     */
+    public int depth() {
+        if (slot != null) {
+            return slot.get() == null ? 0 : 1;
+        }
+        long depth = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(capacity, depth));
+    }
+
+    /**
+     * Returns the most frames that have been waiting at once.
+     */
+    public int getPeakDepth() {
+        return (int) peakDepth.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getOfferedFrames() {
+        return offeredFrames.sum();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    private void drop(T frame) {
+        droppedFrames.increment();
+        dropHandler.accept(frame);
+    }
+
+    private boolean enqueue(T frame) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position % capacity);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, frame);
+                    // Publishes the frame to consumers
+                    sequences.set(index, position + 1);
+                    peakDepth.accumulateAndGet(position + 1 - head.get(), Math::max);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds the frame from a lap ago: full
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    private T dequeue() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position % capacity);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T frame = slots.getAndSet(index, null);
+                    // Frees the slot for the producer one lap ahead
+                    sequences.set(index, position + capacity);
+                    return frame;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                // Nothing published at this position yet: empty
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+}
@@ -0,0 +1,636 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless frame source for {@link SecurityService}. Frames arrive either as image files dropped
+ * into a watched spool directory or as a stream of JPEG frames, such as an MJPEG
+ * ({@code multipart/x-mixed-replace}) feed, from any {@link ReadableByteChannel}: a file, a
+ * socket or a pipe. Files and streams are read through NIO channels; frames are decoded and
+ * passed to {@link SecurityService#processImage(String, BufferedImage)} on a worker pool.
+ *
+ * <p>Frames from one camera are processed one at a time, while different cameras are processed
+ * in parallel. Each camera's waiting frames are held in a {@link FrameBuffer}, so a burst from
+ * one camera holds at most {@code maxQueuedFramesPerCamera} frames. By default the oldest
+ * waiting frame is dropped when a camera falls further behind, as only recent frames matter for
+ * a live feed.
+ *
+ * <p>Encoded frames and decoded images are held in buffers from an {@link ImageBufferPool}. The
+ * ingestor owns a frame's buffers from the moment it is read until it has been processed or
+ * dropped, then releases them for the next frame; a decoded image is only lent to
+ * {@link SecurityService#processImage(String, BufferedImage)} for the duration of the call.
+ *
+ * <p>Spool directory producers should write each file under a name starting with a dot or
+ * ending in {@code .part} and rename it when complete; only files with an image extension are
+ * read. Files are deleted once read.
+ */
+public final class FrameIngestor implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_QUEUED_FRAMES_PER_CAMERA = 4;
+
+    private static final int MAX_FRAME_BYTES = 32 * 1024 * 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final List<String> IMAGE_EXTENSIONS = List.of(".jpg", ".jpeg", ".png", ".bmp", ".gif");
+    private static final AtomicInteger INGESTOR_NUMBER = new AtomicInteger();
+
+    private final SecurityService securityService;
+    private final ImageBufferPool bufferPool;
+    private final PooledImageDecoder decoder;
+    private final FrameBuffer.OverflowPolicy overflowPolicy;
+    private final int maxQueuedFramesPerCamera;
+    private final ExecutorService workers;
+    private final String threadPrefix;
+    private final Map<String, CameraQueue> cameras = new ConcurrentHashMap<>();
+    private final List<WatchService> watchServices = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    // Frames accepted but not yet processed or dropped
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // awaitIdle waits on this until inFlight drops to zero
+    private final Object idleMonitor = new Object();
+
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder framesRead = new LongAdder();
+    private final LongAdder framesProcessed = new LongAdder();
+    private final LongAdder framesDropped = new LongAdder();
+    private final LongAdder framesFailed = new LongAdder();
+
+    public FrameIngestor(SecurityService securityService, int workerThreads) {
+        this(securityService, workerThreads, DEFAULT_MAX_QUEUED_FRAMES_PER_CAMERA);
+    }
+
+    /**
+     * @param securityService          receives the decoded frames
+     * @param workerThreads            threads decoding and processing frames
+     * @param maxQueuedFramesPerCamera frames a camera may have waiting before the oldest is dropped
+     */
+    public FrameIngestor(SecurityService securityService, int workerThreads, int maxQueuedFramesPerCamera) {
+        this(securityService, workerThreads, FrameBuffer.OverflowPolicy.DROP_OLDEST, maxQueuedFramesPerCamera);
+    }
+
+    /**
+     * @param securityService          receives the decoded frames
+     * @param workerThreads            threads decoding and processing frames
+     * @param overflowPolicy           which frame is dropped when a camera has too many waiting
+     * @param maxQueuedFramesPerCamera frames a camera may have waiting; always one for
+     *                                 {@link FrameBuffer.OverflowPolicy#LATEST_WINS}
+     */
+    public FrameIngestor(SecurityService securityService, int workerThreads,
+                         FrameBuffer.OverflowPolicy overflowPolicy, int maxQueuedFramesPerCamera) {
+        this(securityService, workerThreads, overflowPolicy, maxQueuedFramesPerCamera, new ImageBufferPool());
+    }
+
+    /**
+     * @param securityService          receives the decoded frames
+     * @param workerThreads            threads decoding and processing frames
+     * @param overflowPolicy           which frame is dropped when a camera has too many waiting
+     * @param maxQueuedFramesPerCamera frames a camera may have waiting; always one for
+     *                                 {@link FrameBuffer.OverflowPolicy#LATEST_WINS}
+     * @param bufferPool               supplies the buffers frames are read and decoded into, and
+     *                                 may be shared with other ingestors
+     */
+    public FrameIngestor(SecurityService securityService, int workerThreads,
+                         FrameBuffer.OverflowPolicy overflowPolicy, int maxQueuedFramesPerCamera,
+                         ImageBufferPool bufferPool) {
+        this.securityService = Objects.requireNonNull(securityService, "SecurityService cannot be null");
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("At least one worker thread is required");
+        }
+        if (maxQueuedFramesPerCamera < 1) {
+            throw new IllegalArgumentException("Each camera must be able to queue at least one frame");
+        }
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "Overflow policy cannot be null");
+        this.maxQueuedFramesPerCamera = maxQueuedFramesPerCamera;
+        this.bufferPool = Objects.requireNonNull(bufferPool, "Buffer pool cannot be null");
+        this.decoder = new PooledImageDecoder(bufferPool);
+        this.threadPrefix = "frame-ingest-" + INGESTOR_NUMBER.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, threadPrefix + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads the image files already in the directory, oldest name first, then keeps reading
+     * files as they appear until the ingestor is closed. Watching happens on a daemon thread.
+     */
+    public void watchDirectory(Path directory, String cameraId) throws IOException {
+        Objects.requireNonNull(directory, "Directory cannot be null");
+        Objects.requireNonNull(cameraId, "Camera id cannot be null");
+        if (closed) {
+            throw new IllegalStateException("Frame ingestor is closed");
+        }
+        WatchService watchService = directory.getFileSystem().newWatchService();
+        try {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        watchServices.add(watchService);
+        Thread watcher = new Thread(() -> watch(directory, cameraId, watchService), threadPrefix + "-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Reads JPEG frames from the channel until it reaches end of stream or the ingestor is
+     * closed, on the calling thread. Anything between frames, such as multipart boundaries and
+     * headers, is skipped. The channel is not closed.
+     *
+     * @return the number of frames read
+     */
+    public long readStream(ReadableByteChannel channel, String cameraId) throws IOException {
+        Objects.requireNonNull(channel, "Channel cannot be null");
+        Objects.requireNonNull(cameraId, "Camera id cannot be null");
+        JpegFrameSplitter splitter = new JpegFrameSplitter((frame, length) -> submit(cameraId, copy(frame, length)));
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long before = splitter.frames();
+        while (!closed && channel.read(buffer) >= 0) {
+            buffer.flip();
+            bytesRead.add(buffer.remaining());
+            splitter.accept(buffer);
+            buffer.clear();
+        }
+        return splitter.frames() - before;
+    }
+
+    /**
+     * Waits until every frame read so far has been processed or dropped.
+     *
+     * @return false if the timeout passed first
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (idleMonitor) {
+            while (inFlight.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(idleMonitor, remaining);
+            }
+        }
+        return true;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getFramesRead() {
+        return framesRead.sum();
+    }
+
+    public long getFramesProcessed() {
+        return framesProcessed.sum();
+    }
+
+    /**
+     * Frames discarded because their camera had too many frames waiting.
+     */
+    public long getFramesDropped() {
+        return framesDropped.sum();
+    }
+
+    /**
+     * Returns the number of frames waiting across all cameras.
+     */
+    public int getQueuedFrames() {
+        int queued = 0;
+        for (CameraQueue camera : cameras.values()) {
+            queued += camera.frames.depth();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the most frames one camera has had waiting at once.
+     */
+    public int getPeakQueuedFramesPerCamera() {
+        int peak = 0;
+        for (CameraQueue camera : cameras.values()) {
+            peak = Math.max(peak, camera.frames.getPeakDepth());
+        }
+        return peak;
+    }
+
+    /**
+     * Frames that could not be read, decoded or processed.
+     */
+    public long getFramesFailed() {
+        return framesFailed.sum();
+    }
+
+    /**
+     * Stops watching directories and reading streams and discards frames not yet processed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (WatchService watchService : watchServices) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.err.println("Failed to close spool directory watcher: " + e.getMessage());
+            }
+        }
+        workers.shutdownNow();
+        for (CameraQueue camera : cameras.values()) {
+            camera.discard();
+        }
+    }
+
+    private void watch(Path directory, String cameraId, WatchService watchService) {
+        try {
+            readExistingFiles(directory, cameraId);
+            while (!closed) {
+                WatchKey key = watchService.take();
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else if (event.context() instanceof Path name) {
+                        readFile(directory.resolve(name), cameraId);
+                    }
+                }
+                if (overflow) {
+                    readExistingFiles(directory, cameraId);
+                }
+                if (!key.reset()) {
+                    System.err.println("Spool directory " + directory + " is no longer accessible");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Closed by close()
+        } catch (IOException e) {
+            System.err.println("Failed to list spool directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void readExistingFiles(Path directory, String cameraId) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            entries.forEach(files::add);
+        }
+        files.sort(null);
+        for (Path file : files) {
+            readFile(file, cameraId);
+        }
+    }
+
+    private void readFile(Path file, String cameraId) {
+        if (!isImageFile(file) || !Files.isRegularFile(file)) {
+            return;
+        }
+        byte[] bytes = null;
+        int length;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_FRAME_BYTES) {
+                throw new IOException("File is larger than " + MAX_FRAME_BYTES + " bytes");
+            }
+            bytes = bufferPool.acquireBytes((int) size);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, (int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the file is in memory
+            }
+            length = buffer.position();
+            bytesRead.add(length);
+        } catch (NoSuchFileException e) {
+            // Already consumed, e.g. seen both in the initial listing and as an event
+            return;
+        } catch (IOException e) {
+            if (bytes != null) {
+                bufferPool.releaseBytes(bytes);
+            }
+            framesFailed.increment();
+            System.err.println("Failed to read frame " + file + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Failed to delete frame " + file + ": " + e.getMessage());
+        }
+        submit(cameraId, new EncodedFrame(bytes, length));
+    }
+
+    private static boolean isImageFile(Path file) {
+        Path name = file.getFileName();
+        if (name == null) {
+            return false;
+        }
+        String lowerName = name.toString().toLowerCase(Locale.ROOT);
+        return !lowerName.startsWith(".") && IMAGE_EXTENSIONS.stream().anyMatch(lowerName::endsWith);
+    }
+
+    // Copies a frame the splitter is about to overwrite into a buffer of its own
+    private EncodedFrame copy(byte[] frame, int length) {
+        byte[] bytes = bufferPool.acquireBytes(length);
+        System.arraycopy(frame, 0, bytes, 0, length);
+        return new EncodedFrame(bytes, length);
+    }
+
+    private void submit(String cameraId, EncodedFrame encodedFrame) {
+        framesRead.increment();
+        if (closed) {
+            bufferPool.releaseBytes(encodedFrame.data());
+            framesDropped.increment();
+            return;
+        }
+        inFlight.incrementAndGet();
+        cameras.computeIfAbsent(cameraId, CameraQueue::new).offer(encodedFrame);
+    }
+
+    private void frameDone() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void process(String cameraId, EncodedFrame encodedFrame) {
+        BufferedImage image = null;
+        try {
+            try {
+                image = decoder.decode(encodedFrame.data(), encodedFrame.length());
+            } finally {
+                // Decoded or not, the encoded bytes are no longer needed
+                bufferPool.releaseBytes(encodedFrame.data());
+            }
+            securityService.processImage(cameraId, image);
+            framesProcessed.increment();
+        } catch (IOException | RuntimeException e) {
+            framesFailed.increment();
+            System.err.println("Failed to process frame from " + cameraId + ": " + e.getMessage());
+        } finally {
+            // Safe to recycle: processImage is synchronous, and a ResilientImageService call it
+            // abandons at the deadline goes on reading its own copy, not this image
+            if (image != null) {
+                bufferPool.releaseImage(image);
+            }
+        }
+    }
+
+    // The first length bytes of data, a buffer from the pool, hold the frame
+    private record EncodedFrame(byte[] data, int length) {
+    }
+
+    // Frames waiting for one camera. At most one drain task per camera is on the worker pool,
+    // which keeps the camera's frames in order without holding a thread while it has none.
+    private final class CameraQueue implements Runnable {
+        private final String cameraId;
+        private final FrameBuffer<EncodedFrame> frames;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private CameraQueue(String cameraId) {
+            this.cameraId = cameraId;
+            this.frames = new FrameBuffer<>(overflowPolicy, maxQueuedFramesPerCamera, dropped -> {
+                bufferPool.releaseBytes(dropped.data());
+                framesDropped.increment();
+                frameDone();
+            });
+        }
+
+        private void offer(EncodedFrame frame) {
+            frames.offer(frame);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    workers.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // Closed concurrently
+                    discard();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            EncodedFrame frame;
+            while ((frame = frames.poll()) != null) {
+                if (closed) {
+                    bufferPool.releaseBytes(frame.data());
+                    framesDropped.increment();
+                } else {
+                    process(cameraId, frame);
+                }
+                frameDone();
+            }
+            scheduled.set(false);
+            // A frame offered after the last poll but before the flag was cleared would
+            // otherwise wait for the next one
+            if (!frames.isEmpty() && !closed) {
+                schedule();
+            }
+        }
+
+        private void discard() {
+            frames.clear();
+            scheduled.set(false);
+        }
+    }
+
+    /**
+     * Splits a byte stream into complete JPEG images by following the JPEG marker structure:
+     * marker segments are skipped by their length, so EXIF thumbnails inside a frame do not end
+     * it early, and the entropy-coded data is scanned for the end-of-image marker. Bytes outside
+     * images are ignored.
+     */
+    static final class JpegFrameSplitter {
+
+        interface FrameSink {
+            /**
+             * Receives a complete frame in the first {@code length} bytes of an array the
+             * splitter reuses once this returns.
+             */
+            void frame(byte[] frame, int length);
+        }
+
+        private static final int SEARCH = 0;
+        private static final int SEARCH_FF = 1;
+        private static final int MARKER = 2;
+        private static final int LENGTH_HIGH = 3;
+        private static final int LENGTH_LOW = 4;
+        private static final int SEGMENT = 5;
+        private static final int ENTROPY = 6;
+        private static final int ENTROPY_FF = 7;
+
+        private static final int SOI = 0xD8;
+        private static final int EOI = 0xD9;
+        private static final int SOS = 0xDA;
+
+        private final FrameSink sink;
+        private byte[] frame = new byte[READ_BUFFER_SIZE];
+        private int length;
+        private int state = SEARCH;
+        private int marker;
+        private int segmentRemaining;
+        private long frames;
+
+        JpegFrameSplitter(FrameSink sink) {
+            this.sink = sink;
+        }
+
+        long frames() {
+            return frames;
+        }
+
+        void accept(ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                if (state == SEGMENT) {
+                    // Copy segment payloads in bulk
+                    int count = Math.min(segmentRemaining, buffer.remaining());
+                    if (!ensureCapacity(length + count)) {
+                        buffer.position(buffer.position() + count);
+                        continue;
+                    }
+                    buffer.get(frame, length, count);
+                    length += count;
+                    segmentRemaining -= count;
+                    if (segmentRemaining == 0) {
+                        state = marker == SOS ? ENTROPY : MARKER;
+                    }
+                    continue;
+                }
+                int b = buffer.get() & 0xFF;
+                switch (state) {
+                    case SEARCH -> {
+                        if (b == 0xFF) {
+                            state = SEARCH_FF;
+                        }
+                    }
+                    case SEARCH_FF -> {
+                        if (b == SOI) {
+                            length = 0;
+                            append(0xFF);
+                            append(SOI);
+                            state = MARKER;
+                        } else if (b != 0xFF) {
+                            state = SEARCH;
+                        }
+                    }
+                    case MARKER -> {
+                        // Expecting 0xFF then a marker code; extra 0xFF bytes are fill
+                        if (b == 0xFF) {
+                            if (length == 0 || (frame[length - 1] & 0xFF) != 0xFF) {
+                                append(b);
+                            }
+                        } else if (length > 0 && (frame[length - 1] & 0xFF) == 0xFF) {
+                            startMarker(b);
+                        } else {
+                            // Not a JPEG after all
+                            state = SEARCH;
+                        }
+                    }
+                    case LENGTH_HIGH -> {
+                        append(b);
+                        segmentRemaining = b << 8;
+                        state = LENGTH_LOW;
+                    }
+                    case LENGTH_LOW -> {
+                        append(b);
+                        segmentRemaining = (segmentRemaining | b) - 2;
+                        if (segmentRemaining < 0) {
+                            state = SEARCH;
+                        } else {
+                            state = segmentRemaining == 0 ? (marker == SOS ? ENTROPY : MARKER) : SEGMENT;
+                        }
+                    }
+                    case ENTROPY -> {
+                        append(b);
+                        if (b == 0xFF) {
+                            state = ENTROPY_FF;
+                        }
+                    }
+                    case ENTROPY_FF -> {
+                        if (b == 0x00 || (b >= 0xD0 && b <= 0xD7)) {
+                            // Stuffed byte or restart marker
+                            append(b);
+                            state = ENTROPY;
+                        } else if (b != 0xFF) {
+                            // End of image, or the next segment of a progressive image
+                            startMarker(b);
+                        }
+                    }
+                    default -> throw new IllegalStateException("Unknown state " + state);
+                }
+            }
+        }
+
+        private void startMarker(int code) {
+            append(code);
+            marker = code;
+            if (code == EOI) {
+                frames++;
+                sink.frame(frame, length);
+                length = 0;
+                state = SEARCH;
+            } else if (code == 0x01 || (code >= 0xD0 && code <= 0xD7)) {
+                // Standalone markers have no length
+                state = MARKER;
+            } else {
+                state = LENGTH_HIGH;
+            }
+        }
+
+        private void append(int b) {
+            if (ensureCapacity(length + 1)) {
+                frame[length++] = (byte) b;
+            }
+        }
+
+        // Abandons the frame and resynchronises on the next image if it grows too large
+        private boolean ensureCapacity(int capacity) {
+            if (capacity > MAX_FRAME_BYTES) {
+                length = 0;
+                state = SEARCH;
+                return false;
+            }
+            if (capacity > frame.length) {
+                frame = Arrays.copyOf(frame, Math.max(capacity, Math.min(MAX_FRAME_BYTES, frame.length * 2)));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recycles the large buffers a stream of frames goes through: decoded images, keyed by size and
+ * type, and byte arrays holding encoded frames, in power-of-two size classes. A camera delivering
+ * same-sized frames then allocates next to nothing once the pool has warmed up.
+ *
+ * <p>Whoever acquires a buffer owns it until they release it, and must not touch it afterwards,
+ * as it may be handed out again at once. Buffers come back with whatever the last owner left in
+ * them. Buffers the pool did not hand out may be released too; any the pool cannot reuse, or
+ * cannot hold because enough of that size are already pooled, are left to the garbage collector.
+ * Safe for use from any number of threads.
+ */
+public final class ImageBufferPool {
+
+    public static final int DEFAULT_MAX_POOLED_PER_SIZE = 8;
+
+    private static final int MIN_ARRAY_SIZE = 4 * 1024;
+    private static final int MAX_ARRAY_SIZE = 1 << 30;
+
+    private final int maxPooledPerSize;
+    private final Map<ImageKey, BlockingQueue<BufferedImage>> images = new ConcurrentHashMap<>();
+    private final Map<Integer, BlockingQueue<byte[]>> arrays = new ConcurrentHashMap<>();
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder reuses = new LongAdder();
+    private final LongAdder discards = new LongAdder();
+
+    public ImageBufferPool() {
+        this(DEFAULT_MAX_POOLED_PER_SIZE);
+    }
+
+    /**
+     * @param maxPooledPerSize buffers of one image size and type, or one array size class, kept
+     *                         for reuse; enough for every frame in flight at once avoids
+     *                         allocation entirely
+     */
+    public ImageBufferPool(int maxPooledPerSize) {
+        if (maxPooledPerSize < 1) {
+            throw new IllegalArgumentException("At least one buffer per size must be pooled");
+        }
+        this.maxPooledPerSize = maxPooledPerSize;
+    }
+
+    /**
+     * Returns an image of exactly this size and type, such as
+     * {@link BufferedImage#TYPE_3BYTE_BGR}, with unspecified pixels.
+     */
+    public BufferedImage acquireImage(int width, int height, int imageType) {
+        if (imageType == BufferedImage.TYPE_CUSTOM) {
+            throw new IllegalArgumentException("Only images of a predefined type can be pooled");
+        }
+        BlockingQueue<BufferedImage> pooled = images.get(new ImageKey(width, height, imageType));
+        BufferedImage image = pooled == null ? null : pooled.poll();
+        if (image != null) {
+            reuses.increment();
+            return image;
+        }
+        allocations.increment();
+        return new BufferedImage(width, height, imageType);
+    }
+
+    /**
+     * Hands the image back for reuse. Sub-images and images of a custom type are not pooled, as
+     * they cannot be handed out as a fresh image of their size.
+     */
+    public void releaseImage(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_CUSTOM || image.getRaster().getParent() != null) {
+            return;
+        }
+        if (!images.computeIfAbsent(new ImageKey(image.getWidth(), image.getHeight(), image.getType()),
+                key -> new ArrayBlockingQueue<>(maxPooledPerSize)).offer(image)) {
+            discards.increment();
+        }
+    }
+
+    /**
+     * Returns an array of at least the given length, with unspecified contents. Its length is
+     * usually larger, so owners track how much of it they use.
+     */
+    public byte[] acquireBytes(int minLength) {
+        if (minLength < 0) {
+            throw new IllegalArgumentException("Length cannot be negative");
+        }
+        if (minLength > MAX_ARRAY_SIZE) {
+            allocations.increment();
+            return new byte[minLength];
+        }
+        int size = Math.max(MIN_ARRAY_SIZE, Integer.highestOneBit(Math.max(1, minLength - 1)) << 1);
+        BlockingQueue<byte[]> pooled = arrays.get(size);
+        byte[] array = pooled == null ? null : pooled.poll();
+        if (array != null) {
+            reuses.increment();
+            return array;
+        }
+        allocations.increment();
+        return new byte[size];
+    }
+
+    /**
+     * Hands the array back for reuse. Only arrays whose length is one of the pool's size
+     * classes are pooled.
+     */
+    public void releaseBytes(byte[] array) {
+        int size = array.length;
+        if (size < MIN_ARRAY_SIZE || size > MAX_ARRAY_SIZE || Integer.bitCount(size) != 1) {
+            return;
+        }
+        if (!arrays.computeIfAbsent(size, key -> new ArrayBlockingQueue<>(maxPooledPerSize)).offer(array)) {
+            discards.increment();
+        }
+    }
+
+    /**
+     * Buffers acquired that had to be newly allocated.
+     */
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    /**
+     * Buffers acquired that were reused from the pool.
+     */
+    public long getReuses() {
+        return reuses.sum();
+    }
+
+    /**
+     * Buffers released while enough of their size were already pooled, and so left to the
+     * garbage collector. A steady count means the pool holds fewer buffers than are in flight.
+     */
+    public long getDiscards() {
+        return discards.sum();
+    }
+
+    private record ImageKey(int width, int height, int type) {
+    }
+}
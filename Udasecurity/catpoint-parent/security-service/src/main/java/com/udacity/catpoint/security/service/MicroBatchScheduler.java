@@ -0,0 +1,289 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ClassificationResult;
+import com.udacity.catpoint.image.ImageService;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gathers frames from any number of cameras into micro-batches for
+ * {@link ImageService#classifyAll(List)}. A batch is dispatched once it holds
+ * {@code maxBatchSize} frames or its oldest frame has waited {@code maxDelay}, whichever comes
+ * first, and at most {@code maxConcurrentBatches} batches are classified at a time. While every
+ * slot is busy, frames wait for the next one, at most {@code maxPendingFrames} of them; a frame
+ * submitted beyond that fails straight away with a {@link RejectedExecutionException}, so an image
+ * service that cannot keep up sheds frames instead of queueing them without bound. Frames are
+ * batched in arrival order and no batch holds more than {@code maxBatchSize}. Each frame gets its
+ * full classification, so the caller can apply any threshold to it, then or later.
+ *
+ * <p>Threads are daemons, so an unclosed scheduler never keeps the JVM alive.
+ */
+public final class MicroBatchScheduler implements AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 8;
+    public static final Duration DEFAULT_MAX_DELAY = Duration.ofMillis(20);
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 2;
+    public static final int DEFAULT_MAX_PENDING_FRAMES = 64;
+
+    private static final AtomicInteger SCHEDULER_NUMBER = new AtomicInteger();
+
+    private final ImageService imageService;
+    private final int maxBatchSize;
+    private final int maxPendingFrames;
+    private final long maxDelayNanos;
+    private final Semaphore batchSlots;
+    private final ExecutorService batchExecutor;
+    private final Thread dispatcher;
+
+    // Guarded by itself
+    private final ArrayDeque<Frame> pending = new ArrayDeque<>();
+    private boolean closed;
+
+    private final LongAdder dispatchedBatches = new LongAdder();
+    private final LongAdder classifiedFrames = new LongAdder();
+    private final LongAdder rejectedFrames = new LongAdder();
+
+    private record Frame(String cameraId, BufferedImage image, long enqueuedAt,
+                         CompletableFuture<ClassificationResult> result) {
+    }
+
+    public MicroBatchScheduler(ImageService imageService) {
+        this(imageService, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY, DEFAULT_MAX_CONCURRENT_BATCHES);
+    }
+
+    /**
+     * @param imageService         classifies each batch
+     * @param maxBatchSize         most frames sent in one batch
+     * @param maxDelay             longest a frame waits for its batch to fill
+     * @param maxConcurrentBatches most batches being classified at once
+     */
+    public MicroBatchScheduler(ImageService imageService, int maxBatchSize, Duration maxDelay, int maxConcurrentBatches) {
+        this(imageService, maxBatchSize, maxDelay, maxConcurrentBatches, Math.max(DEFAULT_MAX_PENDING_FRAMES, maxBatchSize));
+    }
+
+    /**
+     * @param imageService         classifies each batch
+     * @param maxBatchSize         most frames sent in one batch
+     * @param maxDelay             longest a frame waits for its batch to fill
+     * @param maxConcurrentBatches most batches being classified at once
+     * @param maxPendingFrames     most frames waiting for a batch; at least {@code maxBatchSize}
+     */
+    public MicroBatchScheduler(ImageService imageService, int maxBatchSize, Duration maxDelay, int maxConcurrentBatches,
+                               int maxPendingFrames) {
+        this.imageService = Objects.requireNonNull(imageService, "ImageService cannot be null");
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        Objects.requireNonNull(maxDelay, "Delay cannot be null");
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException("Delay cannot be negative");
+        }
+        if (maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("At least one batch must be allowed at a time");
+        }
+        if (maxPendingFrames < maxBatchSize) {
+            throw new IllegalArgumentException("At least a full batch of frames must be allowed to wait");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxPendingFrames = maxPendingFrames;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.batchSlots = new Semaphore(maxConcurrentBatches);
+
+        int number = SCHEDULER_NUMBER.incrementAndGet();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.batchExecutor = Executors.newFixedThreadPool(maxConcurrentBatches, runnable -> {
+            Thread thread = new Thread(runnable, "image-batch-" + number + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatchLoop, "image-batch-" + number + "-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues a frame for the next batch.
+     *
+     * @return the frame's classification; fails if the image service failed on the frame's batch,
+     * or with a {@link RejectedExecutionException} if the scheduler is closed or already holds
+     * {@code maxPendingFrames} frames, and is cancelled if the scheduler is closed before the frame
+     * is classified
+     */
+    public CompletableFuture<ClassificationResult> submit(String cameraId, BufferedImage image) {
+        Objects.requireNonNull(cameraId, "Camera id cannot be null");
+        Objects.requireNonNull(image, "Image cannot be null");
+        CompletableFuture<ClassificationResult> result = new CompletableFuture<>();
+        synchronized (pending) {
+            if (closed) {
+                result.completeExceptionally(new RejectedExecutionException("Batch scheduler is closed"));
+                return result;
+            }
+            if (pending.size() >= maxPendingFrames) {
+                rejectedFrames.increment();
+                result.completeExceptionally(new RejectedExecutionException(
+                        "Batch scheduler already holds " + maxPendingFrames + " frames"));
+                return result;
+            }
+            pending.add(new Frame(cameraId, image, System.nanoTime(), result));
+            pending.notifyAll();
+        }
+        return result;
+    }
+
+    public long getDispatchedBatches() {
+        return dispatchedBatches.sum();
+    }
+
+    public long getClassifiedFrames() {
+        return classifiedFrames.sum();
+    }
+
+    /**
+     * Frames refused because {@code maxPendingFrames} were already waiting.
+     */
+    public long getRejectedFrames() {
+        return rejectedFrames.sum();
+    }
+
+    boolean isClosed() {
+        synchronized (pending) {
+            return closed;
+        }
+    }
+
+    public int getPendingFrames() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Stops dispatching and cancels frames that have not been sent yet. Batches already being
+     * classified are interrupted.
+     */
+    @Override
+    public void close() {
+        List<Frame> abandoned;
+        synchronized (pending) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            abandoned = new ArrayList<>(pending);
+            pending.clear();
+            pending.notifyAll();
+        }
+        dispatcher.interrupt();
+        try {
+            // The dispatcher cancels any batch it was holding on its way out
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batchExecutor.shutdownNow();
+        abandoned.forEach(frame -> frame.result().cancel(false));
+    }
+
+    private void dispatchLoop() {
+        try {
+            while (true) {
+                List<Frame> batch = nextBatch();
+                if (batch == null) {
+                    return;
+                }
+                try {
+                    batchSlots.acquire();
+                } catch (InterruptedException e) {
+                    batch.forEach(frame -> frame.result().cancel(false));
+                    throw e;
+                }
+                try {
+                    batchExecutor.execute(() -> {
+                        try {
+                            classify(batch);
+                        } finally {
+                            batchSlots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // Closed while this batch waited for a slot
+                    batchSlots.release();
+                    batch.forEach(frame -> frame.result().cancel(false));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Waits until a batch is full or its oldest frame is due; null once closed
+    private List<Frame> nextBatch() throws InterruptedException {
+        synchronized (pending) {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                if (!pending.isEmpty()) {
+                    long wait = pending.peekFirst().enqueuedAt() + maxDelayNanos - System.nanoTime();
+                    if (wait <= 0 || pending.size() >= maxBatchSize) {
+                        return takeBatch();
+                    }
+                    pending.wait(wait / 1_000_000, (int) (wait % 1_000_000));
+                } else {
+                    pending.wait();
+                }
+            }
+        }
+    }
+
+    private List<Frame> takeBatch() {
+        int size = Math.min(pending.size(), maxBatchSize);
+        List<Frame> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(pending.pollFirst());
+        }
+        return batch;
+    }
+
+    private void classify(List<Frame> batch) {
+        List<BufferedImage> images = new ArrayList<>(batch.size());
+        for (Frame frame : batch) {
+            images.add(frame.image());
+        }
+        List<ClassificationResult> results;
+        try {
+            results = imageService.classifyAll(images);
+            if (results == null || results.size() != batch.size()) {
+                throw new IllegalStateException("Image service returned "
+                        + (results == null ? "no" : results.size()) + " results for " + batch.size() + " images");
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(frame -> frame.result().completeExceptionally(e));
+            return;
+        }
+        dispatchedBatches.increment();
+        classifiedFrames.add(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ClassificationResult result = results.get(i);
+            if (result == null) {
+                batch.get(i).result().completeExceptionally(
+                        new IllegalStateException("No result for frame from " + batch.get(i).cameraId()));
+            } else {
+                batch.get(i).result().complete(result);
+            }
+        }
+    }
+}
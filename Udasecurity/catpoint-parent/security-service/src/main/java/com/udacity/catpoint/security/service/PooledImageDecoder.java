@@ -0,0 +1,126 @@
+package com.udacity.catpoint.security.service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Decodes encoded frames into images from an {@link ImageBufferPool}: each frame is read
+ * straight into a pooled image of its size and type, passed to the reader through
+ * {@link ImageReadParam#setDestination(BufferedImage)}. JPEG readers are pooled as well, so a
+ * steady stream of same-sized JPEG frames decodes without allocating pixel buffers or readers.
+ * Images whose format has no predefined image type are decoded into fresh images.
+ *
+ * <p>The caller owns each image returned and releases it to the pool once done with it.
+ * Safe for use from any number of threads.
+ */
+final class PooledImageDecoder {
+
+    private static final int MAX_POOLED_READERS = 8;
+
+    private final ImageBufferPool pool;
+    private final BlockingQueue<ImageReader> jpegReaders = new ArrayBlockingQueue<>(MAX_POOLED_READERS);
+
+    PooledImageDecoder(ImageBufferPool pool) {
+        this.pool = Objects.requireNonNull(pool, "Buffer pool cannot be null");
+    }
+
+    /**
+     * Decodes the first {@code length} bytes of the array, which the caller may reuse as soon
+     * as this returns.
+     */
+    BufferedImage decode(byte[] data, int length) throws IOException {
+        boolean jpeg = length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8;
+        ImageInputStream stream = new ArrayImageInputStream(data, length);
+        ImageReader reader = jpeg ? jpegReaders.poll() : null;
+        if (reader == null) {
+            reader = newReader(stream, jpeg);
+        }
+        BufferedImage destination = null;
+        boolean reusable = false;
+        try {
+            reader.setInput(stream, true, true);
+            ImageReadParam param = reader.getDefaultReadParam();
+            int imageType = defaultImageType(reader);
+            if (imageType != BufferedImage.TYPE_CUSTOM) {
+                destination = pool.acquireImage(reader.getWidth(0), reader.getHeight(0), imageType);
+                param.setDestination(destination);
+            }
+            BufferedImage image = reader.read(0, param);
+            reusable = true;
+            return image;
+        } catch (IOException | RuntimeException e) {
+            if (destination != null) {
+                pool.releaseImage(destination);
+            }
+            throw e;
+        } finally {
+            reader.setInput(null);
+            // A reader that failed part way through may be left in a bad state; let it go
+            if (!reusable || !jpeg || !jpegReaders.offer(reader)) {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader newReader(ImageInputStream stream, boolean jpeg) throws IOException {
+        Iterator<ImageReader> readers = jpeg ? ImageIO.getImageReadersByFormatName("jpeg") : ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            throw new IOException("Not a readable image");
+        }
+        return readers.next();
+    }
+
+    // The type the reader would pick itself, so the pooled destination changes nothing but
+    // where the pixels go
+    private static int defaultImageType(ImageReader reader) throws IOException {
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        return types.hasNext() ? types.next().getBufferedImageType() : BufferedImage.TYPE_CUSTOM;
+    }
+
+    // Reads straight from a caller-owned array, unlike ImageIO's stream wrappers, which copy
+    // through caches of their own
+    private static final class ArrayImageInputStream extends ImageInputStreamImpl {
+        private final byte[] data;
+        private final int length;
+
+        private ArrayImageInputStream(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            return streamPos < length ? data[(int) streamPos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - streamPos);
+            System.arraycopy(data, (int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+    }
+}
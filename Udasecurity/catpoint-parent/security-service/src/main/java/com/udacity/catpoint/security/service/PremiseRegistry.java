@@ -0,0 +1,115 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Hosts one {@link SecurityService} per premise inside a single process. Each premise gets its
+ * own repository and service on first use, so alarm status, arming status, cat detection and
+ * sensors are all scoped to the premise. Premises share nothing mutable apart from this
+ * registry's map, whose lookups do not lock, so events for different premises never contend.
+ */
+public final class PremiseRegistry implements AutoCloseable {
+
+    private final Map<String, Premise> premises = new ConcurrentHashMap<>();
+    private final Function<String, ? extends SecurityRepository> repositoryFactory;
+    private final ImageService imageService;
+
+    private record Premise(SecurityRepository repository, SecurityService service) {
+    }
+
+    /**
+     * Creates a registry whose premises keep their state in memory only.
+     */
+    public PremiseRegistry(ImageService imageService) {
+        this(premiseId -> new InMemorySecurityRepositoryImpl(), imageService);
+    }
+
+    /**
+     * @param repositoryFactory creates the repository for a premise id the first time it is used
+     * @param imageService      shared by every premise; it must be safe to call from several threads
+     */
+    public PremiseRegistry(Function<String, ? extends SecurityRepository> repositoryFactory, ImageService imageService) {
+        this.repositoryFactory = Objects.requireNonNull(repositoryFactory, "Repository factory cannot be null");
+        this.imageService = Objects.requireNonNull(imageService, "ImageService cannot be null");
+    }
+
+    /**
+     * Returns the service for the premise, creating it and its repository if this is the first
+     * time the premise is seen.
+     */
+    public SecurityService service(String premiseId) {
+        Objects.requireNonNull(premiseId, "Premise id cannot be null");
+        Premise premise = premises.get(premiseId);
+        if (premise == null) {
+            premise = premises.computeIfAbsent(premiseId, this::createPremise);
+        }
+        return premise.service();
+    }
+
+    /**
+     * Returns the service for the premise only if it has already been created.
+     */
+    public Optional<SecurityService> find(String premiseId) {
+        Premise premise = premises.get(Objects.requireNonNull(premiseId, "Premise id cannot be null"));
+        return premise == null ? Optional.empty() : Optional.of(premise.service());
+    }
+
+    /**
+     * Stops hosting the premise and closes its repository.
+     *
+     * @return false if the premise was not hosted
+     */
+    public boolean remove(String premiseId) {
+        Premise premise = premises.remove(Objects.requireNonNull(premiseId, "Premise id cannot be null"));
+        if (premise == null) {
+            return false;
+        }
+        closeRepository(premiseId, premise);
+        return true;
+    }
+
+    public int size() {
+        return premises.size();
+    }
+
+    /**
+     * Returns a read-only, live view of the hosted premise ids.
+     */
+    public Set<String> premiseIds() {
+        return Collections.unmodifiableSet(premises.keySet());
+    }
+
+    /**
+     * Closes every hosted premise's repository and empties the registry.
+     */
+    @Override
+    public void close() {
+        for (String premiseId : premises.keySet()) {
+            remove(premiseId);
+        }
+    }
+
+    private Premise createPremise(String premiseId) {
+        SecurityRepository repository = Objects.requireNonNull(repositoryFactory.apply(premiseId),
+                "Repository factory returned null for premise " + premiseId);
+        return new Premise(repository, new SecurityService(repository, imageService));
+    }
+
+    private static void closeRepository(String premiseId, Premise premise) {
+        try {
+            premise.repository().close();
+        } catch (RuntimeException e) {
+            System.err.println("Error closing repository for premise " + premiseId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ClassificationResult;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorEvent;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer mode for a {@link SecurityService}, started with
+ * {@link SecurityService#startEventLoop(int)}. Sensor changes, arming changes, image results and
+ * sensor additions and removals are written into a preallocated ring of event slots and applied
+ * by one consumer thread, so callers never wait on each other or on the alarm state. The consumer
+ * applies whatever events are waiting as one batch and writes the resulting statuses to the
+ * repository and listeners once per batch.
+ *
+ * <p>Publishing copies what the event needs into its slot, so the caller may change or reuse its
+ * sensor or collection as soon as the call returns, and the consumer never touches either. The
+ * sensor passed with a change is therefore not updated; read its state back from the service or
+ * repository. Publishing allocates nothing, except that a slot's list of sensor events grows the
+ * first time it is given a batch larger than any it held before.
+ *
+ * <p>Events from one thread are applied in the order that thread published them. A caller only
+ * waits when the ring is full, until the consumer frees a slot. Events published after the loop
+ * is closed, and events the consumer itself publishes, e.g. from a listener, are applied on the
+ * calling thread as they would be without the loop.
+ *
+ * <p>An event that fails is logged and skipped. Should the consumer thread still die, the loop
+ * closes itself: waiting and later callers apply their events themselves, and
+ * {@link #awaitIdle(Duration)} throws rather than wait for events that will never be applied.
+ */
+public final class SecurityEventLoop implements AutoCloseable {
+
+    private enum Kind {
+        SENSOR_CHANGE, SENSOR_EVENTS, ARMING_CHANGE, SENSOR_ADDED, SENSOR_REMOVED, IMAGE_RESULT
+    }
+
+    // Reused for every lap of the ring; only the fields of the event's kind are set
+    private static final class Event {
+        private Kind kind;
+        // The sensor as it was when offered
+        private UUID sensorId;
+        private String sensorName;
+        private SensorType sensorType;
+        private Boolean sensorActive;
+        private Boolean active;
+        private final ArrayList<SensorEvent> sensorEvents = new ArrayList<>();
+        private ArmingStatus armingStatus;
+        private String cameraId;
+        private long imageSequence;
+        private ClassificationResult result;
+
+        private void setSensor(Sensor sensor) {
+            sensorId = sensor.getSensorId();
+            sensorName = sensor.getName();
+            sensorType = sensor.getSensorType();
+            sensorActive = sensor.getActive();
+        }
+
+        // Built on the consumer thread, which is the only one to see it
+        private Sensor sensor() {
+            return new Sensor(sensorId, sensorName, sensorType, sensorActive);
+        }
+
+        private void clear() {
+            sensorId = null;
+            sensorName = null;
+            sensorType = null;
+            sensorActive = null;
+            active = null;
+            sensorEvents.clear();
+            armingStatus = null;
+            cameraId = null;
+            result = null;
+        }
+    }
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long PRODUCER_PARK_NANOS = 1_000;
+    private static final long CONSUMER_PARK_NANOS = 1_000_000;
+    // Set in nextSequence once closed, so no event can be claimed after the consumer's last look
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final SecurityService securityService;
+    private final Event[] events;
+    private final int mask;
+    // The sequence each slot was last published with; a slot holds event s once it reads s
+    private final AtomicLongArray published;
+    private final AtomicLong nextSequence = new AtomicLong();
+    // Every event up to and including this one has been applied and its slot may be reused
+    private final AtomicLong applied = new AtomicLong(-1);
+    private final Thread consumer;
+    private volatile boolean consumerParked;
+    private volatile boolean consumerDied;
+
+    // Written by the consumer only
+    private volatile long eventsApplied;
+    private volatile long batches;
+
+    SecurityEventLoop(SecurityService securityService, int ringSize) {
+        if (ringSize < 2 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two of at least 2");
+        }
+        this.securityService = securityService;
+        this.events = new Event[ringSize];
+        for (int i = 0; i < ringSize; i++) {
+            events[i] = new Event();
+        }
+        this.mask = ringSize - 1;
+        this.published = new AtomicLongArray(ringSize);
+        for (int i = 0; i < ringSize; i++) {
+            published.set(i, -1);
+        }
+        this.consumer = new Thread(this::consume, "security-event-loop");
+        consumer.setDaemon(true);
+    }
+
+    void start() {
+        consumer.start();
+    }
+
+    public int getRingSize() {
+        return events.length;
+    }
+
+    public long getEventsApplied() {
+        return eventsApplied;
+    }
+
+    /**
+     * Number of batches the consumer has applied; events per batch shows how far the consumer
+     * fell behind and how much persistence batching saved.
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Waits until every event published so far has been applied.
+     *
+     * @return false if the timeout passed first
+     * @throws IllegalStateException if the consumer thread died before applying them
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long target = (nextSequence.get() & ~CLOSED) - 1;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (applied.get() < target) {
+            if (consumerDied) {
+                throw new IllegalStateException("Security event loop stopped with events unapplied");
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Applies the events already published and switches the service back to applying events on
+     * the calling thread.
+     */
+    @Override
+    public void close() {
+        if (!markClosed()) {
+            return;
+        }
+        LockSupport.unpark(consumer);
+        if (Thread.currentThread() != consumer) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        securityService.eventLoopClosed(this);
+    }
+
+    // Returns false if the loop was already closed
+    private boolean markClosed() {
+        long sequence;
+        do {
+            sequence = nextSequence.get();
+            if (sequence < 0) {
+                return false;
+            }
+        } while (!nextSequence.compareAndSet(sequence, sequence | CLOSED));
+        return true;
+    }
+
+    boolean isConsumerThread() {
+        return Thread.currentThread() == consumer;
+    }
+
+    // Each offer returns false if the caller should apply the change itself
+
+    boolean offerSensorChange(Sensor sensor, Boolean active) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        Event event = events[(int) sequence & mask];
+        event.kind = Kind.SENSOR_CHANGE;
+        event.setSensor(sensor);
+        event.active = active;
+        publish(sequence);
+        return true;
+    }
+
+    // Copies the events into the slot's own list, so the caller may reuse its collection as soon as this returns
+    boolean offerSensorEvents(Collection<SensorEvent> sensorEvents) {
+        // Checked before claiming, as a claimed slot must be published
+        for (SensorEvent sensorEvent : sensorEvents) {
+            Objects.requireNonNull(sensorEvent, "Sensor event cannot be null");
+        }
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        Event event = events[(int) sequence & mask];
+        event.kind = Kind.SENSOR_EVENTS;
+        event.sensorEvents.ensureCapacity(sensorEvents.size());
+        for (SensorEvent sensorEvent : sensorEvents) {
+            event.sensorEvents.add(sensorEvent);
+        }
+        publish(sequence);
+        return true;
+    }
+
+    boolean offerArmingChange(ArmingStatus armingStatus) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        Event event = events[(int) sequence & mask];
+        event.kind = Kind.ARMING_CHANGE;
+        event.armingStatus = armingStatus;
+        publish(sequence);
+        return true;
+    }
+
+    boolean offerSensorAdded(Sensor sensor) {
+        return offerSensor(Kind.SENSOR_ADDED, sensor);
+    }
+
+    boolean offerSensorRemoved(Sensor sensor) {
+        return offerSensor(Kind.SENSOR_REMOVED, sensor);
+    }
+
+    private boolean offerSensor(Kind kind, Sensor sensor) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        Event event = events[(int) sequence & mask];
+        event.kind = kind;
+        event.setSensor(sensor);
+        publish(sequence);
+        return true;
+    }
+
+    boolean offerImageResult(String cameraId, long imageSequence, ClassificationResult result) {
+        long sequence = claim();
+        if (sequence < 0) {
+            return false;
+        }
+        Event event = events[(int) sequence & mask];
+        event.kind = Kind.IMAGE_RESULT;
+        event.cameraId = cameraId;
+        event.imageSequence = imageSequence;
+        event.result = result;
+        publish(sequence);
+        return true;
+    }
+
+    // Returns the claimed sequence once its slot is free, or -1 if the caller should not publish
+    private long claim() {
+        if (isConsumerThread()) {
+            return -1;
+        }
+        long sequence;
+        do {
+            sequence = nextSequence.get();
+            if (sequence < 0) {
+                return -1;
+            }
+        } while (!nextSequence.compareAndSet(sequence, sequence + 1));
+        // The slot is free once the event a lap behind has been applied
+        int spins = 0;
+        while (sequence - events.length > applied.get()) {
+            if (consumerDied) {
+                return -1;
+            }
+            if (++spins < SPINS_BEFORE_PARKING) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+            }
+        }
+        return sequence;
+    }
+
+    private void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        boolean finished = false;
+        try {
+            applyEvents();
+            finished = true;
+        } finally {
+            if (!finished) {
+                // Hand the service back to direct calls instead of leaving callers waiting on a slot
+                markClosed();
+                securityService.eventLoopClosed(this);
+                consumerDied = true;
+                System.err.println("Security event loop stopped; events published but not applied are lost");
+            }
+        }
+    }
+
+    private void applyEvents() {
+        long next = 0;
+        int spins = 0;
+        long appliedCount = 0;
+        long batchCount = 0;
+        while (true) {
+            long end = next;
+            while (end - next < events.length && published.get((int) end & mask) == end) {
+                end++;
+            }
+            if (end == next) {
+                long claimed = nextSequence.get();
+                if (claimed < 0 && (claimed & ~CLOSED) == next) {
+                    // Closed and everything claimed has been applied
+                    return;
+                }
+                if (++spins < SPINS_BEFORE_PARKING) {
+                    Thread.onSpinWait();
+                } else {
+                    consumerParked = true;
+                    // Look again after raising the flag, so an event published meanwhile is not missed
+                    if (published.get((int) next & mask) != next) {
+                        LockSupport.parkNanos(this, CONSUMER_PARK_NANOS);
+                    }
+                    consumerParked = false;
+                }
+                continue;
+            }
+            spins = 0;
+            for (long sequence = next; sequence < end; sequence++) {
+                Event event = events[(int) sequence & mask];
+                try {
+                    apply(event);
+                } catch (Exception | LinkageError | AssertionError e) {
+                    System.err.println("Failed to apply " + event.kind + " event: " + e);
+                } finally {
+                    event.clear();
+                }
+            }
+            try {
+                securityService.publish();
+            } catch (Exception | LinkageError | AssertionError e) {
+                System.err.println("Failed to publish security state: " + e);
+            }
+            // Plain counters copied out, as only this thread writes them
+            appliedCount += end - next;
+            eventsApplied = appliedCount;
+            batches = ++batchCount;
+            applied.set(end - 1);
+            next = end;
+        }
+    }
+
+    private void apply(Event event) {
+        switch (event.kind) {
+            case SENSOR_CHANGE -> securityService.changeSensorActivationStatus(event.sensor(), event.active);
+            case SENSOR_EVENTS -> securityService.applySensorEvents(event.sensorEvents);
+            case ARMING_CHANGE -> securityService.setArmingStatus(event.armingStatus);
+            case SENSOR_ADDED -> securityService.addSensor(event.sensor());
+            case SENSOR_REMOVED -> securityService.removeSensor(event.sensor());
+            case IMAGE_RESULT -> securityService.applyCatDetection(event.cameraId, event.imageSequence, event.result);
+            default -> throw new IllegalStateException("Unknown event " + event.kind);
+        }
+    }
+}
@@ -1,55 +1,116 @@
 package com.udacity.catpoint.security.service;
 
 import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.image.ClassificationResult;
 import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.image.MotionGate;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorEvent;
+import com.udacity.catpoint.security.data.SensorType;
 import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
+/**
+ * Runs the alarm state machine over sensor, arming and camera events. The state the alarm
+ * decisions depend on is one immutable {@link AlarmState}, read from the repository on first
+ * use and then owned by the service: every event commits its transition with a compare-and-set,
+ * so concurrent events never lose each other's transitions and no lock is held while deciding.
+ * The resulting statuses are persisted and announced to listeners after the commit.
+ *
+ * <p>Alternatively, {@link #startEventLoop(int)} hands every sensor, arming and image event to a
+ * single consumer thread, so the callers publishing them never contend with each other.
+ */
 public final class SecurityService {
 
     private final SecurityRepository securityRepository;
     private final ImageService imageService;
     private final Set<StatusListener> statusListeners = ConcurrentHashMap.newKeySet();
-    private volatile boolean catDetected = false;
 
+    // Latest applied result per camera; camerasSeeingCat counts the cameras whose result is a cat
+    private final ConcurrentHashMap<String, CameraDetection> cameraDetections = new ConcurrentHashMap<>();
+    private final AtomicInteger camerasSeeingCat = new AtomicInteger();
+    // Last frame sequence numbered before each camera was removed; results for frames up to it
+    // were already in flight and are dropped rather than bringing the camera back
+    private final ConcurrentHashMap<String, Long> removedCameraFloors = new ConcurrentHashMap<>();
+    // Read inside cameraDetections updates so a threshold change is never overwritten
+    private volatile float catConfidenceThreshold = ImageService.DEFAULT_CONFIDENCE_THRESHOLD;
+
+    // Null until first used if the constructor was not given one; never shared with another
+    // service, so one premise's backlog cannot drop or delay another's frames
+    private final AtomicReference<ClassificationExecutor> classificationExecutor;
+    // Frames are numbered when submitted so a late result for an older frame from the same
+    // camera can be discarded
+    private final AtomicLong imageSequence = new AtomicLong();
+    // Null means every frame is classified
+    private volatile MotionGate motionGate;
+    // Null means frames are classified one at a time on the classification executor
+    private final AtomicReference<MicroBatchScheduler> batchScheduler = new AtomicReference<>();
+
+    // Null until seeded from the repository on first use, then replaced by every transition
+    private final AtomicReference<AlarmState> alarmState = new AtomicReference<>();
+    // Held by the thread writing committed statuses to the repository and listeners; the
+    // versions it last wrote are guarded by it
+    private final AtomicBoolean publishing = new AtomicBoolean();
+    private long publishedArmingVersion;
+    private long publishedAlarmVersion;
+    // Null means events are applied on the calling thread
+    private final AtomicReference<SecurityEventLoop> eventLoop = new AtomicReference<>();
+
+    // catDetected is result checked against the threshold in effect when it was last applied
+    private record CameraDetection(long sequence, ClassificationResult result, boolean catDetected) {
+    }
+
+    /**
+     * Frames submitted through {@link #processImageAsync(BufferedImage)} are classified on an
+     * executor of this service's own, created with the first one: one thread and a queue of four
+     * frames, dropping the oldest when full.
+     */
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
         this.securityRepository = Objects.requireNonNull(securityRepository, "SecurityRepository cannot be null");
         this.imageService = Objects.requireNonNull(imageService, "ImageService cannot be null");
+        this.classificationExecutor = new AtomicReference<>();
+    }
 
+    /**
+     * @param classificationExecutor runs the classifications requested through
+     *                               {@link #processImageAsync(BufferedImage)}
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService,
+                           ClassificationExecutor classificationExecutor) {
+        this.securityRepository = Objects.requireNonNull(securityRepository, "SecurityRepository cannot be null");
+        this.imageService = Objects.requireNonNull(imageService, "ImageService cannot be null");
+        this.classificationExecutor = new AtomicReference<>(
+                Objects.requireNonNull(classificationExecutor, "ClassificationExecutor cannot be null"));
     }
 
     public void setArmingStatus(ArmingStatus armingStatus) {
-        boolean isDisarmed = armingStatus == ArmingStatus.DISARMED;
-        boolean isArmedHomeWithCat = armingStatus == ArmingStatus.ARMED_HOME && catDetected;
-        if (!isDisarmed) {
-            deactivateAllSensors();
-            if (isArmedHomeWithCat) {
-                setAlarmStatus(AlarmStatus.ALARM);
-            }
-        } else {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop != null && loop.offerArmingChange(armingStatus)) {
+            return;
         }
-
-        securityRepository.setArmingStatus(armingStatus);
-    }
-
-    private void CatDetection() {
-        boolean isArmedHome = getArmingStatus() == ArmingStatus.ARMED_HOME;
-        boolean noSensorsActive = allSensorsInactive();
-        boolean alarmIsNotTriggered = getAlarmStatus() != AlarmStatus.ALARM;
-        if (catDetected && isArmedHome) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        } else if (!catDetected && noSensorsActive && alarmIsNotTriggered) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+        if (armingStatus != ArmingStatus.DISARMED) {
+            deactivateAllSensors(alarmState().armingStatus());
         }
-        notifyCatDetection();
+        commit(state -> state.afterArmingChange(armingStatus));
     }
 
     public void addStatusListener(StatusListener statusListener) {
@@ -60,95 +121,578 @@ public final class SecurityService {
         statusListeners.remove(statusListener);
     }
 
-    private void deactivateAllSensors() {
+    // The arming transition clears the active sensor counts to match. The repository's sensors
+    // are read-only, so the deactivated state is written through copies
+    private void deactivateAllSensors(ArmingStatus currentArmingStatus) {
         for (Sensor sensor : getSensors()) {
             boolean wasActive = sensor.getActive();
-            sensor.setActive(false);
-            boolean shouldUpdate = wasActive || getArmingStatus() != ArmingStatus.DISARMED;
+            boolean shouldUpdate = wasActive || currentArmingStatus != ArmingStatus.DISARMED;
             if (shouldUpdate) {
-                securityRepository.updateSensor(sensor);
+                securityRepository.updateSensor(inactiveCopyOf(sensor));
             }
         }
     }
 
     public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if (getAlarmStatus() != AlarmStatus.ALARM) {
-            boolean wasActive = sensor.getActive();
-            sensor.setActive(active);
-            securityRepository.updateSensor(sensor);
-            handleSensorStateUpdate(wasActive, active);
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop != null && loop.offerSensorChange(sensor, active)) {
+            return;
         }
+        changeSensorActivationStatus(sensor, active, securityRepository.findSensor(sensor.getSensorId()).isPresent());
     }
 
-    public void checkSensorsAndUpdateStatus() {
-        if (getAlarmStatus() == AlarmStatus.PENDING_ALARM && allSensorsInactive()) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
+    private void changeSensorActivationStatus(Sensor sensor, Boolean active, boolean stored) {
+        // Seeds the state before touching the sensor so the seed sees its previous state
+        alarmState();
+        SensorChange change = SensorChange.of(sensor, active, stored);
+        boolean[] applied = new boolean[1];
+        commit(state -> {
+            applied[0] = state.alarmStatus() != AlarmStatus.ALARM;
+            return applied[0] ? change.applyTo(state) : state;
+        });
+        if (applied[0]) {
+            persistActivations(List.of(sensor), false);
         }
     }
-    private void handleSensorStateUpdate(boolean wasActive, boolean isActive) {
-        AlarmStatus alarmStatus = getAlarmStatus();
-        if (isActive) {
-            handleSensorActivated(alarmStatus, wasActive);
-        } else if (wasActive) {
-            handleSensorDeactivated(alarmStatus);
+
+    /**
+     * Applies an activation change reported by a device that only knows the sensor id. The
+     * sensor is resolved through the repository's id index rather than a scan.
+     *
+     * @return false if no sensor with that id exists
+     */
+    public boolean changeSensorActivationStatus(UUID sensorId, Boolean active) {
+        Optional<Sensor> sensor = securityRepository.findSensor(sensorId);
+        // A copy, as persisting sets the state on the sensor and the repository's own are read-only
+        sensor.ifPresent(found -> changeSensorActivationStatus(inactiveCopyOf(found), active, true));
+        return sensor.isPresent();
+    }
+
+    public void checkSensorsAndUpdateStatus() {
+        commit(AlarmState::afterSensorCheck);
+    }
+
+    /**
+     * Applies a batch of sensor state changes, in order, with the same outcome as calling
+     * {@link #changeSensorActivationStatus(UUID, Boolean)} once per event. The alarm state machine
+     * runs in memory over the whole batch; the changed sensors are then persisted with one bulk
+     * repository write and listeners hear about the resulting alarm status once.
+     */
+    public void applySensorEvents(Collection<SensorEvent> events) {
+        Objects.requireNonNull(events, "Events cannot be null");
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop != null && loop.offerSensorEvents(events)) {
+            return;
+        }
+        if (events.isEmpty() || alarmState().alarmStatus() == AlarmStatus.ALARM) {
+            return;
+        }
+        List<Sensor> sensors = new ArrayList<>();
+        List<SensorChange> changes = new ArrayList<>();
+        for (SensorEvent event : events) {
+            Optional<Sensor> found = securityRepository.findSensor(event.sensorId());
+            if (found.isPresent()) {
+                sensors.add(found.get());
+                changes.add(SensorChange.of(found.get(), event.active(), true));
+            }
         }
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        int[] applied = new int[1];
+        commit(state -> {
+            applied[0] = 0;
+            // Sensor changes are ignored once the alarm is going off
+            while (applied[0] < changes.size() && state.alarmStatus() != AlarmStatus.ALARM) {
+                state = changes.get(applied[0]++).applyTo(state);
+            }
+            return state;
+        });
+        // Copies, as persisting sets the state on them and the repository's own are read-only
+        Map<UUID, Sensor> changedSensors = new LinkedHashMap<>();
+        for (Sensor sensor : sensors.subList(0, applied[0])) {
+            changedSensors.computeIfAbsent(sensor.getSensorId(), sensorId -> inactiveCopyOf(sensor));
+        }
+        persistActivations(changedSensors.values(), true);
     }
 
-    private void handleSensorDeactivated(AlarmStatus alarmStatus) {
-        if (alarmStatus == AlarmStatus.PENDING_ALARM) {
-            checkSensorsAndUpdateStatus();
+    /**
+     * One sensor's change, applied to whatever state is current when it commits, so whether the
+     * sensor was active comes from committed state rather than from a flag another thread may be
+     * changing. A sensor the repository does not hold is only known here once the service has
+     * activated it; until then its own flag says whether it was active.
+     */
+    private record SensorChange(UUID sensorId, SensorType type, boolean isActive, boolean wasActiveIfUnknown) {
+
+        static SensorChange of(Sensor sensor, Boolean active, boolean stored) {
+            return new SensorChange(sensor.getSensorId(), sensor.getSensorType(), Boolean.TRUE.equals(active),
+                    !stored && Boolean.TRUE.equals(sensor.getActive()));
+        }
+
+        AlarmState applyTo(AlarmState state) {
+            boolean wasActive = state.activeSensors().isActive(sensorId) || wasActiveIfUnknown;
+            return state.afterSensorChange(sensorId, type, wasActive, isActive);
         }
     }
 
-    private void handleSensorActivated(AlarmStatus alarmStatus, boolean wasActive) {
-        boolean isDisarmed = getArmingStatus() == ArmingStatus.DISARMED;
-        boolean shouldTriggerAlarm = alarmStatus == AlarmStatus.PENDING_ALARM || wasActive;
-        if (!isDisarmed) {
-            AlarmStatus newStatus = shouldTriggerAlarm ? AlarmStatus.ALARM : AlarmStatus.PENDING_ALARM;
-            setAlarmStatus(newStatus);
+    private static Sensor inactiveCopyOf(Sensor sensor) {
+        return new Sensor(sensor.getSensorId(), sensor.getName(), sensor.getSensorType(), false);
+    }
+
+    /**
+     * Writes each sensor's committed state to the sensor and the repository, and writes it again
+     * if a later commit changed it meanwhile, so whichever order concurrent writes of one sensor
+     * land in, the repository ends up agreeing with the alarm state.
+     */
+    private void persistActivations(Collection<Sensor> sensors, boolean asBatch) {
+        Collection<Sensor> stale = sensors;
+        while (!stale.isEmpty()) {
+            ActiveSensors written = alarmState.get().activeSensors();
+            for (Sensor sensor : stale) {
+                sensor.setActive(written.isActive(sensor.getSensorId()));
+            }
+            if (asBatch) {
+                securityRepository.updateSensors(stale);
+            } else {
+                stale.forEach(securityRepository::updateSensor);
+            }
+            ActiveSensors now = alarmState.get().activeSensors();
+            stale = now == written ? List.of() : stale.stream()
+                    .filter(sensor -> now.isActive(sensor.getSensorId()) != written.isActive(sensor.getSensorId()))
+                    .toList();
         }
     }
 
     public void processImage(BufferedImage image) {
-        if (image != null) {
-            boolean detected = imageService.imageContainsCat(image, 50.0f);
-            catDetected = detected;
-            CatDetection();
+        processImage(MotionGate.DEFAULT_SOURCE, image);
+    }
+
+    /**
+     * Classifies a frame from the given camera on the calling thread. Frames from different
+     * cameras may be processed concurrently; a camera's result only replaces that camera's
+     * earlier result, and a cat stays detected while any camera still sees one. The image is not
+     * kept once this returns, so callers may reuse it for the next frame.
+     */
+    public void processImage(String cameraId, BufferedImage image) {
+        Objects.requireNonNull(cameraId, "Camera id cannot be null");
+        if (image != null && hasMotion(cameraId, image)) {
+            long sequence = imageSequence.incrementAndGet();
+            ClassificationResult result;
+            try {
+                result = classify(image);
+            } catch (RuntimeException e) {
+                forgetMotionReference(cameraId);
+                throw e;
+            }
+            applyCatDetection(cameraId, sequence, result);
+        }
+    }
+
+    /**
+     * Classifies the image on the classification executor and applies the result to the alarm
+     * state once it is known. Results are applied in submission order: if a newer frame's result
+     * has already been applied, this frame's result is returned but otherwise ignored.
+     *
+     * @return whether the image contains a cat, or the current detection state if the motion
+     * gate skipped the frame; fails if the executor rejected the frame and is cancelled if the
+     * frame was dropped under backpressure
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage image) {
+        return processImageAsync(MotionGate.DEFAULT_SOURCE, image);
+    }
+
+    /**
+     * Like {@link #processImageAsync(BufferedImage)} for a frame from a particular camera. The
+     * motion gate compares the frame with earlier frames from the same camera, and if a batch
+     * scheduler is running the frame is classified as part of its next batch rather than on its own.
+     * Either way the frame gets the image service's full classification.
+     */
+    public CompletableFuture<Boolean> processImageAsync(String cameraId, BufferedImage image) {
+        Objects.requireNonNull(cameraId, "Camera id cannot be null");
+        Objects.requireNonNull(image, "Image cannot be null");
+        if (!hasMotion(cameraId, image)) {
+            return CompletableFuture.completedFuture(isCatDetected(cameraId));
+        }
+        long sequence = imageSequence.incrementAndGet();
+        MicroBatchScheduler scheduler = batchScheduler.get();
+        if (scheduler != null && scheduler.isClosed()) {
+            // Closed by its owner rather than through stopBatchScheduler
+            batchScheduler.compareAndSet(scheduler, null);
+            scheduler = null;
+        }
+        CompletableFuture<Boolean> detection;
+        if (scheduler != null) {
+            detection = scheduler.submit(cameraId, image)
+                    .thenApply(result -> applyCatDetection(cameraId, sequence,
+                            Objects.requireNonNull(result, "ImageService returned no classification")));
+        } else {
+            detection = classificationExecutor().submit(() -> applyCatDetection(cameraId, sequence, classify(image)));
+        }
+        detection.whenComplete((detected, failure) -> {
+            if (failure != null) {
+                forgetMotionReference(cameraId);
+            }
+        });
+        return detection;
+    }
+
+    // ImageService.classify has a default built on imageContainsCat, so null is a broken service
+    private ClassificationResult classify(BufferedImage image) {
+        return Objects.requireNonNull(imageService.classify(image), "ImageService returned no classification");
+    }
+
+    // Returns whether the frame counts as a cat, whether or not it was newer than the last one applied
+    boolean applyCatDetection(String cameraId, long sequence, ClassificationResult result) {
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop != null && loop.offerImageResult(cameraId, sequence, result)) {
+            return result.containsCat(catConfidenceThreshold);
+        }
+        CameraDetection applied = cameraDetections.compute(cameraId, (id, previous) -> {
+            if (previous != null && sequence < previous.sequence()) {
+                return previous;
+            }
+            Long removedFloor = removedCameraFloors.get(id);
+            if (removedFloor != null) {
+                if (sequence <= removedFloor) {
+                    return previous;
+                }
+                // Anything older than this frame is now dropped by the sequence check above
+                removedCameraFloors.remove(id, removedFloor);
+            }
+            boolean detected = result.containsCat(catConfidenceThreshold);
+            boolean wasDetected = previous != null && previous.catDetected();
+            if (wasDetected != detected) {
+                camerasSeeingCat.addAndGet(detected ? 1 : -1);
+            }
+            return new CameraDetection(sequence, result, detected);
+        });
+        if (applied == null || applied.sequence() != sequence) {
+            // A newer frame from this camera has already been applied, or the camera was removed
+            // after this frame was submitted
+            return result.containsCat(catConfidenceThreshold);
+        }
+        notifyCatDetection(cameraId, applied.catDetected());
+        return applied.catDetected();
+    }
+
+    private void notifyCatDetection(String cameraId, boolean detected) {
+        for (StatusListener listener : statusListeners) {
+            listener.catDetected(cameraId, detected);
+        }
+        // Reads the count inside the transition so a retry sees any camera that changed since
+        AlarmState committed = commit(state -> state.afterCatDetection(camerasSeeingCat.get() > 0));
+        notifyCatDetection(committed.catDetected());
+    }
+
+    /**
+     * Sets the cat confidence, from 0 to 100, that a frame needs to count as a cat. Each
+     * camera's latest classification is checked against the new threshold straight away, without
+     * classifying anything again. Image services that only answer yes or no report full or zero
+     * confidence, so for them the threshold makes no difference.
+     */
+    public void setCatConfidenceThreshold(float confidenceThreshold) {
+        if (!(confidenceThreshold > 0 && confidenceThreshold <= 100)) {
+            throw new IllegalArgumentException("Confidence threshold must be above 0 and at most 100");
+        }
+        catConfidenceThreshold = confidenceThreshold;
+        for (String cameraId : cameraDetections.keySet()) {
+            boolean[] changed = new boolean[1];
+            CameraDetection updated = cameraDetections.computeIfPresent(cameraId, (id, current) -> {
+                boolean detected = current.result().containsCat(catConfidenceThreshold);
+                if (detected == current.catDetected()) {
+                    return current;
+                }
+                camerasSeeingCat.addAndGet(detected ? 1 : -1);
+                changed[0] = true;
+                return new CameraDetection(current.sequence(), current.result(), detected);
+            });
+            if (changed[0]) {
+                notifyCatDetection(cameraId, updated.catDetected());
+            }
         }
     }
 
+    public float getCatConfidenceThreshold() {
+        return catConfidenceThreshold;
+    }
+
+    /**
+     * Returns the classification of the latest frame applied for the given camera.
+     */
+    public Optional<ClassificationResult> getLatestClassification(String cameraId) {
+        CameraDetection detection = cameraDetections.get(Objects.requireNonNull(cameraId, "Camera id cannot be null"));
+        return detection == null ? Optional.empty() : Optional.of(detection.result());
+    }
+
+    /**
+     * Returns true if any camera's latest result is a cat.
+     */
+    public boolean isCatDetected() {
+        return camerasSeeingCat.get() > 0;
+    }
+
+    /**
+     * Returns true if the given camera's latest result is a cat.
+     */
+    public boolean isCatDetected(String cameraId) {
+        CameraDetection detection = cameraDetections.get(Objects.requireNonNull(cameraId, "Camera id cannot be null"));
+        return detection != null && detection.catDetected();
+    }
+
+    /**
+     * Returns the ids of the cameras that have had a frame classified.
+     */
+    public Set<String> getCameraIds() {
+        return Set.copyOf(cameraDetections.keySet());
+    }
+
+    /**
+     * Forgets a camera, e.g. one that went offline. A cat only that camera saw no longer counts,
+     * and results still arriving for frames it submitted before now are ignored. Frames submitted
+     * afterwards add the camera again.
+     */
+    public void removeCamera(String cameraId) {
+        Objects.requireNonNull(cameraId, "Camera id cannot be null");
+        // Set before the detection is removed, so a result applied in between is removed with it
+        removedCameraFloors.merge(cameraId, imageSequence.get(), Math::max);
+        CameraDetection removed = cameraDetections.remove(cameraId);
+        MotionGate gate = motionGate;
+        if (gate != null) {
+            gate.reset(cameraId);
+        }
+        if (removed != null && removed.catDetected()) {
+            camerasSeeingCat.decrementAndGet();
+            notifyCatDetection(cameraId, false);
+        }
+    }
+
+    /**
+     * Puts a motion gate in front of the image service. Frames the gate reports as static are not
+     * classified at all, and the last cat detection result stays in effect. Pass null to
+     * classify every frame again, which is the default.
+     */
+    public void setMotionGate(MotionGate motionGate) {
+        this.motionGate = motionGate;
+    }
+
+    /**
+     * Starts classifying frames submitted through
+     * {@link #processImageAsync(String, BufferedImage)} in batches, with this service's image
+     * service, instead of one at a time on the classification executor, which is the default.
+     * See {@link MicroBatchScheduler} for the parameters.
+     *
+     * @throws IllegalStateException if a batch scheduler is already running
+     */
+    public MicroBatchScheduler startBatchScheduler(int maxBatchSize, Duration maxDelay, int maxConcurrentBatches) {
+        MicroBatchScheduler scheduler = new MicroBatchScheduler(imageService, maxBatchSize, maxDelay, maxConcurrentBatches);
+        if (!batchScheduler.compareAndSet(null, scheduler)) {
+            scheduler.close();
+            throw new IllegalStateException("Batch scheduler already running");
+        }
+        return scheduler;
+    }
+
+    /**
+     * Closes the running batch scheduler, if any, and goes back to classifying frames one at a
+     * time. Frames still waiting for a batch are cancelled.
+     */
+    public void stopBatchScheduler() {
+        MicroBatchScheduler scheduler = batchScheduler.getAndSet(null);
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    /**
+     * Switches to single-writer mode: from now on sensor changes, arming changes, image results
+     * and sensor additions and removals are queued in a ring of the given size, a power of two,
+     * and applied in batches by the loop's own thread. Getters see an event once it is applied,
+     * so a status read straight after a change may not reflect it yet; see
+     * {@link SecurityEventLoop#awaitIdle(Duration)}. A sensor passed to a change is not updated
+     * by it; the repository's copy is. Closing the loop applies what is queued and
+     * switches back to applying events on the calling thread.
+     *
+     * @throws IllegalStateException if an event loop is already running
+     */
+    public SecurityEventLoop startEventLoop(int ringSize) {
+        SecurityEventLoop loop = new SecurityEventLoop(this, ringSize);
+        if (!eventLoop.compareAndSet(null, loop)) {
+            throw new IllegalStateException("Event loop already running");
+        }
+        loop.start();
+        return loop;
+    }
+
+    void eventLoopClosed(SecurityEventLoop loop) {
+        eventLoop.compareAndSet(loop, null);
+    }
+
+    /**
+     * The gate takes a frame as the camera's reference as soon as it passes. If the frame then
+     * goes unclassified, because it was rejected, dropped or failed, the reference is forgotten
+     * so the next frame of the same scene is classified rather than skipped as static.
+     */
+    private void forgetMotionReference(String cameraId) {
+        MotionGate gate = motionGate;
+        if (gate != null) {
+            gate.reset(cameraId);
+        }
+    }
+
+    private boolean hasMotion(String cameraId, BufferedImage image) {
+        MotionGate gate = motionGate;
+        return gate == null || gate.hasMotion(cameraId, image);
+    }
+
+    // Threads only start with the first frame, so services that never classify asynchronously cost nothing
+    private ClassificationExecutor classificationExecutor() {
+        ClassificationExecutor executor = classificationExecutor.get();
+        if (executor != null) {
+            return executor;
+        }
+        ClassificationExecutor created = ClassificationExecutor.forService();
+        if (!classificationExecutor.compareAndSet(null, created)) {
+            created.close();
+        }
+        return classificationExecutor.get();
+    }
+
     public AlarmStatus getAlarmStatus() {
-        return securityRepository.getAlarmStatus();
+        return alarmState().alarmStatus();
     }
 
     public void setAlarmStatus(AlarmStatus status) {
-        securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(listener -> listener.notify(status));
+        commit(state -> state.withAlarmStatus(status));
+    }
+
+    private AlarmState alarmState() {
+        AlarmState state = alarmState.get();
+        if (state == null) {
+            AlarmState seed = new AlarmState(securityRepository.getArmingStatus(), securityRepository.getAlarmStatus(),
+                    isCatDetected(), ActiveSensors.of(securityRepository.getSensors()), 0, 0);
+            state = alarmState.compareAndExchange(null, seed);
+            if (state == null) {
+                state = seed;
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Applies the transition to the current state with a compare-and-set, applying it again to
+     * the newer state whenever another thread commits first, then publishes the result. On the
+     * event loop's thread publishing waits for the end of the batch.
+     *
+     * @return the state committed
+     */
+    private AlarmState commit(UnaryOperator<AlarmState> transition) {
+        AlarmState current = alarmState();
+        AlarmState next;
+        while (true) {
+            next = transition.apply(current);
+            if (next == current) {
+                return current;
+            }
+            AlarmState witness = alarmState.compareAndExchange(current, next);
+            if (witness == current) {
+                break;
+            }
+            current = witness;
+        }
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop == null || !loop.isConsumerThread()) {
+            publish();
+        }
+        return next;
     }
 
+    /**
+     * Writes statuses set by committed transitions to the repository and listeners. Commits on
+     * different threads can reach here in any order, so rather than each writing its own, the
+     * thread that gets here first writes the newest state and keeps going until nothing newer has
+     * been committed; threads arriving meanwhile leave their state to it. Without contention each
+     * commit is written before the call that made it returns.
+     */
+    void publish() {
+        while (publishing.compareAndSet(false, true)) {
+            AlarmState latest = alarmState.get();
+            try {
+                if (latest.alarmVersion() != publishedAlarmVersion) {
+                    publishedAlarmVersion = latest.alarmVersion();
+                    securityRepository.setAlarmStatus(latest.alarmStatus());
+                    statusListeners.forEach(listener -> listener.notify(latest.alarmStatus()));
+                }
+                if (latest.armingVersion() != publishedArmingVersion) {
+                    publishedArmingVersion = latest.armingVersion();
+                    securityRepository.setArmingStatus(latest.armingStatus());
+                }
+            } finally {
+                publishing.set(false);
+            }
+            AlarmState now = alarmState.get();
+            if (now.alarmVersion() == latest.alarmVersion() && now.armingVersion() == latest.armingVersion()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the repository's read-only sensor snapshot; it is not copied again here.
+     */
     public Set<Sensor> getSensors() {
-        return Collections.unmodifiableSet(securityRepository.getSensors());
+        return securityRepository.getSensors();
+    }
+
+    public long getSensorsVersion() {
+        return securityRepository.getSensorsVersion();
     }
 
-    private boolean allSensorsInactive() {
-        return getSensors().stream().noneMatch(Sensor::getActive);
+    /**
+     * Returns the number of currently active sensors. Constant time; suitable for dashboards.
+     */
+    public int getActiveSensorCount() {
+        return alarmState().activeSensors().total();
     }
 
-    private void notifyCatDetection() {
+    /**
+     * Returns a read-only copy of the active sensor count for each sensor type.
+     */
+    public Map<SensorType, Integer> getActiveSensorCounts() {
+        return alarmState().activeSensors().counts();
+    }
+
+    private void notifyCatDetection(boolean catDetected) {
         for (StatusListener listener : statusListeners) {
             listener.catDetected(catDetected);
         }
     }
 
     public void addSensor(Sensor sensor) {
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop != null && loop.offerSensorAdded(sensor)) {
+            return;
+        }
+        // Seeds the state first; counting is idempotent, so a sensor the seed saw counts once
+        alarmState();
         securityRepository.addSensor(sensor);
+        boolean active = Boolean.TRUE.equals(sensor.getActive());
+        commit(state -> state.withActiveSensors(
+                state.activeSensors().withActivation(sensor.getSensorId(), sensor.getSensorType(), active)));
     }
 
     public void removeSensor(Sensor sensor) {
+        SecurityEventLoop loop = eventLoop.get();
+        if (loop != null && loop.offerSensorRemoved(sensor)) {
+            return;
+        }
+        alarmState();
         securityRepository.removeSensor(sensor);
+        commit(state -> state.withActiveSensors(
+                state.activeSensors().withActivation(sensor.getSensorId(), sensor.getSensorType(), false)));
     }
 
     public ArmingStatus getArmingStatus() {
-        return securityRepository.getArmingStatus();
+        return alarmState().armingStatus();
     }
 }
@@ -0,0 +1,104 @@
+package com.udacity.catpoint.security.application;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreviewRendererTest {
+
+    private final List<BufferedImage> previews = new CopyOnWriteArrayList<>();
+    private PreviewRenderer renderer;
+
+    @AfterEach
+    void close() {
+        if (renderer != null) {
+            renderer.close();
+        }
+    }
+
+    @Test
+    void largeFrame_shouldBeScaledToPreviewSize() {
+        renderer = new PreviewRenderer(300, 225, previews::add);
+
+        BufferedImage preview = renderer.render(halves(1920, 1080));
+
+        assertEquals(300, preview.getWidth());
+        assertEquals(225, preview.getHeight());
+        assertEquals(Color.WHITE.getRGB(), preview.getRGB(20, 100));
+        assertEquals(Color.BLACK.getRGB(), preview.getRGB(280, 100));
+    }
+
+    @Test
+    void smallFrame_shouldBeScaledUp() {
+        renderer = new PreviewRenderer(300, 225, previews::add);
+
+        BufferedImage preview = renderer.render(halves(64, 48));
+
+        assertEquals(300, preview.getWidth());
+        assertEquals(Color.WHITE.getRGB(), preview.getRGB(20, 100));
+    }
+
+    @Test
+    void previews_shouldAlternateBetweenTwoReusedImages() {
+        renderer = new PreviewRenderer(300, 225, previews::add);
+        BufferedImage frame = halves(640, 480);
+
+        BufferedImage first = renderer.render(frame);
+        BufferedImage second = renderer.render(frame);
+
+        assertNotSame(first, second);
+        assertSame(first, renderer.render(frame));
+        assertSame(second, renderer.render(frame));
+    }
+
+    @Test
+    void burstOfFrames_shouldEndWithNewestPreview() throws Exception {
+        CountDownLatch newestShown = new CountDownLatch(1);
+        renderer = new PreviewRenderer(30, 20, preview -> {
+            previews.add(preview);
+            if (preview.getRGB(15, 10) == Color.RED.getRGB()) {
+                newestShown.countDown();
+            }
+        });
+
+        for (int i = 0; i < 50; i++) {
+            renderer.submit(filled(640, 480, Color.BLUE));
+        }
+        renderer.submit(filled(640, 480, Color.RED));
+
+        assertTrue(newestShown.await(5, TimeUnit.SECONDS));
+        // Let anything still queued on the EDT run
+        EventQueue.invokeAndWait(() -> { });
+        assertTrue(previews.size() < 51, "rendered every frame of the burst");
+        assertEquals(Color.RED.getRGB(), previews.get(previews.size() - 1).getRGB(15, 10));
+    }
+
+    // White on the left, black on the right
+    private static BufferedImage halves(int width, int height) {
+        BufferedImage image = filled(width, height, Color.BLACK);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static BufferedImage filled(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,99 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Write latency and throughput of {@link JournalSecurityRepositoryImpl} under each
+ * {@link DurabilityPolicy}, with one and with several concurrent writers. Not a unit test; run
+ * {@link #main(String[])} by hand, e.g. from the IDE. Pass a directory to benchmark a specific
+ * disk; the default is the system temp directory.
+ */
+public final class JournalDurabilityBenchmark {
+
+    private static final int WRITES_PER_THREAD = 2_000;
+    private static final int[] THREAD_COUNTS = {1, 8};
+    private static final List<DurabilityPolicy> POLICIES = List.of(
+            DurabilityPolicy.syncEveryWrite(),
+            DurabilityPolicy.groupCommit(Duration.ofMillis(5)),
+            DurabilityPolicy.osManaged());
+
+    private JournalDurabilityBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path parent = args.length > 0 ? Path.of(args[0]) : Path.of(System.getProperty("java.io.tmpdir"));
+        System.out.printf("%-18s %8s %12s %10s %10s %10s%n", "policy", "threads", "writes/s", "p50 us", "p99 us", "max us");
+        for (DurabilityPolicy policy : POLICIES) {
+            for (int threads : THREAD_COUNTS) {
+                Path directory = Files.createTempDirectory(parent, "journal-benchmark");
+                try {
+                    run(directory, policy, threads);
+                } finally {
+                    deleteRecursively(directory);
+                }
+            }
+        }
+    }
+
+    private static void run(Path directory, DurabilityPolicy policy, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long[][] latencies = new long[threads][WRITES_PER_THREAD];
+        long elapsed;
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory,
+                JournalSecurityRepositoryImpl.DEFAULT_COMPACTION_THRESHOLD, policy)) {
+            List<Sensor> sensors = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Sensor sensor = new Sensor("Sensor " + t, SensorType.MOTION);
+                repository.addSensor(sensor);
+                sensors.add(sensor);
+            }
+
+            long start = System.nanoTime();
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Sensor sensor = sensors.get(t);
+                long[] timings = latencies[t];
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                        long writeStart = System.nanoTime();
+                        sensor.setActive(i % 2 == 0);
+                        repository.updateSensor(sensor);
+                        timings[i] = System.nanoTime() - writeStart;
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            elapsed = System.nanoTime() - start;
+        } finally {
+            executor.shutdown();
+        }
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%-18s %8d %12.0f %10.1f %10.1f %10.1f%n", policy.mode(), threads,
+                all.length / (elapsed / 1e9), percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e3);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * sorted.length))] / 1e3;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalSecurityRepositoryImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void reopen_shouldReplayJournalIntoSameState() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(window);
+            door.setActive(true);
+            repository.updateSensor(door);
+            repository.removeSensor(window);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        }
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            Set<Sensor> sensors = reopened.getSensors();
+            assertEquals(Set.of(door), sensors);
+            assertTrue(sensors.iterator().next().getActive());
+            assertEquals(ArmingStatus.ARMED_AWAY, reopened.getArmingStatus());
+            assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void compaction_shouldTruncateJournalAndKeepState() throws IOException {
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory, 3)) {
+            for (int i = 0; i < 7; i++) {
+                repository.addSensor(new Sensor("Sensor" + i, SensorType.MOTION));
+            }
+        }
+
+        assertTrue(Files.exists(directory.resolve(JournalSecurityRepositoryImpl.SNAPSHOT_FILE)));
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory, 3)) {
+            assertEquals(7, reopened.getSensors().size());
+        }
+    }
+
+    @Test
+    void reopen_shouldDiscardTornTail() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+        }
+        Files.write(directory.resolve(JournalSecurityRepositoryImpl.JOURNAL_FILE),
+                new byte[]{0, 0, 0, 40, 1, 2}, StandardOpenOption.APPEND);
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(Set.of(door), reopened.getSensors());
+            reopened.setAlarmStatus(AlarmStatus.ALARM);
+        }
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void compact_shouldFoldRotatedJournalIntoSnapshot() throws IOException {
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            for (int i = 0; i < 3; i++) {
+                repository.addSensor(new Sensor("Sensor" + i, SensorType.MOTION));
+            }
+
+            repository.compact();
+
+            assertEquals(0, Files.size(directory.resolve(JournalSecurityRepositoryImpl.JOURNAL_FILE)));
+            assertFalse(Files.exists(directory.resolve(JournalSecurityRepositoryImpl.COMPACTING_FILE)));
+            repository.addSensor(new Sensor("Sensor3", SensorType.MOTION));
+        }
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(4, reopened.getSensors().size());
+        }
+    }
+
+    @Test
+    void reopen_shouldFinishInterruptedCompaction() throws IOException {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        Sensor window = new Sensor("Window", SensorType.WINDOW);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        }
+        // As if the process stopped after rotating the journal but before the snapshot was written
+        Files.move(directory.resolve(JournalSecurityRepositoryImpl.JOURNAL_FILE),
+                directory.resolve(JournalSecurityRepositoryImpl.COMPACTING_FILE));
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(window);
+        }
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(Set.of(door, window), reopened.getSensors());
+            assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        }
+        assertFalse(Files.exists(directory.resolve(JournalSecurityRepositoryImpl.COMPACTING_FILE)));
+        assertTrue(Files.exists(directory.resolve(JournalSecurityRepositoryImpl.SNAPSHOT_FILE)));
+    }
+
+    @Test
+    void reopen_shouldRejectRecordWithUnknownStatus() throws IOException {
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+        // An alarm status record whose checksum is valid but whose ordinal is out of range
+        byte[] payload = {3, 9};
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES * 2 + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        Files.write(directory.resolve(JournalSecurityRepositoryImpl.JOURNAL_FILE), frame.array(), StandardOpenOption.APPEND);
+
+        UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> new JournalSecurityRepositoryImpl(directory));
+        assertTrue(e.getCause().getMessage().startsWith("Corrupt security journal"));
+    }
+
+    @Test
+    void sensorsChangedAfterWriting_shouldNotChangeTheStore() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            Set<Sensor> sensors = repository.getSensors();
+            long version = repository.getSensorsVersion();
+
+            door.setName("Renamed");
+            door.setActive(true);
+
+            assertEquals(version, repository.getSensorsVersion());
+            assertEquals("Door", sensors.iterator().next().getName());
+            assertFalse(repository.findSensor(door.getSensorId()).orElseThrow().getActive());
+            assertTrue(repository.activeSensors().isEmpty());
+        }
+    }
+
+    @Test
+    void updateSensor_shouldKeepIndexesInStepWhenRenamedInPlace() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory)) {
+            repository.addSensor(door);
+            repository.addSensor(new Sensor("Window", SensorType.WINDOW));
+
+            door.setName("Zebra Door");
+            door.setActive(true);
+            repository.updateSensor(door);
+
+            assertEquals(2, repository.getSensors().size());
+            assertEquals("Zebra Door", new ArrayList<>(repository.getSensors()).get(1).getName());
+            assertTrue(repository.findSensor(door.getSensorId()).orElseThrow().getActive());
+            assertEquals(Set.of(door), repository.sensorsByType(SensorType.DOOR));
+            assertEquals(Set.of(door), repository.activeSensors());
+
+            repository.removeSensor(door);
+            assertTrue(repository.findSensor(door.getSensorId()).isEmpty());
+            assertTrue(repository.activeSensors().isEmpty());
+        }
+    }
+
+    @Test
+    void syncEveryWrite_shouldKeepEveryConcurrentWrite() throws Exception {
+        int threads = 8;
+        int writesPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory,
+                JournalSecurityRepositoryImpl.DEFAULT_COMPACTION_THRESHOLD, DurabilityPolicy.syncEveryWrite())) {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < writesPerThread; i++) {
+                        repository.addSensor(new Sensor("Sensor " + thread + "-" + i, SensorType.MOTION));
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(threads * writesPerThread, reopened.getSensors().size());
+        }
+    }
+
+    @Test
+    void groupCommit_shouldPersistStateOnClose() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        try (JournalSecurityRepositoryImpl repository = new JournalSecurityRepositoryImpl(directory,
+                JournalSecurityRepositoryImpl.DEFAULT_COMPACTION_THRESHOLD, DurabilityPolicy.groupCommit(Duration.ofMillis(5)))) {
+            repository.addSensor(door);
+            repository.setAlarmStatus(AlarmStatus.ALARM);
+        }
+
+        try (JournalSecurityRepositoryImpl reopened = new JournalSecurityRepositoryImpl(directory)) {
+            assertEquals(Set.of(door), reopened.getSensors());
+            assertEquals(AlarmStatus.ALARM, reopened.getAlarmStatus());
+        }
+    }
+
+    @Test
+    void durabilityPolicy_shouldRequireIntervalOnlyForGroupCommit() {
+        assertThrows(NullPointerException.class, () -> DurabilityPolicy.groupCommit(null));
+        assertThrows(IllegalArgumentException.class, () -> DurabilityPolicy.groupCommit(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                () -> new DurabilityPolicy(DurabilityPolicy.Mode.OS_MANAGED, Duration.ofMillis(5)));
+    }
+}
@@ -0,0 +1,109 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Surefire points java.util.prefs.userRoot into the build directory, so these never touch real preferences
+class PretendDatabaseSecurityRepositoryImplTest {
+
+    private static final Preferences prefs = Preferences.userNodeForPackage(PretendDatabaseSecurityRepositoryImpl.class);
+
+    @BeforeEach
+    @AfterEach
+    void clearPreferences() throws BackingStoreException {
+        prefs.clear();
+    }
+
+    @Test
+    void writeBehind_shouldCoalesceWritesUntilFlush() {
+        try (PretendDatabaseSecurityRepositoryImpl repository =
+                     new PretendDatabaseSecurityRepositoryImpl(Duration.ofMinutes(1), 100)) {
+            for (int i = 0; i < 5; i++) {
+                repository.addSensor(new Sensor("Sensor" + i, SensorType.MOTION));
+            }
+            repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+            assertEquals(0, sensorWrites());
+
+            repository.flush();
+            repository.flush();
+
+            assertEquals(1, sensorWrites());
+            assertStored(5, AlarmStatus.PENDING_ALARM);
+        }
+    }
+
+    @Test
+    void writeBehind_shouldFlushOnceThresholdIsReached() {
+        try (PretendDatabaseSecurityRepositoryImpl repository =
+                     new PretendDatabaseSecurityRepositoryImpl(Duration.ofMinutes(1), 3)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+            repository.addSensor(new Sensor("Window", SensorType.WINDOW));
+            assertEquals(0, sensorWrites());
+
+            repository.addSensor(new Sensor("Motion", SensorType.MOTION));
+
+            awaitTrue(() -> sensorWrites() == 1);
+            assertStored(3, AlarmStatus.NO_ALARM);
+        }
+    }
+
+    @Test
+    void writeBehind_shouldFlushOnInterval() {
+        try (PretendDatabaseSecurityRepositoryImpl repository =
+                     new PretendDatabaseSecurityRepositoryImpl(Duration.ofMillis(20), 100)) {
+            repository.addSensor(new Sensor("Door", SensorType.DOOR));
+
+            awaitTrue(() -> sensorWrites() == 1);
+            assertStored(1, AlarmStatus.NO_ALARM);
+        }
+    }
+
+    @Test
+    void close_shouldWritePendingChangesAndWriteThroughAfterwards() {
+        PretendDatabaseSecurityRepositoryImpl repository =
+                new PretendDatabaseSecurityRepositoryImpl(Duration.ofMinutes(1), 100);
+        repository.addSensor(new Sensor("Door", SensorType.DOOR));
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        repository.close();
+
+        assertEquals(1, sensorWrites());
+        assertStored(1, AlarmStatus.ALARM);
+        repository.addSensor(new Sensor("Window", SensorType.WINDOW));
+        assertEquals(2, sensorWrites());
+        assertStored(2, AlarmStatus.ALARM);
+    }
+
+    // Every sensor write stores a new generation of chunks
+    private static long sensorWrites() {
+        return prefs.getLong("SENSOR_DATA.generation", 0);
+    }
+
+    private static void assertStored(int sensors, AlarmStatus alarmStatus) {
+        try (PretendDatabaseSecurityRepositoryImpl stored = new PretendDatabaseSecurityRepositoryImpl()) {
+            assertEquals(sensors, stored.getSensors().size());
+            assertEquals(alarmStatus, stored.getAlarmStatus());
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for a flush");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
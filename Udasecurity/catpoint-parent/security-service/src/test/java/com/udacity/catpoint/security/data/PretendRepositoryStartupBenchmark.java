@@ -0,0 +1,59 @@
+package com.udacity.catpoint.security.data;
+
+import com.udacity.catpoint.image.FakeImageService;
+import com.udacity.catpoint.security.service.SecurityService;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Time from constructing {@link PretendDatabaseSecurityRepositoryImpl} over 100k stored sensors
+ * until the first status read and the first sensor event can be served. The sensor event goes
+ * through {@link SecurityService#changeSensorActivationStatus(UUID, Boolean)}, so it includes the
+ * lookup, the alarm transition and writing the sensor back. Each round flips the sensor, so every
+ * event is a real change. Not a unit test; run
+ * {@link #main(String[])} by hand, e.g. from the IDE. Preferences are redirected to a temporary
+ * directory (honoured by the file-based preferences used on Linux), so real app data is left
+ * alone; the preferences cache is warm, so only the repository's own load cost is measured.
+ */
+public final class PretendRepositoryStartupBenchmark {
+
+    private static final int SENSORS = 100_000;
+    private static final int ROUNDS = 10;
+
+    private PretendRepositoryStartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.util.prefs.userRoot", Files.createTempDirectory("prefs-benchmark").toString());
+
+        List<Sensor> sensors = new ArrayList<>(SENSORS);
+        for (int i = 0; i < SENSORS; i++) {
+            sensors.add(new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]));
+        }
+        UUID eventSensorId = sensors.get(SENSORS / 2).getSensorId();
+        PretendDatabaseSecurityRepositoryImpl seed = new PretendDatabaseSecurityRepositoryImpl();
+        seed.updateSensors(sensors);
+        seed.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        seed.close();
+
+        System.out.printf("%6s %14s %14s %18s%n", "round", "construct ms", "status ms", "sensor event ms");
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            PretendDatabaseSecurityRepositoryImpl repository = new PretendDatabaseSecurityRepositoryImpl();
+            SecurityService securityService = new SecurityService(repository, new FakeImageService());
+            long constructed = System.nanoTime();
+            securityService.getArmingStatus();
+            long statusRead = System.nanoTime();
+            if (!securityService.changeSensorActivationStatus(eventSensorId, round % 2 == 1)) {
+                throw new IllegalStateException("Sensor " + eventSensorId + " was not loaded");
+            }
+            long sensorEvent = System.nanoTime();
+            repository.close();
+            System.out.printf("%6d %14.3f %14.3f %18.3f%n", round,
+                    (constructed - start) / 1e6, (statusRead - start) / 1e6, (sensorEvent - start) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares {@link SensorCodec} with the Gson JSON previously stored in preferences. Not a unit
+ * test; run {@link #main(String[])} by hand, e.g. from the IDE.
+ */
+public final class SensorCodecBenchmark {
+
+    private static final int[] SENSOR_COUNTS = {10, 10_000, 1_000_000};
+    private static final Gson gson = new Gson();
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {
+    }.getType();
+
+    private SensorCodecBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %8s %12s %12s %12s%n", "sensors", "format", "bytes", "encode ms", "decode ms");
+        for (int count : SENSOR_COUNTS) {
+            List<Sensor> sensors = sensors(count);
+            int rounds = Math.max(3, 2_000_000 / count);
+
+            byte[] binary = SensorCodec.encodeSensors(sensors);
+            double binaryEncode = time(rounds, () -> SensorCodec.encodeSensors(sensors));
+            double binaryDecode = time(rounds, () -> SensorCodec.decodeSensors(binary));
+            System.out.printf("%10d %8s %12d %12.3f %12.3f%n", count, "binary", binary.length, binaryEncode, binaryDecode);
+
+            String json = gson.toJson(sensors);
+            double jsonEncode = time(rounds, () -> gson.toJson(sensors));
+            double jsonDecode = time(rounds, () -> gson.fromJson(json, SENSOR_SET));
+            System.out.printf("%10d %8s %12d %12.3f %12.3f%n", count, "gson", json.getBytes(StandardCharsets.UTF_8).length,
+                    jsonEncode, jsonDecode);
+        }
+    }
+
+    private static List<Sensor> sensors(int count) {
+        List<Sensor> sensors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("Sensor " + i, SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 2 == 0);
+            sensors.add(sensor);
+        }
+        return sensors;
+    }
+
+    // Average milliseconds per run, after an untimed warm-up pass of the same size
+    private static double time(int rounds, Runnable task) {
+        for (int i = 0; i < rounds; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / rounds;
+    }
+}
@@ -0,0 +1,53 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorCodecTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 7, 8, 9, 300})
+    void decodeSensors_shouldRoundTripEveryField(int count) {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sensor sensor = new Sensor("Sensor " + i + " é", SensorType.values()[i % SensorType.values().length]);
+            sensor.setActive(i % 3 == 0);
+            sensors.add(sensor);
+        }
+
+        List<Sensor> decoded = SensorCodec.decodeSensors(SensorCodec.encodeSensors(sensors));
+
+        assertEquals(sensors, decoded);
+        for (int i = 0; i < count; i++) {
+            assertEquals(sensors.get(i).getName(), decoded.get(i).getName());
+            assertEquals(sensors.get(i).getSensorType(), decoded.get(i).getSensorType());
+            assertEquals(sensors.get(i).getActive(), decoded.get(i).getActive());
+        }
+    }
+
+    @Test
+    void decodeStatus_shouldRoundTripBothEnums() {
+        byte[] status = SensorCodec.encodeStatus(AlarmStatus.PENDING_ALARM, ArmingStatus.ARMED_AWAY);
+
+        assertEquals(AlarmStatus.PENDING_ALARM, SensorCodec.decodeAlarmStatus(status));
+        assertEquals(ArmingStatus.ARMED_AWAY, SensorCodec.decodeArmingStatus(status));
+    }
+
+    @Test
+    void decodeSensors_shouldRejectTruncatedOrUnknownData() {
+        byte[] encoded = SensorCodec.encodeSensors(List.of(new Sensor("Door", SensorType.DOOR)));
+        byte[] unknownVersion = encoded.clone();
+        unknownVersion[0] = 99;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> SensorCodec.decodeSensors(Arrays.copyOf(encoded, encoded.length - 2)));
+        assertThrows(IllegalArgumentException.class, () -> SensorCodec.decodeSensors(unknownVersion));
+    }
+}
@@ -0,0 +1,102 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SensorStoreTest {
+
+    @Test
+    void randomWrites_shouldKeepEveryIndexInStepWithTheSensors() {
+        Random random = new Random(42);
+        SensorStore store = new SensorStore(List.of());
+        Map<UUID, Sensor> expected = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 4 || ids.isEmpty()) {
+                Sensor sensor = new Sensor("Sensor " + random.nextInt(500), randomType(random));
+                sensor.setActive(random.nextBoolean());
+                ids.add(sensor.getSensorId());
+                expected.put(sensor.getSensorId(), sensor);
+                store.add(sensor);
+            } else if (operation < 9) {
+                UUID id = ids.get(random.nextInt(ids.size()));
+                Sensor sensor = new Sensor(id, "Sensor " + random.nextInt(500), randomType(random), random.nextBoolean());
+                expected.put(id, sensor);
+                store.update(sensor);
+            } else {
+                UUID id = ids.remove(random.nextInt(ids.size()));
+                store.remove(expected.remove(id));
+            }
+            assertMatches(expected, store);
+        }
+    }
+
+    @Test
+    void earlierSnapshot_shouldNotSeeLaterWrites() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        SensorStore store = new SensorStore(List.of(door));
+        Set<Sensor> before = store.sensors();
+        Set<Sensor> activeBefore = store.active();
+
+        store.update(new Sensor(door.getSensorId(), "Door", SensorType.DOOR, true));
+        store.add(new Sensor("Window", SensorType.WINDOW));
+
+        assertEquals(1, before.size());
+        assertTrue(activeBefore.isEmpty());
+        assertFalse(before.iterator().next().getActive());
+        assertEquals(2, store.sensors().size());
+        assertEquals(Set.of(door), store.active());
+        assertThrows(UnsupportedOperationException.class, () -> store.sensors().add(door));
+    }
+
+    @Test
+    void sensorRenamedInPlace_shouldStillBeReplaced() {
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        SensorStore store = new SensorStore(List.of(door, new Sensor("Window", SensorType.WINDOW)));
+
+        store.find(door.getSensorId()).orElseThrow().setName("Zebra door");
+        store.update(new Sensor(door.getSensorId(), "Back door", SensorType.DOOR, false));
+
+        assertEquals(List.of("Back door", "Window"), store.sensors().stream().map(Sensor::getName).toList());
+    }
+
+    private static void assertMatches(Map<UUID, Sensor> expected, SensorStore store) {
+        List<String> expectedOrder = new TreeSet<>(expected.values()).stream().map(SensorStoreTest::describe).toList();
+        assertEquals(expectedOrder, store.sensors().stream().map(SensorStoreTest::describe).toList());
+        assertEquals(expected.size(), store.sensors().size());
+        for (SensorType type : SensorType.values()) {
+            assertEquals(ids(expected.values().stream().filter(sensor -> sensor.getSensorType() == type).toList()),
+                    ids(store.byType(type)));
+        }
+        assertEquals(ids(expected.values().stream().filter(Sensor::getActive).toList()), ids(store.active()));
+        for (Sensor sensor : expected.values()) {
+            assertEquals(describe(sensor), describe(store.find(sensor.getSensorId()).orElseThrow()));
+            assertTrue(store.sensors().contains(sensor));
+        }
+    }
+
+    private static Set<UUID> ids(Collection<Sensor> sensors) {
+        return sensors.stream().map(Sensor::getSensorId).collect(Collectors.toSet());
+    }
+
+    private static String describe(Sensor sensor) {
+        return sensor.getSensorId() + "/" + sensor.getName() + "/" + sensor.getSensorType() + "/" + sensor.getActive();
+    }
+
+    private static SensorType randomType(Random random) {
+        return SensorType.values()[random.nextInt(SensorType.values().length)];
+    }
+}
@@ -0,0 +1,120 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassificationExecutorTest {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void reject_shouldFailFrameWhenQueueIsFull() throws InterruptedException {
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 1, ClassificationExecutor.BackpressurePolicy.REJECT)) {
+            CompletableFuture<String> running = occupyWorker(executor);
+            CompletableFuture<String> queued = executor.submit(() -> "queued");
+
+            CompletableFuture<String> rejected = executor.submit(() -> "rejected");
+
+            CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+            assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+            assertEquals(1, executor.getRejectedFrames());
+            release.countDown();
+            assertEquals("running", running.join());
+            assertEquals("queued", queued.join());
+        }
+    }
+
+    @Test
+    void dropOldest_shouldCancelOldestQueuedFrame() throws InterruptedException {
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 1, ClassificationExecutor.BackpressurePolicy.DROP_OLDEST)) {
+            CompletableFuture<String> running = occupyWorker(executor);
+            CompletableFuture<String> oldest = executor.submit(() -> "oldest");
+
+            CompletableFuture<String> newest = executor.submit(() -> "newest");
+
+            assertTrue(oldest.isCancelled());
+            assertEquals(1, executor.getDroppedFrames());
+            release.countDown();
+            assertEquals("running", running.join());
+            assertEquals("newest", newest.join());
+        }
+    }
+
+    @Test
+    void block_shouldWaitForQueueSpace() throws InterruptedException {
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 1, ClassificationExecutor.BackpressurePolicy.BLOCK)) {
+            CompletableFuture<String> running = occupyWorker(executor);
+            CompletableFuture<String> queued = executor.submit(() -> "queued");
+            Thread releaser = new Thread(() -> {
+                sleepQuietly();
+                release.countDown();
+            });
+            releaser.start();
+
+            CompletableFuture<String> blocked = executor.submit(() -> "blocked");
+
+            assertEquals("running", running.join());
+            assertEquals("queued", queued.join());
+            assertEquals("blocked", blocked.join());
+            assertEquals(0, executor.getRejectedFrames());
+            releaser.join();
+        }
+    }
+
+    @Test
+    void close_shouldCancelQueuedFrames() throws InterruptedException {
+        CompletableFuture<String> queued;
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 1, ClassificationExecutor.BackpressurePolicy.REJECT)) {
+            occupyWorker(executor);
+            queued = executor.submit(() -> "queued");
+            executor.close();
+            release.countDown();
+
+            assertTrue(executor.submit(() -> "late").isCompletedExceptionally());
+        }
+        assertTrue(queued.isCancelled());
+    }
+
+    @Test
+    void errorThrownByClassifier_shouldFailTheFrame() {
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 1, ClassificationExecutor.BackpressurePolicy.REJECT)) {
+            CompletableFuture<String> linkage = executor.submit(() -> {
+                throw new NoClassDefFoundError("model");
+            });
+            CompletableFuture<String> internal = executor.submit(() -> {
+                throw new InternalError("classifier");
+            });
+
+            assertInstanceOf(NoClassDefFoundError.class, assertThrows(CompletionException.class, linkage::join).getCause());
+            assertInstanceOf(InternalError.class, assertThrows(CompletionException.class, internal::join).getCause());
+            // The pool replaces the worker the virtual machine error ended
+            assertEquals("next", executor.submit(() -> "next").join());
+        }
+    }
+
+    // Submits a frame that holds the only worker until release is counted down
+    private CompletableFuture<String> occupyWorker(ClassificationExecutor executor) throws InterruptedException {
+        CompletableFuture<String> running = executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return "running";
+        });
+        started.await();
+        return running;
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.udacity.catpoint.security.service;
+
+import java.awt.image.BufferedImage;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sends a burst of decoded 1280x720 frames, far faster than a slow consumer can take them,
+ * through each {@link FrameBuffer} policy and through an unbounded queue, and reports the most
+ * frames held at once and the heap they retain. Not a unit test; run {@link #main(String[])} by
+ * hand, e.g. from the IDE, with a heap large enough for the unbounded case (about 2 GB).
+ */
+public final class FrameBufferBenchmark {
+
+    private static final int BURST_FRAMES = 300;
+    private static final int CAPACITY = 4;
+    private static final long CONSUMER_DELAY_MILLIS = 5;
+    private static final int FRAME_BYTES = 1280 * 720 * 3;
+
+    private FrameBufferBenchmark() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Queue<BufferedImage> unbounded = new ConcurrentLinkedQueue<>();
+        run("Unbounded queue", unbounded::offer, unbounded::poll, unbounded::size);
+        for (FrameBuffer.OverflowPolicy policy : FrameBuffer.OverflowPolicy.values()) {
+            FrameBuffer<BufferedImage> buffer = new FrameBuffer<>(policy, CAPACITY);
+            run(policy.name(), buffer::offer, buffer::poll, buffer::depth);
+        }
+    }
+
+    private static void run(String name, Consumer<BufferedImage> offer, Supplier<BufferedImage> poll,
+                            IntSupplier depth) throws InterruptedException {
+        AtomicInteger peakDepth = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peakDepth.accumulateAndGet(depth.getAsInt(), Math::max);
+                Thread.onSpinWait();
+            }
+        });
+        AtomicLong consumed = new AtomicLong();
+        Thread consumer = new Thread(() -> {
+            while (running.get()) {
+                if (poll.get() != null) {
+                    consumed.incrementAndGet();
+                    sleep(CONSUMER_DELAY_MILLIS);
+                }
+            }
+        });
+        sampler.start();
+        consumer.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < BURST_FRAMES; i++) {
+            // A fresh frame each time, as a decoder would produce
+            offer.accept(new BufferedImage(1280, 720, BufferedImage.TYPE_3BYTE_BGR));
+        }
+        long offerNanos = System.nanoTime() - start;
+        peakDepth.accumulateAndGet(depth.getAsInt(), Math::max);
+        running.set(false);
+        consumer.join();
+        sampler.join();
+        while (poll.get() != null) {
+            // Release whatever is still held before the next run
+        }
+
+        System.out.printf("%-16s burst of %d frames offered in %.0f ms, %d consumed, at most %d held (%.0f MB)%n",
+                name, BURST_FRAMES, offerNanos / 1e6, consumed.get(), peakDepth.get(),
+                peakDepth.get() * (double) FRAME_BYTES / 1e6);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
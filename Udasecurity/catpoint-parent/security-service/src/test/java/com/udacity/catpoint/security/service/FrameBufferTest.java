@@ -0,0 +1,140 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameBufferTest {
+
+    private final List<String> dropped = new CopyOnWriteArrayList<>();
+
+    @Test
+    void latestWins_shouldKeepOnlyNewestFrame() {
+        FrameBuffer<String> buffer = new FrameBuffer<>(FrameBuffer.OverflowPolicy.LATEST_WINS, 8, dropped::add);
+
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(buffer.offer("frame-" + i));
+        }
+
+        assertEquals(1, buffer.depth());
+        assertEquals("frame-3", buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(List.of("frame-1", "frame-2"), dropped);
+        assertEquals(1, buffer.getCapacity());
+    }
+
+    @Test
+    void fifo_shouldDropNewFramesWhileFull() {
+        FrameBuffer<String> buffer = new FrameBuffer<>(FrameBuffer.OverflowPolicy.FIFO, 2, dropped::add);
+
+        assertTrue(buffer.offer("frame-1"));
+        assertTrue(buffer.offer("frame-2"));
+        assertFalse(buffer.offer("frame-3"));
+
+        assertEquals(List.of("frame-3"), dropped);
+        assertEquals("frame-1", buffer.poll());
+        assertTrue(buffer.offer("frame-4"));
+        assertEquals("frame-2", buffer.poll());
+        assertEquals("frame-4", buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void dropOldest_shouldMakeRoomForNewFrames() {
+        FrameBuffer<String> buffer = new FrameBuffer<>(FrameBuffer.OverflowPolicy.DROP_OLDEST, 3, dropped::add);
+
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(buffer.offer("frame-" + i));
+        }
+
+        assertEquals(List.of("frame-1", "frame-2"), dropped);
+        assertEquals(3, buffer.depth());
+        assertEquals(3, buffer.getPeakDepth());
+        assertEquals("frame-3", buffer.poll());
+        assertEquals("frame-4", buffer.poll());
+        assertEquals("frame-5", buffer.poll());
+        assertEquals(5, buffer.getOfferedFrames());
+        assertEquals(2, buffer.getDroppedFrames());
+    }
+
+    @Test
+    void clear_shouldDropWaitingFrames() {
+        FrameBuffer<String> buffer = new FrameBuffer<>(FrameBuffer.OverflowPolicy.FIFO, 4, dropped::add);
+        buffer.offer("frame-1");
+        buffer.offer("frame-2");
+
+        buffer.clear();
+
+        assertTrue(buffer.isEmpty());
+        assertEquals(List.of("frame-1", "frame-2"), dropped);
+    }
+
+    @Test
+    void concurrentProducersAndConsumers_shouldAccountForEveryFrame() throws Exception {
+        for (FrameBuffer.OverflowPolicy policy : FrameBuffer.OverflowPolicy.values()) {
+            for (int capacity : new int[]{1, 8}) {
+                accountForEveryFrame(policy, capacity);
+            }
+        }
+    }
+
+    private static void accountForEveryFrame(FrameBuffer.OverflowPolicy policy, int capacity) throws Exception {
+        LongAdder droppedCount = new LongAdder();
+        FrameBuffer<Integer> buffer = new FrameBuffer<>(policy, capacity, frame -> droppedCount.increment());
+        int producers = 4;
+        int framesPerProducer = 50_000;
+        LongAdder polled = new LongAdder();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(producers + 2);
+        try {
+            List<Future<?>> producerTasks = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                producerTasks.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < framesPerProducer; i++) {
+                        buffer.offer(i);
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> consumerTasks = new ArrayList<>();
+            for (int c = 0; c < 2; c++) {
+                consumerTasks.add(pool.submit(() -> {
+                    start.await();
+                    while (producing.get() || !buffer.isEmpty()) {
+                        if (buffer.poll() != null) {
+                            polled.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : producerTasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+            producing.set(false);
+            for (Future<?> task : consumerTasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals((long) producers * framesPerProducer, polled.sum() + droppedCount.sum(), policy + " x" + capacity);
+        assertEquals(droppedCount.sum(), buffer.getDroppedFrames(), policy + " x" + capacity);
+        assertTrue(buffer.getPeakDepth() <= buffer.getCapacity(), policy + " x" + capacity);
+    }
+}
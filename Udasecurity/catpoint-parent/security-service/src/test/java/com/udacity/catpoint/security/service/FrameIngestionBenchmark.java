@@ -0,0 +1,136 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sustained frame rate of a {@link FrameIngestor}: several cameras streaming
+ * 640x480 MJPEG from files at once, then files dropped into a spool directory. Classification
+ * is instant so the figures are for reading and decoding. Not a unit test; run
+ * {@link #main(String[])} by hand, e.g. from the IDE.
+ */
+public final class FrameIngestionBenchmark {
+
+    private static final int CAMERAS = 4;
+    private static final int FRAMES_PER_CAMERA = 500;
+    private static final int SPOOL_FRAMES = 500;
+
+    private FrameIngestionBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        ImageService imageService = (BufferedImage image, float confidenceThreshold) -> false;
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), imageService);
+        int workers = Runtime.getRuntime().availableProcessors();
+        byte[] frame = frame();
+        Path directory = Files.createTempDirectory("ingestion-benchmark");
+        try {
+            streams(securityService, workers, frame, directory);
+            spool(securityService, workers, frame, directory.resolve("spool"));
+        } finally {
+            try (var files = Files.walk(directory)) {
+                files.sorted((a, b) -> b.getNameCount() - a.getNameCount()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void streams(SecurityService securityService, int workers, byte[] frame, Path directory)
+            throws Exception {
+        List<Path> streams = new ArrayList<>();
+        for (int camera = 0; camera < CAMERAS; camera++) {
+            Path stream = directory.resolve("camera-" + camera + ".mjpeg");
+            try (OutputStream out = Files.newOutputStream(stream)) {
+                for (int i = 0; i < FRAMES_PER_CAMERA; i++) {
+                    out.write(("--frame\r\nContent-Type: image/jpeg\r\n\r\n").getBytes());
+                    out.write(frame);
+                    out.write("\r\n".getBytes());
+                }
+            }
+            streams.add(stream);
+        }
+
+        // Large enough that no frame is dropped, so every frame is decoded
+        try (FrameIngestor ingestor = new FrameIngestor(securityService, workers, FRAMES_PER_CAMERA)) {
+            long start = System.nanoTime();
+            List<Thread> readers = new ArrayList<>();
+            for (int camera = 0; camera < CAMERAS; camera++) {
+                Path stream = streams.get(camera);
+                String cameraId = "camera-" + camera;
+                Thread reader = new Thread(() -> {
+                    try (FileChannel channel = FileChannel.open(stream, StandardOpenOption.READ)) {
+                        ingestor.readStream(channel, cameraId);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                reader.start();
+                readers.add(reader);
+            }
+            for (Thread reader : readers) {
+                reader.join();
+            }
+            ingestor.awaitIdle(Duration.ofMinutes(5));
+            report("MJPEG streams", ingestor, System.nanoTime() - start);
+        }
+    }
+
+    private static void spool(SecurityService securityService, int workers, byte[] frame, Path directory)
+            throws Exception {
+        Files.createDirectories(directory);
+        try (FrameIngestor ingestor = new FrameIngestor(securityService, workers, SPOOL_FRAMES)) {
+            ingestor.watchDirectory(directory, "spool");
+            long start = System.nanoTime();
+            for (int i = 0; i < SPOOL_FRAMES; i++) {
+                Path partial = directory.resolve(String.format("%06d.jpg.part", i));
+                Files.write(partial, frame);
+                Files.move(partial, directory.resolve(String.format("%06d.jpg", i)), StandardCopyOption.ATOMIC_MOVE);
+            }
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+            while (ingestor.getFramesProcessed() + ingestor.getFramesFailed() < SPOOL_FRAMES
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            report("Spool directory", ingestor, System.nanoTime() - start);
+        }
+    }
+
+    private static void report(String source, FrameIngestor ingestor, long nanos) {
+        double seconds = nanos / 1e9;
+        System.out.printf("%s: %d frames in %.2f s, %.0f fps, %.1f MB/s, %d dropped, %d failed%n",
+                source, ingestor.getFramesProcessed(), seconds, ingestor.getFramesProcessed() / seconds,
+                ingestor.getBytesRead() / seconds / 1e6, ingestor.getFramesDropped(), ingestor.getFramesFailed());
+    }
+
+    // A camera-like 640x480 frame with enough detail that it does not compress to nothing
+    private static byte[] frame() throws IOException {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(640), random.nextInt(480), 10 + random.nextInt(80), 10 + random.nextInt(80));
+        }
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
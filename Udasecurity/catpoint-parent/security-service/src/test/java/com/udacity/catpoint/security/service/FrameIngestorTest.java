@@ -0,0 +1,171 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameIngestorTest {
+
+    // Frames wider than 100 pixels contain a cat
+    private final ImageService imageService = (image, confidenceThreshold) -> image.getWidth() > 100;
+    private final SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), imageService);
+    private FrameIngestor ingestor;
+
+    @TempDir
+    Path spoolDirectory;
+
+    @AfterEach
+    void close() {
+        if (ingestor != null) {
+            ingestor.close();
+        }
+    }
+
+    @Test
+    void multipartStream_shouldFeedEveryFrameInOrder() throws Exception {
+        ingestor = new FrameIngestor(securityService, 2);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        part(stream, jpeg(120));
+        part(stream, jpeg(80));
+        part(stream, jpeg(120));
+
+        long frames = ingestor.readStream(Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), "front");
+
+        assertEquals(3, frames);
+        assertTrue(ingestor.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(3, ingestor.getFramesProcessed());
+        assertEquals(stream.size(), ingestor.getBytesRead());
+        // The last frame has a cat
+        assertTrue(securityService.isCatDetected("front"));
+    }
+
+    @Test
+    void embeddedThumbnail_shouldNotEndFrame() throws Exception {
+        ingestor = new FrameIngestor(securityService, 1);
+        byte[] frame = withThumbnail(jpeg(120), jpeg(8));
+
+        long frames = ingestor.readStream(Channels.newChannel(new ByteArrayInputStream(frame)), "front");
+
+        assertEquals(1, frames);
+        assertTrue(ingestor.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(0, ingestor.getFramesFailed());
+        assertTrue(securityService.isCatDetected("front"));
+    }
+
+    @Test
+    void spoolDirectory_shouldReadExistingAndNewFiles() throws Exception {
+        Files.write(spoolDirectory.resolve("0001.jpg"), jpeg(80));
+        ingestor = new FrameIngestor(securityService, 1);
+
+        ingestor.watchDirectory(spoolDirectory, "garage");
+        Path partial = spoolDirectory.resolve("0002.jpg.part");
+        Files.write(partial, jpeg(120));
+        Files.move(partial, spoolDirectory.resolve("0002.jpg"), StandardCopyOption.ATOMIC_MOVE);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (ingestor.getFramesProcessed() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, ingestor.getFramesProcessed());
+        assertTrue(securityService.isCatDetected("garage"));
+        try (var remaining = Files.list(spoolDirectory)) {
+            assertEquals(0, remaining.count());
+        }
+    }
+
+    @Test
+    void slowCamera_shouldDropOldestWaitingFrames() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService blocking = (image, confidenceThreshold) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return image.getWidth() > 100;
+        };
+        SecurityService slowService = new SecurityService(new InMemorySecurityRepositoryImpl(), blocking);
+        ingestor = new FrameIngestor(slowService, 1, 1);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            stream.write(jpeg(80));
+        }
+        stream.write(jpeg(120));
+
+        ingestor.readStream(Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), "front");
+        release.countDown();
+
+        assertTrue(ingestor.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(6, ingestor.getFramesRead());
+        assertEquals(6, ingestor.getFramesProcessed() + ingestor.getFramesDropped());
+        assertTrue(ingestor.getFramesDropped() > 0);
+        // The newest frame is never the one dropped
+        assertTrue(slowService.isCatDetected("front"));
+    }
+
+    @Test
+    void corruptFrame_shouldBeCountedAndSkipped() throws Exception {
+        ingestor = new FrameIngestor(securityService, 1);
+        byte[] corrupt = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9};
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(corrupt);
+        stream.write(jpeg(120));
+
+        ingestor.readStream(Channels.newChannel(new ByteArrayInputStream(stream.toByteArray())), "front");
+
+        assertTrue(ingestor.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(1, ingestor.getFramesFailed());
+        assertEquals(1, ingestor.getFramesProcessed());
+    }
+
+    static byte[] jpeg(int width) {
+        BufferedImage image = new BufferedImage(width, 60, BufferedImage.TYPE_3BYTE_BGR);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "jpg", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void part(ByteArrayOutputStream stream, byte[] jpeg) throws IOException {
+        String headers = "--frame\r\nContent-Type: image/jpeg\r\nContent-Length: " + jpeg.length + "\r\n\r\n";
+        stream.write(headers.getBytes(StandardCharsets.US_ASCII));
+        stream.write(jpeg);
+        stream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Inserts an APP1 segment holding a complete JPEG right after the start-of-image marker
+    private static byte[] withThumbnail(byte[] jpeg, byte[] thumbnail) {
+        int segmentLength = thumbnail.length + 2;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(0xFF);
+        out.write(0xE1);
+        out.write(segmentLength >> 8);
+        out.write(segmentLength & 0xFF);
+        out.write(thumbnail, 0, thumbnail.length);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+}
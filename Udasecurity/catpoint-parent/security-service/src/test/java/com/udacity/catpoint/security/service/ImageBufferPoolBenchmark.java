@@ -0,0 +1,112 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures the heap allocated per frame on the ingest path, from a frame's encoded bytes to a
+ * classified image: first as {@link FrameIngestor} did before it pooled its buffers, copying
+ * each frame out of the stream and decoding it with {@link ImageIO#read}, then with an
+ * {@link ImageBufferPool} and a {@link PooledImageDecoder}. Classification is instant so the
+ * figures are for copying and decoding 640x480 JPEG frames. Not a unit test; run
+ * {@link #main(String[])} by hand, e.g. from the IDE.
+ *
+ * <p>Pooling does away with every large allocation: the frame copy and the decoded image.
+ * What remains is about one image's worth of row-sized scratch arrays the JDK's JPEG reader
+ * allocates while copying each decoded row into the destination, which die young and cost the
+ * collector far less than an image-sized array per frame.
+ */
+public final class ImageBufferPoolBenchmark {
+
+    private static final int WARM_UP_FRAMES = 500;
+    private static final int FRAMES = 2000;
+
+    private ImageBufferPoolBenchmark() {
+    }
+
+    private interface FramePath {
+        void process(byte[] stream, int length) throws IOException;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ImageService imageService = (BufferedImage image, float confidenceThreshold) -> false;
+        SecurityService securityService = new SecurityService(new InMemorySecurityRepositoryImpl(), imageService);
+        byte[] frame = frame();
+        // The frame as it sits in a stream reader's buffer, with room to spare
+        byte[] stream = Arrays.copyOf(frame, frame.length * 2);
+
+        run("ImageIO.read, fresh buffers", stream, frame.length, (bytes, length) -> {
+            byte[] copy = Arrays.copyOf(bytes, length);
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(copy));
+            securityService.processImage("camera", image);
+        });
+
+        ImageBufferPool pool = new ImageBufferPool();
+        PooledImageDecoder decoder = new PooledImageDecoder(pool);
+        run("Pooled buffers", stream, frame.length, (bytes, length) -> {
+            byte[] copy = pool.acquireBytes(length);
+            System.arraycopy(bytes, 0, copy, 0, length);
+            BufferedImage image;
+            try {
+                image = decoder.decode(copy, length);
+            } finally {
+                pool.releaseBytes(copy);
+            }
+            try {
+                securityService.processImage("camera", image);
+            } finally {
+                pool.releaseImage(image);
+            }
+        });
+        System.out.printf("Pool: %d buffers allocated, %d reused%n", pool.getAllocations(), pool.getReuses());
+    }
+
+    private static void run(String name, byte[] stream, int length, FramePath path) throws Exception {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            path.process(stream, length);
+        }
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            path.process(stream, length);
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%s: %.1f KB allocated per frame, %.2f ms per frame%n",
+                name, allocated / 1024.0 / FRAMES, nanos / 1e6 / FRAMES);
+    }
+
+    // Reached reflectively as the module does not read java.management; run from the class path
+    private static long allocatedBytes() throws ReflectiveOperationException {
+        Object threads = Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getThreadMXBean").invoke(null);
+        Method allocated = Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes");
+        return (long) allocated.invoke(threads);
+    }
+
+    // A camera-like 640x480 frame with enough detail that it does not compress to nothing
+    private static byte[] frame() throws IOException {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        Random random = new Random(42);
+        for (int i = 0; i < 400; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(640), random.nextInt(480), 10 + random.nextInt(80), 10 + random.nextInt(80));
+        }
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+package com.udacity.catpoint.security.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageBufferPoolTest {
+
+    private final ImageBufferPool pool = new ImageBufferPool(2);
+
+    @Test
+    void releasedImage_shouldBeReusedForSameSizeAndType() {
+        BufferedImage image = pool.acquireImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        pool.releaseImage(image);
+
+        assertNotSame(image, pool.acquireImage(64, 48, BufferedImage.TYPE_INT_RGB));
+        assertNotSame(image, pool.acquireImage(48, 64, BufferedImage.TYPE_3BYTE_BGR));
+        assertSame(image, pool.acquireImage(64, 48, BufferedImage.TYPE_3BYTE_BGR));
+        assertEquals(1, pool.getReuses());
+        assertEquals(3, pool.getAllocations());
+    }
+
+    @Test
+    void subImage_shouldNotBePooled() {
+        BufferedImage image = pool.acquireImage(64, 48, BufferedImage.TYPE_3BYTE_BGR);
+        pool.releaseImage(image.getSubimage(0, 0, 32, 24));
+
+        assertEquals(0, pool.getReuses());
+        BufferedImage other = pool.acquireImage(32, 24, BufferedImage.TYPE_3BYTE_BGR);
+        assertNull(other.getRaster().getParent());
+    }
+
+    @Test
+    void bytes_shouldComeInPowerOfTwoSizeClasses() {
+        byte[] small = pool.acquireBytes(10);
+        byte[] large = pool.acquireBytes(5000);
+        assertEquals(4096, small.length);
+        assertEquals(8192, large.length);
+
+        pool.releaseBytes(large);
+        pool.releaseBytes(new byte[5000]);
+
+        assertSame(large, pool.acquireBytes(8192));
+        assertNotEquals(5000, pool.acquireBytes(4097).length);
+    }
+
+    @Test
+    void pool_shouldHoldAtMostMaxPooledPerSize() {
+        byte[][] arrays = {pool.acquireBytes(100), pool.acquireBytes(100), pool.acquireBytes(100)};
+        for (byte[] array : arrays) {
+            pool.releaseBytes(array);
+        }
+
+        pool.acquireBytes(100);
+        pool.acquireBytes(100);
+        pool.acquireBytes(100);
+
+        assertEquals(2, pool.getReuses());
+        assertEquals(4, pool.getAllocations());
+        assertEquals(1, pool.getDiscards());
+    }
+
+    @Test
+    void decoder_shouldDecodeIntoPooledImage() throws IOException {
+        byte[] jpeg = jpeg();
+        byte[] padded = Arrays.copyOf(jpeg, jpeg.length + 100);
+        BufferedImage expected = ImageIO.read(new ByteArrayInputStream(jpeg));
+        BufferedImage destination = pool.acquireImage(expected.getWidth(), expected.getHeight(), expected.getType());
+        pool.releaseImage(destination);
+        PooledImageDecoder decoder = new PooledImageDecoder(pool);
+
+        BufferedImage first = decoder.decode(padded, jpeg.length);
+        pool.releaseImage(first);
+        BufferedImage second = decoder.decode(padded, jpeg.length);
+
+        assertSame(destination, first);
+        assertSame(destination, second);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), second.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void decoder_shouldRejectUnreadableFrames() {
+        byte[] corrupt = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9};
+        PooledImageDecoder decoder = new PooledImageDecoder(pool);
+
+        assertThrows(IOException.class, () -> decoder.decode(corrupt, corrupt.length));
+        assertThrows(IOException.class, () -> decoder.decode(new byte[16], 16));
+    }
+
+    private static byte[] jpeg() throws IOException {
+        BufferedImage image = new BufferedImage(40, 30, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillOval(5, 5, 25, 20);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,197 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ClassificationResult;
+import com.udacity.catpoint.image.ImageService;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatchSchedulerTest {
+
+    // Frames wider than 100 pixels contain a cat, with 70% confidence
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final ImageService imageService = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+            return classify(image).containsCat(confidenceThreshold);
+        }
+
+        @Override
+        public ClassificationResult classify(BufferedImage image) {
+            float confidence = image.getWidth() > 100 ? 70f : 0f;
+            return new ClassificationResult(confidence, Map.of("Cat", confidence), Duration.ZERO);
+        }
+
+        @Override
+        public List<ClassificationResult> classifyAll(List<BufferedImage> images) {
+            batchSizes.add(images.size());
+            return ImageService.super.classifyAll(images);
+        }
+    };
+
+    @Test
+    void fullBatch_shouldBeDispatchedWithoutWaitingForWindow() {
+        try (MicroBatchScheduler scheduler = new MicroBatchScheduler(imageService, 4, Duration.ofMinutes(1), 1)) {
+            List<CompletableFuture<ClassificationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(scheduler.submit("camera-" + i, frame(i % 2 == 0)));
+            }
+
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i % 2 == 0, results.get(i).orTimeout(5, TimeUnit.SECONDS).join().containsCat(50f));
+            }
+            assertEquals(List.of(4), batchSizes);
+        }
+    }
+
+    @Test
+    void lonelyFrame_shouldBeDispatchedAfterWindow() {
+        try (MicroBatchScheduler scheduler = new MicroBatchScheduler(imageService, 8, Duration.ofMillis(20), 1)) {
+            assertTrue(scheduler.submit("front", frame(true)).orTimeout(5, TimeUnit.SECONDS).join().containsCat(50f));
+            assertEquals(List.of(1), batchSizes);
+            assertEquals(1, scheduler.getDispatchedBatches());
+            assertEquals(1, scheduler.getClassifiedFrames());
+        }
+    }
+
+    @Test
+    void concurrentBatches_shouldNotExceedLimit() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        ImageService slowService = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshold) {
+                return false;
+            }
+
+            @Override
+            public List<ClassificationResult> classifyAll(List<BufferedImage> images) {
+                mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return ImageService.super.classifyAll(images);
+            }
+        };
+        try (MicroBatchScheduler scheduler = new MicroBatchScheduler(slowService, 2, Duration.ZERO, 2)) {
+            List<CompletableFuture<ClassificationResult>> results = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                results.add(scheduler.submit("camera-" + (i % 4), frame(false)));
+            }
+
+            results.forEach(result -> assertFalse(result.orTimeout(10, TimeUnit.SECONDS).join().containsCat(50f)));
+            assertTrue(mostRunning.get() <= 2, "ran " + mostRunning.get() + " batches at once");
+            assertEquals(40, scheduler.getClassifiedFrames());
+        }
+    }
+
+    @Test
+    void batch_shouldKeepEachFramesClassification() {
+        try (MicroBatchScheduler scheduler = new MicroBatchScheduler(imageService, 2, Duration.ofMinutes(1), 1)) {
+            CompletableFuture<ClassificationResult> first = scheduler.submit("front", frame(true));
+            CompletableFuture<ClassificationResult> second = scheduler.submit("back", frame(false));
+
+            ClassificationResult cat = first.orTimeout(5, TimeUnit.SECONDS).join();
+            assertEquals(70f, cat.catConfidence());
+            assertTrue(cat.containsCat(50f));
+            assertFalse(cat.containsCat(90f));
+            assertEquals(0f, second.orTimeout(5, TimeUnit.SECONDS).join().catConfidence());
+            assertEquals(List.of(2), batchSizes);
+        }
+    }
+
+    @Test
+    void serviceFailure_shouldFailEveryFrameInBatch() {
+        ImageService failing = (image, confidenceThreshold) -> {
+            throw new IllegalStateException("classifier down");
+        };
+        try (MicroBatchScheduler scheduler = new MicroBatchScheduler(failing, 2, Duration.ofMinutes(1), 1)) {
+            CompletableFuture<ClassificationResult> first = scheduler.submit("front", frame(true));
+            CompletableFuture<ClassificationResult> second = scheduler.submit("back", frame(true));
+
+            for (CompletableFuture<ClassificationResult> result : List.of(first, second)) {
+                CompletionException failure = assertThrows(CompletionException.class,
+                        () -> result.orTimeout(5, TimeUnit.SECONDS).join());
+                assertInstanceOf(IllegalStateException.class, failure.getCause());
+            }
+        }
+    }
+
+    @Test
+    void fullQueue_shouldRejectNewFrames() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService blocking = (image, confidenceThreshold) -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        try (MicroBatchScheduler scheduler = new MicroBatchScheduler(blocking, 1, Duration.ZERO, 1, 2)) {
+            CompletableFuture<ClassificationResult> classifying = scheduler.submit("front", frame(true));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            // The dispatcher may take one more frame off the queue to wait for the busy slot with
+            List<CompletableFuture<ClassificationResult>> accepted = new ArrayList<>();
+            CompletableFuture<ClassificationResult> next = scheduler.submit("back", frame(true));
+            while (!next.isCompletedExceptionally() && accepted.size() < 10) {
+                accepted.add(next);
+                next = scheduler.submit("back", frame(true));
+            }
+
+            CompletionException failure = assertThrows(CompletionException.class, next::join);
+            assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+            assertTrue(accepted.size() >= 2 && accepted.size() <= 3, "accepted " + accepted.size());
+            assertEquals(1, scheduler.getRejectedFrames());
+            release.countDown();
+            assertTrue(classifying.join().containsCat(50f));
+            accepted.forEach(frame -> assertTrue(frame.join().containsCat(50f)));
+        }
+    }
+
+    @Test
+    void close_shouldCancelWaitingFramesAndRejectNewOnes() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService blocking = (image, confidenceThreshold) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        MicroBatchScheduler scheduler = new MicroBatchScheduler(blocking, 1, Duration.ZERO, 1);
+        scheduler.submit("front", frame(true));
+        CompletableFuture<ClassificationResult> waiting = scheduler.submit("back", frame(true));
+
+        scheduler.close();
+
+        assertTrue(waiting.isCancelled());
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> scheduler.submit("front", frame(true)).join());
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        release.countDown();
+    }
+
+    private static BufferedImage frame(boolean cat) {
+        return new BufferedImage(cat ? 120 : 80, 60, BufferedImage.TYPE_INT_RGB);
+    }
+}
@@ -0,0 +1,44 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Measures the heap retained by idle premises in a {@link PremiseRegistry}. Not a unit test;
+ * run {@link #main(String[])} by hand, e.g. from the IDE, ideally with a fixed heap size.
+ */
+public final class PremiseFootprintBenchmark {
+
+    private static final int PREMISES = 50_000;
+
+    private PremiseFootprintBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        ImageService imageService = (BufferedImage image, float confidenceThreshold) -> false;
+        PremiseRegistry registry = new PremiseRegistry(imageService);
+        String[] premiseIds = new String[PREMISES];
+        for (int i = 0; i < PREMISES; i++) {
+            premiseIds[i] = "premise-" + i;
+        }
+
+        long before = usedHeap();
+        for (String premiseId : premiseIds) {
+            // Touch each premise the way a status read would, so lazily built state is included
+            registry.service(premiseId).getAlarmStatus();
+        }
+        long after = usedHeap();
+
+        System.out.printf("%d idle premises retain %.1f MB, about %d bytes each%n",
+                registry.size(), (after - before) / 1e6, (after - before) / PREMISES);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
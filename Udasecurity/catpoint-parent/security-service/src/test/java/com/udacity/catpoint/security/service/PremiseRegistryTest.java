@@ -0,0 +1,73 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PremiseRegistryTest {
+
+    @Mock
+    private ImageService mockimageService;
+
+    private PremiseRegistry registry;
+
+    @BeforeEach
+    void setup() {
+        registry = new PremiseRegistry(mockimageService);
+    }
+
+    @Test
+    void service_shouldReturnSameServiceForSamePremise() {
+        SecurityService first = registry.service("premise-1");
+
+        assertSame(first, registry.service("premise-1"));
+        assertNotSame(first, registry.service("premise-2"));
+        assertEquals(Set.of("premise-1", "premise-2"), registry.premiseIds());
+    }
+
+    @Test
+    void service_shouldKeepStateSeparatePerPremise() {
+        SecurityService home = registry.service("home");
+        SecurityService office = registry.service("office");
+        Sensor door = new Sensor("Door", SensorType.DOOR);
+        home.addSensor(door);
+        home.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        home.changeSensorActivationStatus(door, true);
+
+        assertEquals(AlarmStatus.PENDING_ALARM, home.getAlarmStatus());
+        assertEquals(1, home.getActiveSensorCount());
+        assertEquals(AlarmStatus.NO_ALARM, office.getAlarmStatus());
+        assertEquals(ArmingStatus.DISARMED, office.getArmingStatus());
+        assertTrue(office.getSensors().isEmpty());
+    }
+
+    @Test
+    void find_shouldNotCreatePremise() {
+        assertTrue(registry.find("unknown").isEmpty());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void remove_shouldCloseRepository() {
+        SecurityRepository repository = mock(SecurityRepository.class);
+        PremiseRegistry mockedRegistry = new PremiseRegistry(premiseId -> repository, mockimageService);
+        mockedRegistry.service("premise-1");
+
+        assertTrue(mockedRegistry.remove("premise-1"));
+        assertFalse(mockedRegistry.remove("premise-1"));
+        verify(repository).close();
+        assertEquals(0, mockedRegistry.size());
+    }
+}
@@ -0,0 +1,110 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
+
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Has several threads toggle their own sensors as fast as they can, first calling the
+ * {@link SecurityService} directly and then through a {@link SecurityEventLoop}, and reports
+ * the events applied per second, the heap each event allocates on the calling thread, and for
+ * the loop how many events it applied per batch. Not a unit test; run {@link #main(String[])} by
+ * hand, e.g. from the IDE.
+ *
+ * <p>Throughput depends on the cores available: with fewer cores than producers the consumer
+ * competes with them for CPU time, and the loop's gain is mostly that callers return sooner.
+ */
+public final class SecurityEventLoopBenchmark {
+
+    private static final int PRODUCERS = 4;
+    private static final int SENSORS_PER_PRODUCER = 8;
+    private static final int WARM_UP_EVENTS = 200_000;
+    private static final int EVENTS = 1_000_000;
+    private static final int RING_SIZE = 1024;
+
+    private SecurityEventLoopBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        run("Direct calls", false, WARM_UP_EVENTS);
+        run("Direct calls", false, EVENTS);
+        run("Event loop", true, WARM_UP_EVENTS);
+        run("Event loop", true, EVENTS);
+    }
+
+    private static void run(String name, boolean eventLoop, int events) throws Exception {
+        ImageService imageService = (BufferedImage image, float confidenceThreshold) -> false;
+        SecurityService service = new SecurityService(new InMemorySecurityRepositoryImpl(), imageService);
+        List<List<Sensor>> sensors = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            List<Sensor> own = new ArrayList<>();
+            for (int s = 0; s < SENSORS_PER_PRODUCER; s++) {
+                Sensor sensor = new Sensor("Sensor" + p + "-" + s, SensorType.values()[s % SensorType.values().length]);
+                service.addSensor(sensor);
+                own.add(sensor);
+            }
+            sensors.add(own);
+        }
+        SecurityEventLoop loop = eventLoop ? service.startEventLoop(RING_SIZE) : null;
+
+        int perProducer = events / PRODUCERS;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong allocated = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (List<Sensor> own : sensors) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    long before = allocatedBytes();
+                    for (int i = 0; i < perProducer; i++) {
+                        Sensor sensor = own.get(i % SENSORS_PER_PRODUCER);
+                        // Each sensor flips every lap round the producer's sensors
+                        service.changeSensorActivationStatus(sensor, (i / SENSORS_PER_PRODUCER) % 2 == 0);
+                    }
+                    allocated.addAndGet(allocatedBytes() - before);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long producedNanos = System.nanoTime() - begin;
+        if (loop != null) {
+            loop.awaitIdle(Duration.ofMinutes(1));
+        }
+        long appliedNanos = System.nanoTime() - begin;
+
+        long total = (long) perProducer * PRODUCERS;
+        String batching = loop == null ? ""
+                : String.format(", %.1f events per batch", loop.getEventsApplied() / (double) loop.getBatches());
+        System.out.printf("%-12s %,d events: %.2f M/s applied, callers done in %.0f ms, %.1f bytes per event on callers%s%n",
+                name, total, total / (appliedNanos / 1e3), producedNanos / 1e6, allocated.get() / (double) total, batching);
+        if (loop != null) {
+            loop.close();
+        }
+    }
+
+    // Reached reflectively as the module does not read java.management; run from the class path
+    private static long allocatedBytes() throws ReflectiveOperationException {
+        Object threads = Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getThreadMXBean").invoke(null);
+        Method allocated = Class.forName("com.sun.management.ThreadMXBean").getMethod("getCurrentThreadAllocatedBytes");
+        return (long) allocated.invoke(threads);
+    }
+}
@@ -0,0 +1,235 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.ClassificationResult;
+import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.InMemorySecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorEvent;
+import com.udacity.catpoint.security.data.SensorType;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecurityEventLoopTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+    private final ImageService imageService = (BufferedImage image, float confidenceThreshold) -> false;
+    private final SecurityService service = new SecurityService(repository, imageService);
+
+    @Test
+    void concurrentProducers_shouldNotLoseTransitions() throws InterruptedException {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sensors.add(new Sensor("Sensor" + i, SensorType.DOOR));
+            service.addSensor(sensors.get(i));
+        }
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        try (SecurityEventLoop loop = service.startEventLoop(8)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (Sensor sensor : sensors) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    service.changeSensorActivationStatus(sensor, true);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertTrue(loop.awaitIdle(TIMEOUT));
+            assertEquals(4, loop.getEventsApplied());
+        }
+        assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        long active = repository.getSensors().stream().filter(Sensor::getActive).count();
+        assertEquals(active, service.getActiveSensorCount());
+    }
+
+    @Test
+    void fullRing_shouldMakeProducersWaitRatherThanDropEvents() throws InterruptedException {
+        try (SecurityEventLoop loop = service.startEventLoop(2)) {
+            for (int i = 0; i < 500; i++) {
+                Sensor sensor = new Sensor("Sensor" + i, SensorType.WINDOW);
+                service.addSensor(sensor);
+                service.changeSensorActivationStatus(sensor, true);
+            }
+
+            assertTrue(loop.awaitIdle(TIMEOUT));
+            assertEquals(1000, loop.getEventsApplied());
+        }
+        assertEquals(500, service.getSensors().size());
+        assertEquals(500, service.getActiveSensorCount());
+        assertEquals(500, (int) service.getActiveSensorCounts().get(SensorType.WINDOW));
+    }
+
+    @Test
+    void eventsWaitingBehindABatch_shouldBePublishedOnce() throws InterruptedException {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        service.addSensor(sensor);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        CountDownLatch publishing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<AlarmStatus> notified = new CopyOnWriteArrayList<>();
+        service.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                notified.add(status);
+                publishing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+
+        try (SecurityEventLoop loop = service.startEventLoop(32)) {
+            service.changeSensorActivationStatus(sensor, true);
+            // The consumer is now held up publishing the first batch
+            assertTrue(publishing.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+            for (int i = 0; i < 10; i++) {
+                service.changeSensorActivationStatus(sensor, false);
+                service.changeSensorActivationStatus(sensor, true);
+            }
+            service.changeSensorActivationStatus(sensor, false);
+            release.countDown();
+
+            assertTrue(loop.awaitIdle(TIMEOUT));
+            assertEquals(2, loop.getBatches());
+        }
+        assertEquals(List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.NO_ALARM), notified);
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+    }
+
+    @Test
+    void imageResults_shouldBeAppliedByTheLoop() throws InterruptedException {
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+        try (SecurityEventLoop loop = service.startEventLoop(4)) {
+            assertTrue(service.applyCatDetection("camera", 1, ClassificationResult.ofDecision(true, Duration.ZERO)));
+            assertTrue(loop.awaitIdle(TIMEOUT));
+        }
+        assertTrue(service.isCatDetected("camera"));
+        assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+    }
+
+    @Test
+    void close_shouldSwitchBackToDirectCalls() {
+        SecurityEventLoop loop = service.startEventLoop(4);
+        assertThrows(IllegalStateException.class, () -> service.startEventLoop(4));
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        loop.close();
+
+        // Applied by close, and later events on the calling thread
+        assertEquals(ArmingStatus.ARMED_HOME, service.getArmingStatus());
+        service.setArmingStatus(ArmingStatus.DISARMED);
+        assertEquals(ArmingStatus.DISARMED, service.getArmingStatus());
+        assertEquals(1, loop.getEventsApplied());
+        service.startEventLoop(4).close();
+    }
+
+    @Test
+    void consumerDying_shouldHandEventsBackToCallers() throws InterruptedException {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        service.addSensor(sensor);
+        service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        AtomicBoolean fail = new AtomicBoolean(true);
+        service.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                if (fail.getAndSet(false)) {
+                    throw new OutOfMemoryError("Simulated");
+                }
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+
+        SecurityEventLoop loop = service.startEventLoop(2);
+        service.changeSensorActivationStatus(sensor, true);
+        assertThrows(IllegalStateException.class, () -> loop.awaitIdle(TIMEOUT));
+
+        // Applied on the calling thread now that the loop has closed itself
+        service.changeSensorActivationStatus(sensor, false);
+        assertEquals(AlarmStatus.NO_ALARM, service.getAlarmStatus());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+        service.startEventLoop(2).close();
+    }
+
+    @Test
+    void sensorEvents_shouldBeCopiedWhenOffered() throws InterruptedException {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        service.addSensor(sensor);
+
+        try (SecurityEventLoop loop = service.startEventLoop(4)) {
+            List<SensorEvent> events = new ArrayList<>(List.of(new SensorEvent(sensor.getSensorId(), true)));
+            service.applySensorEvents(events);
+            events.clear();
+
+            assertTrue(loop.awaitIdle(TIMEOUT));
+        }
+        assertEquals(1, service.getActiveSensorCount());
+    }
+
+    @Test
+    void sensorChange_shouldLeaveTheCallersSensorAlone() throws InterruptedException {
+        Sensor sensor = new Sensor("Door", SensorType.DOOR);
+        service.addSensor(sensor);
+
+        try (SecurityEventLoop loop = service.startEventLoop(4)) {
+            service.changeSensorActivationStatus(sensor, true);
+            sensor.setName("Renamed");
+
+            assertTrue(loop.awaitIdle(TIMEOUT));
+        }
+        assertFalse(sensor.getActive());
+        Sensor stored = repository.findSensor(sensor.getSensorId()).orElseThrow();
+        assertTrue(stored.getActive());
+        assertEquals("Door", stored.getName());
+        assertEquals(1, service.getActiveSensorCount());
+    }
+
+    @Test
+    void ringSize_shouldBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> service.startEventLoop(6));
+        assertThrows(IllegalArgumentException.class, () -> service.startEventLoop(1));
+    }
+}
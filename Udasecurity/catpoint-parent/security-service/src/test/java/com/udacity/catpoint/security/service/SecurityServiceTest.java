@@ -2,7 +2,9 @@ package com.udacity.catpoint.security.service;
 
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.*;
+import com.udacity.catpoint.image.ClassificationResult;
 import com.udacity.catpoint.image.ImageService;
+import com.udacity.catpoint.image.MotionGate;
 
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
@@ -11,16 +13,29 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import java.awt.image.BufferedImage;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 @ExtendWith(MockitoExtension.class)
 class SecurityServiceTest {
@@ -93,7 +108,7 @@ class SecurityServiceTest {
     }
 
     private void mockImageServiceForNoCatDetection() {
-        doReturn(false).when(mockimageService).imageContainsCat(any(), anyFloat());
+        doReturn(ClassificationResult.ofDecision(false, Duration.ZERO)).when(mockimageService).classify(any());
     }
 
     private void mockSecurityRepositoryForNoActiveSensors() {
@@ -116,7 +131,7 @@ class SecurityServiceTest {
     }
 
     private void mockImageServiceForCatDetection(boolean catDetected) {
-        doReturn(catDetected).when(mockimageService).imageContainsCat(any(), anyFloat());
+        doReturn(ClassificationResult.ofDecision(catDetected, Duration.ZERO)).when(mockimageService).classify(any());
     }
 
     private void mockSecurityRepositoryForArmedHome() {
@@ -174,10 +189,11 @@ class SecurityServiceTest {
         return sensor;
     }
 
+    // The repository's sensors are read-only, so the deactivated state arrives as a copy
     private void assertSensorsDeactivatedAndUpdated(Sensor... sensors) {
         for (Sensor sensor : sensors) {
-            assertFalse(sensor.getActive(), "Sensor should be deactivated: " + sensor.getName());
-            verify(mocksecurityRepository).updateSensor(sensor);
+            verify(mocksecurityRepository).updateSensor(
+                    argThat(updated -> updated.equals(sensor) && !updated.getActive()));
         }
     }
 
@@ -227,7 +243,7 @@ class SecurityServiceTest {
         Set<Sensor> sensors = Set.of(frontSensor, backSensor);
 
         doReturn(sensors).when(mocksecurityRepository).getSensors();
-        doReturn(false).when(mockimageService).imageContainsCat(any(), anyFloat());
+        doReturn(ClassificationResult.ofDecision(false, Duration.ZERO)).when(mockimageService).classify(any());
         doReturn(AlarmStatus.PENDING_ALARM).when(mocksecurityRepository).getAlarmStatus();
 
         BufferedImage dummyImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
@@ -246,7 +262,7 @@ class SecurityServiceTest {
     void removeStatusListener_shouldNotFail_whenRemovingUnregisteredListener() {
         securityService.addStatusListener(listener1);
         securityService.removeStatusListener(listener2);
-        doReturn(true).when(mockimageService).imageContainsCat(any(), anyFloat());
+        doReturn(ClassificationResult.ofDecision(true, Duration.ZERO)).when(mockimageService).classify(any());
         BufferedImage dummyImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
         securityService.processImage(dummyImage);
         verify(listener1).catDetected(true);
@@ -255,7 +271,7 @@ class SecurityServiceTest {
     @Test // Test15
     void processImage_shouldNotTriggerAlarm_whenCatDetectedAndSystemArmedAway() {
         doReturn(ArmingStatus.ARMED_AWAY).when(mocksecurityRepository).getArmingStatus();
-        doReturn(true).when(mockimageService).imageContainsCat(any(), anyFloat());
+        doReturn(ClassificationResult.ofDecision(true, Duration.ZERO)).when(mockimageService).classify(any());
         securityService.processImage(mock(BufferedImage.class));
         verify(mocksecurityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
     }
@@ -277,7 +293,7 @@ class SecurityServiceTest {
     @Test // Test17
     void processImage_shouldNotifyStatusListener_whenCatDetected() {
         securityService.addStatusListener(listener);
-        doReturn(true).when(mockimageService).imageContainsCat(any(), anyFloat());
+        doReturn(ClassificationResult.ofDecision(true, Duration.ZERO)).when(mockimageService).classify(any());
         BufferedImage dummyImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
         securityService.processImage(dummyImage);
 
@@ -299,22 +315,16 @@ class SecurityServiceTest {
         Set<Sensor> allSensors = new HashSet<>(Arrays.asList(doorSensor, windowSensor, motionSensor));
         when(mocksecurityRepository.getSensors()).thenReturn(allSensors);
 
-        doAnswer(invocation -> {
-            Sensor incomingSensor = invocation.getArgument(0);
-            incomingSensor.setActive(false);
-            return null;
-        }).when(mocksecurityRepository).updateSensor(any());
+        List<Sensor> updated = new ArrayList<>();
+        doAnswer(invocation -> updated.add(invocation.getArgument(0)))
+                .when(mocksecurityRepository).updateSensor(any());
 
         securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
 
-        assertAll(
-                () -> assertFalse(doorSensor.getActive()),
-                () -> assertFalse(windowSensor.getActive()),
-                () -> assertFalse(motionSensor.getActive()));
-
-        verify(mocksecurityRepository).updateSensor(doorSensor);
-        verify(mocksecurityRepository).updateSensor(windowSensor);
-        verify(mocksecurityRepository).updateSensor(motionSensor);
+        assertEquals(Set.of(doorSensor, windowSensor, motionSensor), new HashSet<>(updated));
+        for (Sensor sensor : updated) {
+            assertFalse(sensor.getActive(), "Sensor should be deactivated: " + sensor.getName());
+        }
     }
 
     @Test // Test19
@@ -330,7 +340,7 @@ class SecurityServiceTest {
         ImageService mockImageService = mock(ImageService.class);
         SecurityRepository mockSecurityRepository = mock(SecurityRepository.class);
         SecurityService securityService = new SecurityService(mockSecurityRepository, mockImageService);
-        when(mockImageService.imageContainsCat(any(BufferedImage.class), anyFloat())).thenReturn(true);
+        when(mockImageService.classify(any())).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
         securityService.processImage(mock(BufferedImage.class));
         securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
         ArgumentCaptor<AlarmStatus> alarmStatusCaptor = ArgumentCaptor.forClass(AlarmStatus.class);
@@ -347,7 +357,7 @@ class SecurityServiceTest {
 
         securityService.addStatusListener(mockListener);
         securityService.removeStatusListener(mockListener);
-        when(mockImageService.imageContainsCat(any(BufferedImage.class), anyFloat())).thenReturn(true);
+        when(mockImageService.classify(any())).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
         securityService.processImage(mock(BufferedImage.class));
 
         ArgumentCaptor<Boolean> captor = ArgumentCaptor.forClass(Boolean.class);
@@ -368,7 +378,7 @@ class SecurityServiceTest {
         securityService.addStatusListener(listener2);
         securityService.removeStatusListener(listener1);
 
-        when(mockImageService.imageContainsCat(any(BufferedImage.class), anyFloat())).thenReturn(true);
+        when(mockImageService.classify(any())).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
         securityService.processImage(mock(BufferedImage.class));
 
         ArgumentCaptor<Boolean> captor = ArgumentCaptor.forClass(Boolean.class);
@@ -378,4 +388,400 @@ class SecurityServiceTest {
         verify(listener1, never()).catDetected(anyBoolean());
     }
 
+    @Test // Test23
+    void getActiveSensorCounts_shouldTrackActivationsByType() {
+        Sensor doorSensor = new Sensor("Door", SensorType.DOOR);
+        Sensor motionSensor = createActiveSensor("Motion", SensorType.MOTION);
+        doReturn(Set.of(motionSensor)).when(mocksecurityRepository).getSensors();
+
+        securityService.changeSensorActivationStatus(doorSensor, true);
+        assertEquals(2, securityService.getActiveSensorCount());
+
+        securityService.changeSensorActivationStatus(motionSensor, false);
+        assertEquals(1, securityService.getActiveSensorCount());
+        assertEquals(1, securityService.getActiveSensorCounts().get(SensorType.DOOR));
+        assertEquals(0, securityService.getActiveSensorCounts().get(SensorType.MOTION));
+    }
+
+    @Test // Test24
+    void setArmingStatus_shouldResetActiveSensorCount() {
+        Sensor doorSensor = createActiveSensor("Door", SensorType.DOOR);
+        doReturn(Set.of(doorSensor)).when(mocksecurityRepository).getSensors();
+
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+        assertEquals(0, securityService.getActiveSensorCount());
+    }
+
+    @Test // Test25
+    void applySensorEvents_shouldPersistOnceAndNotifyOnce() {
+        Sensor doorSensor = new Sensor("Door", SensorType.DOOR);
+        Sensor windowSensor = new Sensor("Window", SensorType.WINDOW);
+        doReturn(AlarmStatus.NO_ALARM).when(mocksecurityRepository).getAlarmStatus();
+        doReturn(ArmingStatus.ARMED_AWAY).when(mocksecurityRepository).getArmingStatus();
+        doReturn(Optional.of(doorSensor)).when(mocksecurityRepository).findSensor(doorSensor.getSensorId());
+        doReturn(Optional.of(windowSensor)).when(mocksecurityRepository).findSensor(windowSensor.getSensorId());
+        securityService.addStatusListener(listener);
+
+        securityService.applySensorEvents(List.of(
+                SensorEvent.of(doorSensor, true),
+                SensorEvent.of(windowSensor, true)));
+
+        verify(mocksecurityRepository).updateSensors(any());
+        verify(mocksecurityRepository, never()).updateSensor(any());
+        verify(mocksecurityRepository).setAlarmStatus(AlarmStatus.ALARM);
+        verify(listener).notify(AlarmStatus.ALARM);
+        verify(listener, never()).notify(AlarmStatus.PENDING_ALARM);
+    }
+
+    @Test // Test26
+    void applySensorEvents_shouldMatchPerEventProcessing(@TempDir Path directory) {
+        List<Boolean> activations = List.of(true, true, false, false, true, false);
+        try (SecurityRepository perEventRepository = new JournalSecurityRepositoryImpl(directory.resolve("single"));
+             SecurityRepository batchRepository = new JournalSecurityRepositoryImpl(directory.resolve("batch"))) {
+            SecurityService perEventService = new SecurityService(perEventRepository, mockimageService);
+            SecurityService batchService = new SecurityService(batchRepository, mockimageService);
+            List<Sensor> perEventSensors = new ArrayList<>();
+            List<Sensor> batchSensors = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                perEventSensors.add(new Sensor("Sensor" + i, SensorType.DOOR));
+                batchSensors.add(new Sensor("Sensor" + i, SensorType.DOOR));
+                perEventService.addSensor(perEventSensors.get(i));
+                batchService.addSensor(batchSensors.get(i));
+            }
+            perEventService.setArmingStatus(ArmingStatus.ARMED_HOME);
+            batchService.setArmingStatus(ArmingStatus.ARMED_HOME);
+
+            List<SensorEvent> events = new ArrayList<>();
+            for (int i = 0; i < activations.size(); i++) {
+                int sensorIndex = i % 2;
+                perEventService.changeSensorActivationStatus(perEventSensors.get(sensorIndex), activations.get(i));
+                events.add(SensorEvent.of(batchSensors.get(sensorIndex), activations.get(i)));
+            }
+            batchService.applySensorEvents(events);
+
+            assertEquals(perEventService.getAlarmStatus(), batchService.getAlarmStatus());
+            assertEquals(perEventService.getActiveSensorCount(), batchService.getActiveSensorCount());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(perEventRepository.findSensor(perEventSensors.get(i).getSensorId()).orElseThrow().getActive(),
+                        batchRepository.findSensor(batchSensors.get(i).getSensorId()).orElseThrow().getActive());
+            }
+        }
+    }
+
+    @Test // Test27
+    void processImageAsync_shouldApplyResultWhenClassificationCompletes() {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        doReturn(ArmingStatus.ARMED_HOME).when(mocksecurityRepository).getArmingStatus();
+        when(mockimageService.classify(any())).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 4, ClassificationExecutor.BackpressurePolicy.REJECT)) {
+            SecurityService asyncService = new SecurityService(mocksecurityRepository, mockimageService, executor);
+            asyncService.addStatusListener(listener);
+
+            assertTrue(asyncService.processImageAsync(image).join());
+        }
+
+        verify(mocksecurityRepository).setAlarmStatus(AlarmStatus.ALARM);
+        verify(listener).catDetected(true);
+    }
+
+    @Test // Test28
+    void processImageAsync_shouldIgnoreOlderFrameThatFinishesLast() {
+        BufferedImage olderFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage newerFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        CountDownLatch releaseOlderFrame = new CountDownLatch(1);
+        when(mockimageService.classify(olderFrame)).thenAnswer(invocation -> {
+            releaseOlderFrame.await();
+            return ClassificationResult.ofDecision(true, Duration.ZERO);
+        });
+        when(mockimageService.classify(newerFrame)).thenReturn(ClassificationResult.ofDecision(false, Duration.ZERO));
+        try (ClassificationExecutor executor = new ClassificationExecutor(2, 4, ClassificationExecutor.BackpressurePolicy.REJECT)) {
+            SecurityService asyncService = new SecurityService(mocksecurityRepository, mockimageService, executor);
+            asyncService.addStatusListener(listener);
+
+            CompletableFuture<Boolean> older = asyncService.processImageAsync(olderFrame);
+            assertFalse(asyncService.processImageAsync(newerFrame).join());
+            releaseOlderFrame.countDown();
+            assertTrue(older.join());
+        }
+
+        verify(listener).catDetected(false);
+        verify(listener, never()).catDetected(true);
+        verify(mocksecurityRepository, never()).setAlarmStatus(AlarmStatus.ALARM);
+    }
+
+    @Test // Test29
+    void processImage_shouldSkipClassificationOfStaticFrames() {
+        BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        BufferedImage sameFrame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+        when(mockimageService.classify(any())).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
+        securityService.setMotionGate(new MotionGate());
+        securityService.addStatusListener(listener);
+
+        securityService.processImage(frame);
+        securityService.processImage(sameFrame);
+
+        verify(mockimageService, times(1)).classify(any());
+        verify(listener, times(1)).catDetected(true);
+    }
+
+    @Test // Test30
+    void processImageAsync_shouldClassifyFramesFromSeveralCamerasInOneBatch() {
+        BufferedImage frontFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage backFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        when(mockimageService.classifyAll(anyList())).thenReturn(List.of(
+                new ClassificationResult(70f, Map.of("Cat", 70f), Duration.ZERO),
+                ClassificationResult.ofDecision(false, Duration.ZERO)));
+        securityService.startBatchScheduler(2, Duration.ofMinutes(1), 1);
+        try {
+            CompletableFuture<Boolean> front = securityService.processImageAsync("front", frontFrame);
+            CompletableFuture<Boolean> back = securityService.processImageAsync("back", backFrame);
+
+            assertTrue(front.join());
+            assertFalse(back.join());
+        } finally {
+            securityService.stopBatchScheduler();
+        }
+
+        verify(mockimageService).classifyAll(List.of(frontFrame, backFrame));
+        verify(mockimageService, never()).classify(any());
+        verify(mockimageService, never()).imageContainsCat(any(), anyFloat());
+        // The batch keeps each frame's score, so a threshold change is applied without reclassifying
+        assertEquals(70f, securityService.getLatestClassification("front").orElseThrow().catConfidence());
+        securityService.setCatConfidenceThreshold(80f);
+        assertFalse(securityService.isCatDetected());
+    }
+
+    @Test // Test31
+    void processImage_shouldKeepCatDetectedWhileAnotherCameraStillSeesIt() {
+        BufferedImage frontFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage backFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        doReturn(ArmingStatus.ARMED_HOME).when(mocksecurityRepository).getArmingStatus();
+        when(mockimageService.classify(frontFrame)).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
+        when(mockimageService.classify(backFrame)).thenReturn(ClassificationResult.ofDecision(false, Duration.ZERO));
+        securityService.addStatusListener(listener);
+
+        securityService.processImage("front", frontFrame);
+        securityService.processImage("back", backFrame);
+
+        assertTrue(securityService.isCatDetected());
+        assertTrue(securityService.isCatDetected("front"));
+        assertFalse(securityService.isCatDetected("back"));
+        assertEquals(Set.of("front", "back"), securityService.getCameraIds());
+        verify(listener).catDetected("front", true);
+        verify(listener).catDetected("back", false);
+        verify(listener, times(2)).catDetected(true);
+        verify(listener, never()).catDetected(false);
+        verify(mocksecurityRepository, never()).setAlarmStatus(AlarmStatus.NO_ALARM);
+    }
+
+    @Test // Test32
+    void removeCamera_shouldClearCatOnlyThatCameraSaw() {
+        when(mockimageService.classify(any())).thenReturn(ClassificationResult.ofDecision(true, Duration.ZERO));
+        securityService.processImage("front", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB));
+        securityService.addStatusListener(listener);
+
+        securityService.removeCamera("front");
+
+        assertFalse(securityService.isCatDetected());
+        assertTrue(securityService.getCameraIds().isEmpty());
+        verify(listener).catDetected("front", false);
+        verify(listener).catDetected(false);
+    }
+
+    @Test // Test33
+    void setCatConfidenceThreshold_shouldReapplyLatestClassificationWithoutClassifyingAgain() {
+        BufferedImage frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        when(mockimageService.classify(frame)).thenReturn(new ClassificationResult(70f, Map.of("Cat", 70f), Duration.ZERO));
+        securityService.processImage("front", frame);
+        assertTrue(securityService.isCatDetected("front"));
+        securityService.addStatusListener(listener);
+
+        securityService.setCatConfidenceThreshold(80f);
+
+        assertFalse(securityService.isCatDetected());
+        assertEquals(70f, securityService.getLatestClassification("front").orElseThrow().catConfidence());
+        verify(listener).catDetected("front", false);
+        verify(mockimageService, times(1)).classify(frame);
+        verify(mockimageService, never()).imageContainsCat(any(), anyFloat());
+
+        securityService.setCatConfidenceThreshold(60f);
+
+        assertTrue(securityService.isCatDetected());
+        verify(listener).catDetected("front", true);
+    }
+
+    @Test // Test34
+    void setCatConfidenceThreshold_shouldRejectOutOfRangeValues() {
+        assertThrows(IllegalArgumentException.class, () -> securityService.setCatConfidenceThreshold(0f));
+        assertThrows(IllegalArgumentException.class, () -> securityService.setCatConfidenceThreshold(100.5f));
+        assertEquals(ImageService.DEFAULT_CONFIDENCE_THRESHOLD, securityService.getCatConfidenceThreshold());
+    }
+
+    @Test // Test35
+    void concurrentSensorActivations_shouldNotLoseTransitions() throws InterruptedException {
+        int sensorCount = 4;
+        for (int round = 0; round < 200; round++) {
+            SecurityService service = new SecurityService(new InMemorySecurityRepositoryImpl(), mockimageService);
+            List<Sensor> sensors = new ArrayList<>();
+            for (int i = 0; i < sensorCount; i++) {
+                sensors.add(new Sensor("Sensor" + i, SensorType.DOOR));
+                service.addSensor(sensors.get(i));
+            }
+            service.setArmingStatus(ArmingStatus.ARMED_AWAY);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (Sensor sensor : sensors) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    service.changeSensorActivationStatus(sensor, true);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // The first activation makes the alarm pending and the next sets it off, whatever the interleaving
+            assertEquals(AlarmStatus.ALARM, service.getAlarmStatus());
+            long active = sensors.stream().filter(Sensor::getActive).count();
+            assertEquals(active, service.getActiveSensorCount());
+        }
+    }
+
+    @Test // Test36
+    void concurrentChangesToOneSensor_shouldCountItOnce() throws InterruptedException {
+        for (int round = 0; round < 50; round++) {
+            SecurityRepository repository = new InMemorySecurityRepositoryImpl();
+            SecurityService service = new SecurityService(repository, mockimageService);
+            // Yields after every read of its flag, so a thread that has just read it is likely
+            // to be overtaken before acting on it
+            Sensor sensor = new Sensor("Door", SensorType.DOOR) {
+                @Override
+                public Boolean getActive() {
+                    Boolean active = super.getActive();
+                    Thread.yield();
+                    return active;
+                }
+            };
+            service.addSensor(sensor);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                boolean byId = t % 2 == 0;
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    for (int i = 0; i < 100; i++) {
+                        boolean active = i % 2 == 0;
+                        if (byId) {
+                            service.changeSensorActivationStatus(sensor.getSensorId(), active);
+                        } else {
+                            service.changeSensorActivationStatus(sensor, active);
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // However the changes interleaved, the one sensor is counted at most once and the
+            // repository agrees with the count
+            boolean stored = repository.findSensor(sensor.getSensorId()).orElseThrow().getActive();
+            assertEquals(stored ? 1 : 0, service.getActiveSensorCount());
+            service.changeSensorActivationStatus(sensor, false);
+            assertEquals(0, service.getActiveSensorCount());
+        }
+    }
+
+    @Test // Test37
+    void processImageAsync_shouldNotSkipSameScene_whenFrameWasRejected() {
+        MotionGate gate = new MotionGate();
+        ClassificationExecutor executor = new ClassificationExecutor(1, 1, ClassificationExecutor.BackpressurePolicy.REJECT);
+        executor.close();
+        SecurityService asyncService = new SecurityService(mocksecurityRepository, mockimageService, executor);
+        asyncService.setMotionGate(gate);
+
+        CompletableFuture<Boolean> rejected = asyncService.processImageAsync("front", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB));
+        assertThrows(CompletionException.class, rejected::join);
+        asyncService.processImageAsync("front", new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB));
+
+        // The rejected frame never became the reference, so the unchanged scene was offered again
+        assertEquals(2, gate.getPassedFrames());
+        assertEquals(0, gate.getSkippedFrames());
+    }
+
+    @Test // Test38
+    void removeCamera_shouldIgnoreResultOfFrameSubmittedBeforeRemoval() {
+        BufferedImage olderFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        BufferedImage newerFrame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        CountDownLatch releaseOlderFrame = new CountDownLatch(1);
+        when(mockimageService.classify(olderFrame)).thenAnswer(invocation -> {
+            releaseOlderFrame.await();
+            return ClassificationResult.ofDecision(true, Duration.ZERO);
+        });
+        when(mockimageService.classify(newerFrame)).thenReturn(ClassificationResult.ofDecision(false, Duration.ZERO));
+        try (ClassificationExecutor executor = new ClassificationExecutor(1, 4, ClassificationExecutor.BackpressurePolicy.REJECT)) {
+            SecurityService asyncService = new SecurityService(mocksecurityRepository, mockimageService, executor);
+            asyncService.addStatusListener(listener);
+
+            CompletableFuture<Boolean> older = asyncService.processImageAsync("front", olderFrame);
+            asyncService.removeCamera("front");
+            releaseOlderFrame.countDown();
+            assertTrue(older.join());
+
+            assertFalse(asyncService.isCatDetected());
+            assertTrue(asyncService.getCameraIds().isEmpty());
+
+            // A frame submitted after the removal brings the camera back
+            assertFalse(asyncService.processImageAsync("front", newerFrame).join());
+            assertEquals(Set.of("front"), asyncService.getCameraIds());
+        }
+
+        verify(listener, never()).catDetected(true);
+        verify(listener, never()).catDetected(eq("front"), eq(true));
+    }
+
+    @Test // Test39
+    void servicesWithoutExecutor_shouldNotShareClassificationBacklog() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ImageService blocking = (image, confidenceThreshold) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        SecurityService busy = new SecurityService(new InMemorySecurityRepositoryImpl(), blocking);
+        SecurityService idle = new SecurityService(new InMemorySecurityRepositoryImpl(), (image, confidenceThreshold) -> false);
+        try {
+            // Fills busy's one thread and queue of four; a shared executor would leave idle's frame behind them
+            List<CompletableFuture<Boolean>> blocked = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                blocked.add(busy.processImageAsync("front", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB)));
+            }
+
+            assertFalse(idle.processImageAsync("front", new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB))
+                    .get(5, TimeUnit.SECONDS));
+            assertTrue(blocked.stream().noneMatch(CompletableFuture::isDone));
+        } finally {
+            release.countDown();
+        }
+    }
 }